@@ -0,0 +1,30 @@
+package com.volyx.rpc.api;
+
+/**
+ * What a proxy call does when its connection is not writable,
+ * i.e. bytes waiting to be sent exceed the high water mark of the write buffer
+ */
+public enum BackpressurePolicy {
+
+    /**
+     * calls are written anyway, outbound buffer grows as long as the peer is slower than callers <br/>
+     */
+    NONE,
+
+    /**
+     * caller waits until the connection is writable again, up to the block timeout <br/>
+     * {@link com.volyx.rpc.api.exception.BackpressureException} is thrown once it is over,
+     * or right away if the call is made from the connection's event loop <br/>
+     */
+    BLOCK,
+
+    /**
+     * {@link com.volyx.rpc.api.exception.BackpressureException} is thrown right away <br/>
+     */
+    FAIL,
+
+    /**
+     * void calls are silently dropped, calls returning a result fail as in {@link #FAIL} mode <br/>
+     */
+    DROP
+}
@@ -0,0 +1,21 @@
+package com.volyx.rpc.api;
+
+/**
+ * Algorithms payloads may be compressed with, client offers them in its order of preference during handshake,
+ * server picks the first one it accepts as well <br/>
+ * Only payloads above the compression threshold are compressed, and compression is suspended for a while
+ * when payloads turn out to be poorly compressible.
+ */
+public enum Compression {
+
+    /**
+     * raw deflate at the fastest level, always available <br/>
+     */
+    DEFLATE,
+
+    /**
+     * LZ4 block format, much faster than deflate at a somewhat worse ratio <br/>
+     * available only if lz4-java (net.jpountz.lz4) is in the classpath, otherwise it is not offered nor accepted <br/>
+     */
+    LZ4
+}
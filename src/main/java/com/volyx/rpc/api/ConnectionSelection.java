@@ -0,0 +1,31 @@
+package com.volyx.rpc.api;
+
+/**
+ * How a client with several connections picks one for a call, see {@link NettyRpcClientBuilder#setConnections(int)}
+ * and {@link NettyRpcClientBuilder#NettyRpcClientBuilder(java.util.List)} <br/>
+ * closed connections are always skipped <br/>
+ */
+public enum ConnectionSelection {
+
+    /**
+     * connections take turns <br/>
+     */
+    ROUND_ROBIN,
+
+    /**
+     * connection with the fewest bytes waiting to be sent, then with the fewest unanswered requests <br/>
+     * a connection stuck behind a large message is avoided until it drains <br/>
+     */
+    LEAST_OUTSTANDING_BYTES,
+
+    /**
+     * connection with the fewest unanswered requests <br/>
+     */
+    LEAST_OUTSTANDING_REQUESTS,
+
+    /**
+     * better of two random connections, judged by moving average of response time times unanswered requests <br/>
+     * adapts to a slow replica without sending every call to the momentarily best one <br/>
+     */
+    POWER_OF_TWO_CHOICES
+}
@@ -0,0 +1,25 @@
+package com.volyx.rpc.api;
+
+/**
+ * When messages written to a connection are flushed to the socket, every flush is a syscall
+ */
+public enum FlushMode {
+
+    /**
+     * every message is flushed right away, lowest latency <br/>
+     */
+    IMMEDIATE,
+
+    /**
+     * flushes are gathered and done once per event loop tick, or as soon as flush thresholds are reached <br/>
+     * bursts of calls from application threads go out in a few large writes <br/>
+     */
+    CONSOLIDATED,
+
+    /**
+     * calls made through proxies are flushed by {@link Remote#flush()} or once flush thresholds are reached <br/>
+     * blocking calls flush right away, together with calls written before them, as the caller waits for the response <br/>
+     * other messages, such as responses and heartbeats, are flushed as in {@link #CONSOLIDATED} mode <br/>
+     */
+    EXPLICIT
+}
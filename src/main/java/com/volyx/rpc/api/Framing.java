@@ -0,0 +1,17 @@
+package com.volyx.rpc.api;
+
+public enum Framing {
+
+    /**
+     * messages are terminated by NUL (0x00) <br/>
+     * every inbound byte is scanned for the delimiter, so payloads must not contain NUL <br/>
+     * only textual serializers (see {@link Serializer#isTextual()}) can be used with it <br/>
+     */
+    DELIMITED,
+
+    /**
+     * messages are prefixed with magic, version and payload length <br/>
+     * frames are cut without scanning the payload, so any byte sequence can be sent <br/>
+     */
+    LENGTH_FIELD
+}
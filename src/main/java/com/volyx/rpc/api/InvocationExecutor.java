@@ -0,0 +1,41 @@
+package com.volyx.rpc.api;
+
+/**
+ * Runs invocations of server implementations, see {@link InvocationExecutors} for available strategies. <br/>
+ * Responses are written back on the event loop of the client's channel whichever thread runs the invocation. <br/>
+ */
+public interface InvocationExecutor {
+
+    /**
+     * @param remote client the invocation came from
+     * @param invocation call of server implementation, it writes its own response
+     * @throws java.util.concurrent.RejectedExecutionException if invocation can't be accepted, client then gets the exception as a result
+     */
+    void execute(Remote remote, Runnable invocation);
+
+    /**
+     * drops state kept for the client, called once it is disconnected
+     * @param remote disconnected client
+     */
+    void release(Remote remote);
+
+    /**
+     * @return true if invocations run on the event loop that read them, responses are then flushed once per read
+     */
+    boolean isInline();
+
+    /**
+     * @return number of invocations accepted but not started yet
+     */
+    int getQueueDepth();
+
+    /**
+     * @return number of invocations rejected since server start
+     */
+    long getRejectedCount();
+
+    /**
+     * stops accepting invocations, called when server is shut down
+     */
+    void shutdown();
+}
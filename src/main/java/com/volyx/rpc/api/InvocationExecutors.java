@@ -0,0 +1,120 @@
+package com.volyx.rpc.api;
+
+import com.volyx.rpc.api.exception.ConfigurationException;
+import com.volyx.rpc.server.InlineInvocationExecutor;
+import com.volyx.rpc.server.OrderedInvocationExecutor;
+import com.volyx.rpc.server.PooledInvocationExecutor;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Factory methods for {@link InvocationExecutor}s. <br/>
+ */
+public final class InvocationExecutors {
+
+    private InvocationExecutors() {
+    }
+
+    /**
+     * runs invocations right on the event loop, the fastest option for short non-blocking implementations <br/>
+     * a slow implementation stalls every connection served by the same event loop <br/>
+     * @return default executor
+     */
+    public static InvocationExecutor inline() {
+        return InlineInvocationExecutor.INSTANCE;
+    }
+
+    /**
+     * runs invocations on a fixed pool, invocations beyond the queue limit are rejected <br/>
+     * @param threads number of threads in the pool
+     * @param queueLimit number of invocations waiting for a thread
+     * @return executor
+     */
+    public static InvocationExecutor boundedPool(int threads, int queueLimit) {
+        return boundedPool(threads, queueLimit, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * runs invocations on a fixed pool <br/>
+     * @param threads number of threads in the pool
+     * @param queueLimit number of invocations waiting for a thread
+     * @param rejectionPolicy applied to invocations beyond the queue limit, e.g. CallerRunsPolicy runs them on the event loop
+     * @return executor
+     */
+    public static InvocationExecutor boundedPool(int threads, int queueLimit, RejectedExecutionHandler rejectionPolicy) {
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueLimit), new DefaultThreadFactory("rpc-invocation"));
+        return new PooledInvocationExecutor(pool, rejectionPolicy);
+    }
+
+    /**
+     * runs invocations of one client in arrival order, different clients run in parallel <br/>
+     * implementations created per client by addClass or addFactory then need no synchronization <br/>
+     * @param threads number of threads shared by all clients
+     * @param queueLimit number of invocations a single client may have waiting, further ones are rejected
+     * @return executor
+     */
+    public static InvocationExecutor ordered(int threads, int queueLimit) {
+        return ordered(Executors.newFixedThreadPool(threads, new DefaultThreadFactory("rpc-invocation")), queueLimit);
+    }
+
+    /**
+     * runs invocations of one client in arrival order on given executor service, different clients run in parallel <br/>
+     * @param executorService shared by all clients, it is shut down together with the server
+     * @param queueLimit number of invocations a single client may have waiting, further ones are rejected
+     * @return executor
+     */
+    public static InvocationExecutor ordered(ExecutorService executorService, int queueLimit) {
+        return new OrderedInvocationExecutor(executorService, queueLimit);
+    }
+
+    /**
+     * runs invocations on a work-stealing pool with parallelism equal to number of cores <br/>
+     * @return executor
+     */
+    public static InvocationExecutor forkJoin() {
+        return forkJoin(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * runs invocations on a work-stealing pool <br/>
+     * @param parallelism target number of threads
+     * @return executor
+     */
+    public static InvocationExecutor forkJoin(int parallelism) {
+        return new PooledInvocationExecutor(new ForkJoinPool(parallelism));
+    }
+
+    /**
+     * runs every invocation on its own virtual thread, so blocking implementations do not hold platform threads <br/>
+     * @return executor
+     * @throws ConfigurationException if the runtime has no virtual threads
+     */
+    public static InvocationExecutor virtualThreads() {
+        try {
+            // looked up reflectively, so the library still runs on runtimes without virtual threads
+            final Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return new PooledInvocationExecutor((ExecutorService) factory.invoke(null));
+        } catch (NoSuchMethodException e) {
+            throw new ConfigurationException("virtual threads are not supported by java " + System.getProperty("java.version"), e);
+        } catch (ReflectiveOperationException e) {
+            throw new ConfigurationException("failed to create virtual thread executor", e);
+        }
+    }
+
+    /**
+     * runs invocations on given executor service, it is shut down together with the server <br/>
+     * @param executorService to run invocations
+     * @return executor
+     */
+    public static InvocationExecutor of(ExecutorService executorService) {
+        return new PooledInvocationExecutor(executorService);
+    }
+}
@@ -0,0 +1,28 @@
+package com.volyx.rpc.api;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a void single-item method, whose calls are accumulated on calling side
+ * and sent as one call of its bulk counterpart, e.g. record(Event) calls as recordAll(List&lt;Event&gt;). <br/>
+ * <br/>
+ * Accumulated items are sent once {@link #maxItems()} of them are collected or {@link #maxDelayMicros()}
+ * passes since the first of them, whichever comes first, {@link Remote#flush()} sends them right away.
+ * Bulk method must be a void method of the same interface taking a single List parameter.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface MicroBatch {
+
+    /**
+     * @return name of the bulk method
+     */
+    String value();
+
+    int maxItems() default 64;
+
+    long maxDelayMicros() default 200;
+}
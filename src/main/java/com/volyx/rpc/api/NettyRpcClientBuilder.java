@@ -1,36 +1,98 @@
 package com.volyx.rpc.api;
 
-import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.volyx.rpc.common.Backpressure;
+import com.volyx.rpc.common.Constants;
+import com.volyx.rpc.common.DispatchTable;
+import com.volyx.rpc.common.MethodTable;
 import com.volyx.rpc.common.PrimitiveTypesClassResolver;
+import com.volyx.rpc.common.TransportConfig;
 import com.volyx.rpc.common.Validator;
+import com.volyx.rpc.common.binary.BinarySerializer;
+import com.volyx.rpc.common.codec.CodecConfig;
+import com.volyx.rpc.common.json.JsonMessageSerializer;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.handler.codec.serialization.ClassResolver;
+import com.volyx.rpc.api.exception.ConfigurationException;
+import com.volyx.rpc.api.exception.TransportException;
+import com.volyx.rpc.client.ClientResources;
 import com.volyx.rpc.client.NettyRpcClient;
 
 import static io.netty.handler.codec.serialization.ClassResolvers.softCachingConcurrentResolver;
+import static java.util.Collections.singletonList;
 import static java.util.Collections.unmodifiableMap;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 
 public class NettyRpcClientBuilder {
 
-    private final InetSocketAddress serverAddress;
+    private final List<SocketAddress> serverAddresses;
+    private final ClientResources sharedResources;
 
     private final Validator validator = new Validator();
     private final Map<Class<?>, Object> implementations = new HashMap<Class<?>, Object>();
     private final List<ExceptionListener> listeners = new ArrayList<ExceptionListener>();
+    private final List<WritabilityListener> writabilityListeners = new ArrayList<WritabilityListener>();
 
     private ClassResolver classResolver = softCachingConcurrentResolver(null);
     private long keepAlive = 30000l;
+    private Framing framing = Framing.LENGTH_FIELD;
+    private Serializer serializer = new BinarySerializer();
+    // zero until set, default depends on framing
+    private int maxFrameLength;
+    private Compression[] compressions = new Compression[0];
+    private int compressionThreshold = Constants.DEFAULT_COMPRESSION_THRESHOLD;
+    private ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+    private Transport transport = Transport.AUTO;
+    private boolean tcpQuickAck;
+    private boolean edgeTriggered = true;
+    private FlushMode flushMode = FlushMode.CONSOLIDATED;
+    private int flushMaxMessages = Constants.DEFAULT_FLUSH_MAX_MESSAGES;
+    private int flushMaxBytes = Constants.DEFAULT_FLUSH_MAX_BYTES;
+    private int connections = 1;
+    private ConnectionSelection connectionSelection = ConnectionSelection.ROUND_ROBIN;
+    private boolean orderedProxies;
+    private long probeInterval = 5000l;
+    private WriteBufferWaterMark waterMark;
+    private BackpressurePolicy backpressurePolicy = BackpressurePolicy.NONE;
+    private long backpressureTimeout;
+    private long callTimeout = Constants.DEFAULT_CALL_TIMEOUT;
 
     /**
-     * @param serverAddress remote address to connect to
+     * @param serverAddress remote address to connect to, a {@link io.netty.channel.unix.DomainSocketAddress}
+     *                      connects to a server on the same host over a unix domain socket and requires {@link Transport#EPOLL},
+     *                      a {@link io.netty.channel.local.LocalAddress} connects to a server of this JVM, see {@link com.volyx.rpc.common.codec.LocalMessageCodec},
+     *                      a {@link SharedMemoryAddress} connects to a server process of the same host over shared memory
      */
-    public NettyRpcClientBuilder(InetSocketAddress serverAddress) {
-        this.serverAddress = serverAddress;
+    public NettyRpcClientBuilder(SocketAddress serverAddress) {
+        this(singletonList(serverAddress), null);
+    }
+
+    /**
+     * builds client of several identical server replicas, exposed as a single {@link Remote} <br/>
+     * every call goes to a replica picked by {@link #setConnectionSelection(ConnectionSelection)}, replicas which are down
+     * are left out of rotation and reconnected in background, see {@link #setProbeInterval(long)} <br/>
+     * @param serverAddresses remote addresses of replicas, at least one of them must be up when client is built
+     */
+    public NettyRpcClientBuilder(List<? extends SocketAddress> serverAddresses) {
+        this(serverAddresses, null);
+    }
+
+    /**
+     * @param sharedResources event loops, allocator and timer owned by {@link RpcClientFactory}, null to create own ones
+     */
+    NettyRpcClientBuilder(List<? extends SocketAddress> serverAddresses, ClientResources sharedResources) {
+        if (serverAddresses.isEmpty()) {
+            throw new ConfigurationException("client needs at least one server address");
+        }
+        this.serverAddresses = new ArrayList<SocketAddress>(serverAddresses);
+        this.sharedResources = sharedResources;
     }
 
     /**
@@ -81,16 +143,261 @@ public class NettyRpcClientBuilder {
         return this;
     }
 
+    /**
+     * sets framing used to split inbound stream into messages <br/>
+     * must match framing configured on the server <br/>
+     * @param framing to be used, default is {@link Framing#LENGTH_FIELD}
+     * @return this builder
+     */
+    public NettyRpcClientBuilder setFraming(Framing framing) {
+        this.framing = framing;
+        return this;
+    }
+
+    /**
+     * sets maximum length of a single message, longer messages are rejected with TooLongFrameException <br/>
+     * default is 16MB with {@link Framing#LENGTH_FIELD} framing and 8192 bytes with {@link Framing#DELIMITED} one
+     * @param maxFrameLength length in bytes, excluding frame header / delimiter
+     * @return this builder
+     */
+    public NettyRpcClientBuilder setMaxFrameLength(int maxFrameLength) {
+        if (maxFrameLength <= 0) {
+            throw new ConfigurationException("max frame length must be positive, got " + maxFrameLength);
+        }
+        this.maxFrameLength = maxFrameLength;
+        return this;
+    }
+
+    /**
+     * sets serializer used to convert messages to bytes and back <br/>
+     * server must be configured with the same serializer <br/>
+     * {@link JsonMessageSerializer} writes human readable json, which is handy for debugging <br/>
+     * {@link BinarySerializer#BinarySerializer(int)} sends strings repeated across messages as per-connection ids <br/>
+     * @param serializer to be used, default is {@link BinarySerializer}
+     * @return this builder
+     */
+    public NettyRpcClientBuilder setSerializer(Serializer serializer) {
+        this.serializer = serializer;
+        return this;
+    }
+
+    /**
+     * sets compression algorithms accepted for payloads, offered to server in order of preference <br/>
+     * payloads are compressed only if the server accepts one of them as well, can't be used with {@link Framing#DELIMITED} framing <br/>
+     * @param compressions algorithms in order of preference, none by default
+     * @return this builder
+     */
+    public NettyRpcClientBuilder setCompression(Compression... compressions) {
+        this.compressions = compressions;
+        return this;
+    }
+
+    /**
+     * sets size below which payloads are sent uncompressed, small payloads rarely pay for compression <br/>
+     * @param compressionThreshold payload length in bytes, default is {@value Constants#DEFAULT_COMPRESSION_THRESHOLD}
+     * @return this builder
+     */
+    public NettyRpcClientBuilder setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+        return this;
+    }
+
+    /**
+     * sets allocator used for inbound and outbound buffers <br/>
+     * messages are encoded into direct buffers when the allocator supports them <br/>
+     * @param allocator to be used, default is {@link PooledByteBufAllocator#DEFAULT}
+     * @return this builder
+     * @throws ConfigurationException if this builder was created by {@link RpcClientFactory}
+     */
+    public NettyRpcClientBuilder setAllocator(ByteBufAllocator allocator) {
+        checkNotShared("allocator");
+        this.allocator = allocator;
+        return this;
+    }
+
+    /**
+     * sets when written messages are flushed to the socket, every flush is a syscall <br/>
+     * @param flushMode to be used, default is {@link FlushMode#CONSOLIDATED}
+     * @return this builder
+     */
+    public NettyRpcClientBuilder setFlushMode(FlushMode flushMode) {
+        this.flushMode = flushMode;
+        return this;
+    }
+
+    /**
+     * sets amount of unflushed data which is flushed right away, without waiting for the event loop tick or explicit flush <br/>
+     * @param maxMessages number of messages, default is 256
+     * @param maxBytes number of bytes, default is 65536
+     * @return this builder
+     */
+    public NettyRpcClientBuilder setFlushThresholds(int maxMessages, int maxBytes) {
+        this.flushMaxMessages = maxMessages;
+        this.flushMaxBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * sets socket transport <br/>
+     * @param transport to be used, default is {@link Transport#AUTO} which prefers native epoll over NIO
+     * @return this builder
+     * @throws ConfigurationException if this builder was created by {@link RpcClientFactory}
+     */
+    public NettyRpcClientBuilder setTransport(Transport transport) {
+        checkNotShared("transport");
+        this.transport = transport;
+        return this;
+    }
+
+    /**
+     * sets TCP_QUICKACK on connections, acks are sent right away instead of being delayed <br/>
+     * effective only with {@link Transport#EPOLL} <br/>
+     * @param tcpQuickAck default is false
+     * @return this builder
+     */
+    public NettyRpcClientBuilder setTcpQuickAck(boolean tcpQuickAck) {
+        this.tcpQuickAck = tcpQuickAck;
+        return this;
+    }
+
+    /**
+     * chooses between edge- and level-triggered epoll mode <br/>
+     * effective only with {@link Transport#EPOLL} <br/>
+     * @param edgeTriggered default is true
+     * @return this builder
+     */
+    public NettyRpcClientBuilder setEdgeTriggered(boolean edgeTriggered) {
+        this.edgeTriggered = edgeTriggered;
+        return this;
+    }
+
+    /**
+     * opens several connections to every server address and spreads calls over them, so one client can load a multi-core server <br/>
+     * client still exposes a single {@link Remote}, server sees every connection as a separate client <br/>
+     * calls of different proxy invocations may overtake each other unless proxies are ordered <br/>
+     * @param connections number of connections, default is 1
+     * @return this builder
+     */
+    public NettyRpcClientBuilder setConnections(int connections) {
+        if (connections < 1) {
+            throw new ConfigurationException("client needs at least one connection, got " + connections);
+        }
+        this.connections = connections;
+        return this;
+    }
+
+    /**
+     * sets how a connection is picked for a call when there are several <br/>
+     * @param connectionSelection to be used, default is {@link ConnectionSelection#ROUND_ROBIN}
+     * @return this builder
+     */
+    public NettyRpcClientBuilder setConnectionSelection(ConnectionSelection connectionSelection) {
+        this.connectionSelection = connectionSelection;
+        return this;
+    }
+
+    /**
+     * pins every proxy to one connection, so calls made through it arrive in the order they were made <br/>
+     * proxies of different interfaces are still spread over the connections <br/>
+     * @param orderedProxies default is false
+     * @return this builder
+     */
+    public NettyRpcClientBuilder setOrderedProxies(boolean orderedProxies) {
+        this.orderedProxies = orderedProxies;
+        return this;
+    }
+
+    /**
+     * sets how often broken connections of a client with several connections are reconnected <br/>
+     * connection is back in rotation as soon as its handshake completes <br/>
+     * @param probeInterval interval in milliseconds, if zero - broken connections stay out of rotation
+     * @return this builder
+     */
+    public NettyRpcClientBuilder setProbeInterval(long probeInterval) {
+        this.probeInterval = probeInterval;
+        return this;
+    }
+
+    /**
+     * sets water marks of the write buffer of every connection <br/>
+     * connection turns unwritable once bytes waiting to be sent exceed the high mark, and writable again below the low one <br/>
+     * @param low bytes, netty's default is 32768
+     * @param high bytes, netty's default is 65536
+     * @return this builder
+     */
+    public NettyRpcClientBuilder setWriteBufferWaterMark(int low, int high) {
+        if (low < 0 || high < low) {
+            throw new ConfigurationException("water marks must satisfy 0 <= low <= high, got " + low + " and " + high);
+        }
+        this.waterMark = new WriteBufferWaterMark(low, high);
+        return this;
+    }
+
+    /**
+     * sets what proxy calls to the server do when their connection is not writable, see {@link BackpressurePolicy} <br/>
+     * @param policy to be used, default is {@link BackpressurePolicy#NONE}
+     * @param blockTimeout milliseconds a call waits with {@link BackpressurePolicy#BLOCK}, ignored by other policies
+     * @return this builder
+     */
+    public NettyRpcClientBuilder setBackpressure(BackpressurePolicy policy, long blockTimeout) {
+        this.backpressurePolicy = policy;
+        this.backpressureTimeout = blockTimeout;
+        return this;
+    }
+
+    /**
+     * blocking proxy calls to the server fail with {@link TransportException} if the response does not come in time, <br/>
+     * calls returning CompletableFuture are not limited
+     * @param millis time to wait, default is {@value Constants#DEFAULT_CALL_TIMEOUT}
+     * @return this builder
+     */
+    public NettyRpcClientBuilder setCallTimeout(long millis) {
+        if (millis <= 0) {
+            throw new ConfigurationException("call timeout must be positive, got " + millis);
+        }
+        this.callTimeout = millis;
+        return this;
+    }
+
+    /**
+     * this listener will be called when a connection turns unwritable or writable again, so producers can slow down <br/>
+     * @param listener to add
+     * @return this builder
+     */
+    public NettyRpcClientBuilder addWritabilityListener(WritabilityListener listener) {
+        writabilityListeners.add(listener);
+        return this;
+    }
+
+    private void checkNotShared(String setting) {
+        if (sharedResources != null) {
+            throw new ConfigurationException(setting + " of a client created by RpcClientFactory is set on the factory");
+        }
+    }
+
     /**
      * @return configured RpcClient
      */
     public RpcClient build() {
+        final TransportConfig transportConfig = sharedResources == null
+                ? new TransportConfig(transport, allocator, tcpQuickAck, edgeTriggered, false, flushMode, flushMaxMessages, flushMaxBytes)
+                : new TransportConfig(sharedResources.getTransport(), sharedResources.getAllocator(), tcpQuickAck, edgeTriggered, false, flushMode, flushMaxMessages, flushMaxBytes);
         return new NettyRpcClient(
-                serverAddress,
+                serverAddresses,
                 unmodifiableMap(implementations),
+                new DispatchTable(MethodTable.of(implementations.keySet())),
                 listeners.toArray(new ExceptionListener[listeners.size()]),
                 new PrimitiveTypesClassResolver(classResolver),
-                keepAlive
+                keepAlive,
+                new CodecConfig(framing, maxFrameLength > 0 ? maxFrameLength : CodecConfig.defaultMaxFrameLength(framing), serializer.forInterfaces(implementations.keySet()), compressions, compressionThreshold),
+                transportConfig,
+                sharedResources == null ? ClientResources.dedicated(transportConfig) : sharedResources,
+                connections,
+                connectionSelection,
+                orderedProxies,
+                probeInterval,
+                new Backpressure(waterMark, backpressurePolicy, backpressureTimeout, writabilityListeners.toArray(new WritabilityListener[writabilityListeners.size()])),
+                callTimeout
         );
     }
 }
@@ -1,16 +1,29 @@
 package com.volyx.rpc.api;
 
-import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.volyx.rpc.common.binary.BinarySerializer;
+import com.volyx.rpc.common.codec.CodecConfig;
+import com.volyx.rpc.common.json.JsonMessageSerializer;
 import com.volyx.rpc.server.FactoryServerProvider;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.handler.codec.serialization.ClassResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.volyx.rpc.api.exception.ConfigurationException;
+import com.volyx.rpc.api.exception.TransportException;
+import com.volyx.rpc.common.Backpressure;
+import com.volyx.rpc.common.Constants;
+import com.volyx.rpc.common.DispatchTable;
+import com.volyx.rpc.common.MethodTable;
 import com.volyx.rpc.common.PrimitiveTypesClassResolver;
+import com.volyx.rpc.common.TransportConfig;
 import com.volyx.rpc.common.Validator;
 import com.volyx.rpc.server.InjectingServerProvider;
 import com.volyx.rpc.server.NettyRpcServer;
@@ -23,20 +36,45 @@ import static java.util.concurrent.Executors.newCachedThreadPool;
 
 public class NettyRpcServerBuilder {
 
-    private final InetSocketAddress bindAddress;
+    private final List<SocketAddress> bindAddresses = new ArrayList<SocketAddress>();
 
-    private final Validator validator = new Validator();
+    private final Validator validator = new Validator(true);
     private final Map<Class<?>, ServerProvider<?>> implementations = new HashMap<Class<?>, ServerProvider<?>>();
     private final List<ExceptionListener> exceptionListeners = new ArrayList<ExceptionListener>();
     private final List<ClientListener> clientListeners = new ArrayList<ClientListener>();
+    private final List<WritabilityListener> writabilityListeners = new ArrayList<WritabilityListener>();
 
     private ClassResolver classResolver = softCachingConcurrentResolver(null);
+    private Framing framing = Framing.LENGTH_FIELD;
+    private Serializer serializer = new BinarySerializer();
+    // zero until set, default depends on framing
+    private int maxFrameLength;
+    private Compression[] compressions = new Compression[0];
+    private int compressionThreshold = Constants.DEFAULT_COMPRESSION_THRESHOLD;
+    private ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+    private Transport transport = Transport.AUTO;
+    private boolean tcpQuickAck;
+    private boolean edgeTriggered = true;
+    private FlushMode flushMode = FlushMode.CONSOLIDATED;
+    private int flushMaxMessages = Constants.DEFAULT_FLUSH_MAX_MESSAGES;
+    private int flushMaxBytes = Constants.DEFAULT_FLUSH_MAX_BYTES;
+    private boolean reusePort;
+    private int acceptors = 1;
+    private int backlog = 128;
+    private InvocationExecutor invocationExecutor = InvocationExecutors.inline();
+    private WriteBufferWaterMark waterMark;
+    private BackpressurePolicy backpressurePolicy = BackpressurePolicy.NONE;
+    private long backpressureTimeout;
+    private long callTimeout = Constants.DEFAULT_CALL_TIMEOUT;
 
     /**
-     * @param bindAddress local address to bind to
+     * @param bindAddress local address to bind to, port of an InetSocketAddress is bound on all interfaces,
+     *                    a {@link io.netty.channel.unix.DomainSocketAddress} binds a unix domain socket and requires {@link Transport#EPOLL},
+     *                    a {@link io.netty.channel.local.LocalAddress} accepts clients of this JVM, which skip serialization where they can,
+     *                    a {@link SharedMemoryAddress} accepts processes of this host over shared memory
      */
-    public NettyRpcServerBuilder(InetSocketAddress bindAddress) {
-        this.bindAddress = bindAddress;
+    public NettyRpcServerBuilder(SocketAddress bindAddress) {
+        this.bindAddresses.add(bindAddress);
 
         new ExceptionListener() {
             private final Logger log = LoggerFactory.getLogger(NettyRpcServer.class);
@@ -52,7 +90,7 @@ public class NettyRpcServerBuilder {
      * this instance will be shared by all clients, meaning that this object should be multithread-safe <br/>
      * @param interfaceClass interface that will be exposed on remote side
      * @param implementingObject object, that will handle all remote invocations
-     * @param <T> interface, all parameters in all methods must be serializable, return type must be void
+     * @param <T> interface, all parameters in all methods must be serializable, return type must be void, CompletableFuture or serializable
      * @return this builder
      */
     public <T> NettyRpcServerBuilder addObject(Class<T> interfaceClass, T implementingObject) {
@@ -76,7 +114,7 @@ public class NettyRpcServerBuilder {
      * }</blockquote></pre><br/>
      * @param interfaceClass interface that will be exposed on remote side
      * @param implClass class, that will be instantiated to serve client's requests
-     * @param <T> interface, all parameters in all methods must be serializable, return type must be void
+     * @param <T> interface, all parameters in all methods must be serializable, return type must be void, CompletableFuture or serializable
      * @return this builder
      */
     public <T> NettyRpcServerBuilder addClass(Class<T> interfaceClass, Class<? extends T> implClass) {
@@ -92,7 +130,7 @@ public class NettyRpcServerBuilder {
      * and you can keep some state related to current client there <br/>
      * @param interfaceClass interface that will be exposed on remote side
      * @param factory factory, which will create objects, that will serve client requests
-     * @param <T> interface, all parameters in all methods must be serializable, return type must be void
+     * @param <T> interface, all parameters in all methods must be serializable, return type must be void, CompletableFuture or serializable
      * @return this builder
      */
     public <T> NettyRpcServerBuilder addFactory(Class<T> interfaceClass, ImplementationFactory<? extends T> factory) {
@@ -126,16 +164,254 @@ public class NettyRpcServerBuilder {
         return this;
     }
 
+    /**
+     * sets framing used to split inbound stream into messages <br/>
+     * clients must be configured with the same framing <br/>
+     * @param framing to be used, default is {@link Framing#LENGTH_FIELD}
+     * @return this builder
+     */
+    public NettyRpcServerBuilder setFraming(Framing framing) {
+        this.framing = framing;
+        return this;
+    }
+
+    /**
+     * sets maximum length of a single message, longer messages are rejected with TooLongFrameException <br/>
+     * default is 16MB with {@link Framing#LENGTH_FIELD} framing and 8192 bytes with {@link Framing#DELIMITED} one
+     * @param maxFrameLength length in bytes, excluding frame header / delimiter
+     * @return this builder
+     */
+    public NettyRpcServerBuilder setMaxFrameLength(int maxFrameLength) {
+        if (maxFrameLength <= 0) {
+            throw new ConfigurationException("max frame length must be positive, got " + maxFrameLength);
+        }
+        this.maxFrameLength = maxFrameLength;
+        return this;
+    }
+
+    /**
+     * sets serializer used to convert messages to bytes and back <br/>
+     * clients must be configured with the same serializer <br/>
+     * {@link JsonMessageSerializer} writes human readable json, which is handy for debugging <br/>
+     * {@link BinarySerializer#BinarySerializer(int)} sends strings repeated across messages as per-connection ids <br/>
+     * @param serializer to be used, default is {@link BinarySerializer}
+     * @return this builder
+     */
+    public NettyRpcServerBuilder setSerializer(Serializer serializer) {
+        this.serializer = serializer;
+        return this;
+    }
+
+    /**
+     * sets compression algorithms accepted for payloads, the first one offered by a client which is also listed here is used <br/>
+     * payloads are compressed only if a client accepts one of them as well, can't be used with {@link Framing#DELIMITED} framing <br/>
+     * @param compressions algorithms in order of preference, none by default
+     * @return this builder
+     */
+    public NettyRpcServerBuilder setCompression(Compression... compressions) {
+        this.compressions = compressions;
+        return this;
+    }
+
+    /**
+     * sets size below which payloads are sent uncompressed, small payloads rarely pay for compression <br/>
+     * @param compressionThreshold payload length in bytes, default is {@value Constants#DEFAULT_COMPRESSION_THRESHOLD}
+     * @return this builder
+     */
+    public NettyRpcServerBuilder setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+        return this;
+    }
+
+    /**
+     * sets allocator used for inbound and outbound buffers <br/>
+     * messages are encoded into direct buffers when the allocator supports them <br/>
+     * @param allocator to be used, default is {@link PooledByteBufAllocator#DEFAULT}
+     * @return this builder
+     */
+    public NettyRpcServerBuilder setAllocator(ByteBufAllocator allocator) {
+        this.allocator = allocator;
+        return this;
+    }
+
+    /**
+     * sets executor running invocations of server implementations <br/>
+     * see {@link InvocationExecutors} for available strategies, executor is shut down together with the server <br/>
+     * @param invocationExecutor to be used, default is {@link InvocationExecutors#inline()}
+     * @return this builder
+     */
+    public NettyRpcServerBuilder setInvocationExecutor(InvocationExecutor invocationExecutor) {
+        this.invocationExecutor = invocationExecutor;
+        return this;
+    }
+
+    /**
+     * sets when written messages are flushed to the socket, every flush is a syscall <br/>
+     * @param flushMode to be used, default is {@link FlushMode#CONSOLIDATED}
+     * @return this builder
+     */
+    public NettyRpcServerBuilder setFlushMode(FlushMode flushMode) {
+        this.flushMode = flushMode;
+        return this;
+    }
+
+    /**
+     * sets amount of unflushed data which is flushed right away, without waiting for the event loop tick or explicit flush <br/>
+     * @param maxMessages number of messages, default is 256
+     * @param maxBytes number of bytes, default is 65536
+     * @return this builder
+     */
+    public NettyRpcServerBuilder setFlushThresholds(int maxMessages, int maxBytes) {
+        this.flushMaxMessages = maxMessages;
+        this.flushMaxBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * sets socket transport <br/>
+     * @param transport to be used, default is {@link Transport#AUTO} which prefers native epoll over NIO
+     * @return this builder
+     */
+    public NettyRpcServerBuilder setTransport(Transport transport) {
+        this.transport = transport;
+        return this;
+    }
+
+    /**
+     * sets TCP_QUICKACK on connections, acks are sent right away instead of being delayed <br/>
+     * effective only with {@link Transport#EPOLL} <br/>
+     * @param tcpQuickAck default is false
+     * @return this builder
+     */
+    public NettyRpcServerBuilder setTcpQuickAck(boolean tcpQuickAck) {
+        this.tcpQuickAck = tcpQuickAck;
+        return this;
+    }
+
+    /**
+     * chooses between edge- and level-triggered epoll mode <br/>
+     * effective only with {@link Transport#EPOLL} <br/>
+     * @param edgeTriggered default is true
+     * @return this builder
+     */
+    public NettyRpcServerBuilder setEdgeTriggered(boolean edgeTriggered) {
+        this.edgeTriggered = edgeTriggered;
+        return this;
+    }
+
+    /**
+     * sets SO_REUSEPORT on the accepting socket, so several servers may bind the same port <br/>
+     * effective only with {@link Transport#EPOLL} <br/>
+     * @param reusePort default is false
+     * @return this builder
+     */
+    public NettyRpcServerBuilder setReusePort(boolean reusePort) {
+        this.reusePort = reusePort;
+        return this;
+    }
+
+    /**
+     * binds several listening sockets on the same port, each accepted by its own event loop <br/>
+     * kernel spreads incoming connections across them, which helps with reconnect storms <br/>
+     * more than one acceptor requires {@link Transport#EPOLL} and turns SO_REUSEPORT on <br/>
+     * @param acceptors number of listening sockets, default is 1
+     * @return this builder
+     */
+    public NettyRpcServerBuilder setAcceptors(int acceptors) {
+        this.acceptors = acceptors;
+        return this;
+    }
+
+    /**
+     * accepts connections on one more address, e.g. a unix domain socket for clients on the same host next to the tcp port <br/>
+     * connections of all the addresses are served alike, with the same handshake, implementations and listeners <br/>
+     * @param bindAddress local address to bind to, see {@link #NettyRpcServerBuilder(SocketAddress)}
+     * @return this builder
+     */
+    public NettyRpcServerBuilder addBindAddress(SocketAddress bindAddress) {
+        bindAddresses.add(bindAddress);
+        return this;
+    }
+
+    /**
+     * sets SO_BACKLOG of every listening socket <br/>
+     * @param backlog length of the queue of connections not accepted yet, default is 128
+     * @return this builder
+     */
+    public NettyRpcServerBuilder setBacklog(int backlog) {
+        this.backlog = backlog;
+        return this;
+    }
+
+    /**
+     * sets water marks of the write buffer of every connection <br/>
+     * connection turns unwritable once bytes waiting to be sent exceed the high mark, and writable again below the low one <br/>
+     * @param low bytes, netty's default is 32768
+     * @param high bytes, netty's default is 65536
+     * @return this builder
+     */
+    public NettyRpcServerBuilder setWriteBufferWaterMark(int low, int high) {
+        if (low < 0 || high < low) {
+            throw new ConfigurationException("water marks must satisfy 0 <= low <= high, got " + low + " and " + high);
+        }
+        this.waterMark = new WriteBufferWaterMark(low, high);
+        return this;
+    }
+
+    /**
+     * sets what proxy calls to the client do when their connection is not writable, see {@link BackpressurePolicy} <br/>
+     * @param policy to be used, default is {@link BackpressurePolicy#NONE}
+     * @param blockTimeout milliseconds a call waits with {@link BackpressurePolicy#BLOCK}, ignored by other policies
+     * @return this builder
+     */
+    public NettyRpcServerBuilder setBackpressure(BackpressurePolicy policy, long blockTimeout) {
+        this.backpressurePolicy = policy;
+        this.backpressureTimeout = blockTimeout;
+        return this;
+    }
+
+    /**
+     * blocking proxy calls to the client fail with {@link TransportException} if the response does not come in time, <br/>
+     * calls returning CompletableFuture are not limited
+     * @param millis time to wait, default is {@value Constants#DEFAULT_CALL_TIMEOUT}
+     * @return this builder
+     */
+    public NettyRpcServerBuilder setCallTimeout(long millis) {
+        if (millis <= 0) {
+            throw new ConfigurationException("call timeout must be positive, got " + millis);
+        }
+        this.callTimeout = millis;
+        return this;
+    }
+
+    /**
+     * this listener will be called when a connection turns unwritable or writable again, so producers can slow down <br/>
+     * @param listener to add
+     * @return this builder
+     */
+    public NettyRpcServerBuilder addWritabilityListener(WritabilityListener listener) {
+        writabilityListeners.add(listener);
+        return this;
+    }
+
     /**
      * @return configured RpcServer
      */
     public RpcServer build() {
         return new NettyRpcServer(
-                bindAddress,
-                unmodifiableMap(implementations), 
+                new ArrayList<SocketAddress>(bindAddresses),
+                unmodifiableMap(implementations),
+                new DispatchTable(MethodTable.of(implementations.keySet())),
                 exceptionListeners.toArray(new ExceptionListener[exceptionListeners.size()]),
                 clientListeners.toArray(new ClientListener[clientListeners.size()]),
-                new PrimitiveTypesClassResolver(classResolver)
+                new PrimitiveTypesClassResolver(classResolver),
+                new CodecConfig(framing, maxFrameLength > 0 ? maxFrameLength : CodecConfig.defaultMaxFrameLength(framing), serializer.forInterfaces(implementations.keySet()), compressions, compressionThreshold),
+                new TransportConfig(transport, allocator, tcpQuickAck, edgeTriggered, reusePort || acceptors > 1, flushMode, flushMaxMessages, flushMaxBytes),
+                acceptors,
+                backlog,
+                invocationExecutor,
+                new Backpressure(waterMark, backpressurePolicy, backpressureTimeout, writabilityListeners.toArray(new WritabilityListener[writabilityListeners.size()])),
+                callTimeout
         );
     }
 }
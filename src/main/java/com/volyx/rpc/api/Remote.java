@@ -3,6 +3,8 @@ package com.volyx.rpc.api;
 import io.netty.channel.ChannelId;
 
 import java.io.Serializable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface Remote {
 
@@ -28,4 +30,19 @@ public interface Remote {
      */
     <T> T getProxy(Class<T> clazz);
 
+    /**
+     * sends calls made through the proxy passed to the scope as a single request, <br/>
+     * remote side executes them one after another and answers all of them at once. <br/>
+     * Calls returning {@link CompletableFuture} get their own results, blocking calls can't be batched.
+     * @param clazz interface on remote side which will serve invocations
+     * @param calls scope the batch is collected in, the proxy must not be used once it returns
+     * @return future, completed when the batch is answered, exceptionally if any of the calls failed
+     */
+    <T> CompletableFuture<Void> batch(Class<T> clazz, Consumer<? super T> calls);
+
+    /**
+     * sends calls written so far, needed only with {@link FlushMode#EXPLICIT} <br/>
+     */
+    void flush();
+
 }
@@ -10,9 +10,12 @@ public interface RpcClient {
     Remote getRemote();
 
     /**
-     * shutdowns client and releases all resources used
+     * shutdowns client and releases all resources used, except the ones shared through {@link RpcClientFactory}
      */
     void shutdown();
 
+    /**
+     * @return id server knows this client by, the id of the first connection if there are several
+     */
     ChannelId getId();
 }
@@ -0,0 +1,64 @@
+package com.volyx.rpc.api;
+
+import com.volyx.rpc.client.ClientResources;
+import com.volyx.rpc.common.TransportConfig;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+
+import java.net.SocketAddress;
+import java.util.List;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * Creates clients sharing one event loop group, allocator and keep-alive timer. <br/>
+ * <br/>
+ * A client built by {@link NettyRpcClientBuilder} alone owns its event loops, which adds up
+ * when a process holds hundreds of clients. Shutting down a client of this factory closes just its connection,
+ * shared resources are released by {@link #shutdown()}.
+ */
+public class RpcClientFactory {
+
+    private final ClientResources resources;
+
+    /**
+     * shares netty's default number of event loops, transport is chosen by {@link Transport#AUTO}
+     */
+    public RpcClientFactory() {
+        this(Transport.AUTO, 0, PooledByteBufAllocator.DEFAULT);
+    }
+
+    /**
+     * @param transport used by all the clients
+     * @param threads number of event loops shared by all the clients, zero for netty's default
+     * @param allocator used by all the clients
+     */
+    public RpcClientFactory(Transport transport, int threads, ByteBufAllocator allocator) {
+        this.resources = ClientResources.shared(new TransportConfig(transport, allocator, false, true, false, FlushMode.IMMEDIATE, 0, 0), threads);
+    }
+
+    /**
+     * transport and allocator of the returned builder are set by this factory and can't be changed <br/>
+     * @param serverAddress remote address to connect to
+     * @return builder of a client using shared resources
+     */
+    public NettyRpcClientBuilder newClientBuilder(SocketAddress serverAddress) {
+        return new NettyRpcClientBuilder(singletonList(serverAddress), resources);
+    }
+
+    /**
+     * transport and allocator of the returned builder are set by this factory and can't be changed <br/>
+     * @param serverAddresses remote addresses of server replicas, see {@link NettyRpcClientBuilder#NettyRpcClientBuilder(List)}
+     * @return builder of a client using shared resources
+     */
+    public NettyRpcClientBuilder newClientBuilder(List<? extends SocketAddress> serverAddresses) {
+        return new NettyRpcClientBuilder(serverAddresses, resources);
+    }
+
+    /**
+     * stops shared event loops and timer, clients still open are disconnected
+     */
+    public void shutdown() {
+        resources.shutdown();
+    }
+}
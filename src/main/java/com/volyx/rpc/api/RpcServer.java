@@ -18,6 +18,11 @@ public interface RpcServer {
      */
     Collection<Remote> getClients();
 
+    /**
+     * @return executor running invocations of server implementations, see its queue depth and rejected count
+     */
+    InvocationExecutor getInvocationExecutor();
+
     /**
      * shutdowns server, closes connections to all clients, and releases all resources used
      */
@@ -0,0 +1,50 @@
+package com.volyx.rpc.api;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.serialization.ClassResolver;
+
+import java.util.Collection;
+
+public interface Serializer {
+
+    /**
+     * writes message to the buffer <br/>
+     * must be multithread-safe, single instance is shared by all the connections <br/>
+     * @param message one of Request, Response or RpcMessage
+     * @param out buffer to write to, framing is added afterwards
+     */
+    void write(Object message, ByteBuf out) throws Exception;
+
+    /**
+     * reads message written by {@link #write(Object, ByteBuf)} on remote side
+     * @param in buffer holding exactly one message
+     * @param classResolver to be used to resolve class names
+     * @return one of Request, Response or RpcMessage
+     */
+    Object read(ByteBuf in, ClassResolver classResolver) throws Exception;
+
+    /**
+     * @return true if written bytes never contain NUL, that's required by {@link Framing#DELIMITED}
+     */
+    boolean isTextual();
+
+    /**
+     * called once when client or server is built, serializers restricting what they read return an instance
+     * accepting also types of the interfaces here <br/>
+     * @param interfaces registered on this side
+     * @return serializer to be used instead of this one
+     */
+    default Serializer forInterfaces(Collection<Class<?>> interfaces) {
+        return this;
+    }
+
+    /**
+     * called once per connection, serializers keeping per-connection state return a fresh instance here <br/>
+     * such instance is used from the connection's event loop only, so it does not have to be multithread-safe <br/>
+     * @param maxMessageLength longest message the connection carries, longer ones are rejected by framing
+     * @return serializer to be used for the connection
+     */
+    default Serializer forConnection(int maxMessageLength) {
+        return this;
+    }
+}
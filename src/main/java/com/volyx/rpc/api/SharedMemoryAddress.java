@@ -0,0 +1,81 @@
+package com.volyx.rpc.api;
+
+import com.volyx.rpc.api.exception.ConfigurationException;
+
+import java.io.File;
+import java.net.SocketAddress;
+
+/**
+ * Directory through which processes of the same host connect over shared memory instead of sockets. <br/>
+ * <br/>
+ * Server binds the directory, every client connection is a memory-mapped file created in it,
+ * holding a single-producer single-consumer ring buffer per direction. Both sides poll the rings,
+ * spinning for a while before parking, so a connection keeps a thread busy while messages flow.
+ */
+public class SharedMemoryAddress extends SocketAddress {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * bytes of each ring by default, longer messages go through in parts as the other side reads them <br/>
+     * every connection maps two rings and keeps a polling thread on each side, which parks for up to
+     * a millisecond while idle, so an idle connection still wakes up about a thousand times a second per side
+     */
+    public static final int DEFAULT_RING_CAPACITY = 1 << 20;
+
+    /**
+     * both rings of a connection are mapped as one buffer, which is limited to 2GB
+     */
+    public static final int MAX_RING_CAPACITY = 1 << 29;
+
+    private final File path;
+    private final int ringCapacity;
+
+    public SharedMemoryAddress(File directory) {
+        this(directory, DEFAULT_RING_CAPACITY);
+    }
+
+    /**
+     * @param directory bound by server, created if it does not exist
+     * @param ringCapacity bytes of each ring of connections opened by client, power of two, server takes whatever client chose
+     */
+    public SharedMemoryAddress(File directory, int ringCapacity) {
+        if (ringCapacity <= 0 || ringCapacity > MAX_RING_CAPACITY || Integer.bitCount(ringCapacity) != 1) {
+            throw new ConfigurationException("ring capacity must be a power of two up to " + MAX_RING_CAPACITY + ": " + ringCapacity);
+        }
+        this.path = directory;
+        this.ringCapacity = ringCapacity;
+    }
+
+    /**
+     * @return bound directory, or file of a single connection for addresses of open channels
+     */
+    public File getPath() {
+        return path;
+    }
+
+    public int getRingCapacity() {
+        return ringCapacity;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SharedMemoryAddress)) {
+            return false;
+        }
+        return path.equals(((SharedMemoryAddress) o).path);
+    }
+
+    @Override
+    public int hashCode() {
+        return path.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "shm:" + path;
+    }
+}
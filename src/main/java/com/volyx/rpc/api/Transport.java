@@ -0,0 +1,20 @@
+package com.volyx.rpc.api;
+
+public enum Transport {
+
+    /**
+     * {@link #EPOLL} when the native library can be loaded, {@link #NIO} otherwise <br/>
+     */
+    AUTO,
+
+    /**
+     * java.nio selector, available everywhere <br/>
+     */
+    NIO,
+
+    /**
+     * native linux epoll, fewer syscalls and less garbage than NIO <br/>
+     * enables epoll specific options such as TCP_QUICKACK and SO_REUSEPORT <br/>
+     */
+    EPOLL
+}
@@ -0,0 +1,11 @@
+package com.volyx.rpc.api;
+
+public interface WritabilityListener {
+
+    /**
+     * called on the connection's event loop when its outbound buffer crosses a water mark
+     * @param remote associated with the connection
+     * @param writable false once buffered bytes exceed the high water mark, true once they drop below the low one
+     */
+    void onWritabilityChanged(Remote remote, boolean writable);
+}
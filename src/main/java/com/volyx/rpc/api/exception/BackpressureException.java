@@ -0,0 +1,13 @@
+package com.volyx.rpc.api.exception;
+
+/**
+ * This exception is thrown when a call is refused because its connection is not writable, see {@link com.volyx.rpc.api.BackpressurePolicy}. <br/>
+ * <br/>
+ * Nothing was sent, so the call may be retried once the peer catches up
+ */
+public class BackpressureException extends TransportException {
+
+    public BackpressureException(String message) {
+        super(message);
+    }
+}
@@ -8,6 +8,13 @@ public class RemoteException extends RuntimeException {
         super(impose(cause));
     }
 
+    /**
+     * @param remoteStackTrace stack trace of the exception thrown on remote side, as text
+     */
+    public RemoteException(String remoteStackTrace) {
+        super(remoteStackTrace);
+    }
+
     private static ImpostorException impose(Throwable t) {
         if (t == null) {
             return null;
@@ -1,127 +1,56 @@
 package com.volyx.rpc.client;
 
 
-import com.volyx.rpc.common.JsonSerializer;
+import com.volyx.rpc.api.exception.TransportException;
+import com.volyx.rpc.common.PendingCalls;
 import com.volyx.rpc.common.Response;
-import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
-import io.netty.util.ReferenceCountUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
 
 @ChannelHandler.Sharable
 public class ChannelHandlerAdapter extends ChannelInboundHandlerAdapter {
     private static final Logger log = LoggerFactory.getLogger(ChannelHandlerAdapter.class);
 
     /**
-     * A default constructor
+     * Calls sent over this client's channel which are still waiting for a response
      */
-    public ChannelHandlerAdapter() {
-        super();
-    }
+    @Nonnull
+    private final PendingCalls pendingCalls;
 
-    @Override
-    public void channelActive(ChannelHandlerContext context) throws Exception {
-        // nothing to do
+    public ChannelHandlerAdapter(@Nonnull PendingCalls pendingCalls) {
+        super();
+        this.pendingCalls = pendingCalls;
     }
 
     /**
-     * Handles an inactive channel and tries to reconnects original remote server
+     * Handles an inactive channel and fails all the calls which won't get their responses anymore
      */
     @Override
     public void channelInactive(final ChannelHandlerContext context) throws Exception {
         log.info("Client is disconnected from server: {}", context.channel().remoteAddress());
 
-//        ChannelProxy channelProxy = ClientChannelManager.getInstance().findChannelProxy(context.channel());
-//        if (channelProxy == null || channelProxy.isStopped()) {
-//            log.warn("Fail to find any matching proxy of client channel or this client channel had been stopped.");
-//            return;
-//        }
-//
-//        log.info("Reconnects to remote server after {} seconds.", Constants.RECONNECT_DELAY);
-//
-//        // delay several seconds to reconnect the original remote server
-//        EventLoop eventLoop = context.channel().eventLoop();
-//        eventLoop.schedule(new Runnable() {
-//            @Override
-//            public void run() {
-//                reconnect(context);
-//            }
-//        }, Constants.RECONNECT_DELAY, TimeUnit.SECONDS);
+        pendingCalls.failAll(new TransportException("connection to " + context.channel().remoteAddress() + " is closed"));
+        context.fireChannelInactive();
     }
 
     /**
-     * Reconnects to the original remote server
-     */
-//    private static void reconnect(final ChannelHandlerContext context) {
-//        final ChannelProxy channelProxy = ClientChannelManager.getInstance().findChannelProxy(context.channel());
-//        if (channelProxy == null) {
-//            log.warn("Fail to find any matching proxy of client channel or this client channel had been stopped.");
-//            return;
-//        }
-//
-//        int retryCounter = channelProxy.retryCountDown();
-//        if (retryCounter <= 0) {
-//            // close this broken channel and cancel all waiting requests in this channel
-//            ClientChannelManager.getInstance().stopChannelProxy(channelProxy);
-//            log.error("Cannot reconnect the remote server for exceeding the max allowable times. channel proxy: {}", channelProxy);
-//            return;
-//        }
-//
-//        // clone the original configuration of bootstrap for rebuilding a connection between client and server
-//        final Bootstrap newBootstrap = channelProxy.getBootstrap().clone();
-//
-//        // reconnect the original remote server
-//        ChannelFuture future = newBootstrap.connect();
-//        future.addListener(new ChannelFutureListener() {
-//            @Override
-//            public void operationComplete(ChannelFuture future) {
-//                if (future.isSuccess()) {
-//                    Channel newChannel = future.channel();
-//                    channelProxy.setChannel(newChannel);
-//                    channelProxy.setBootstrap(newBootstrap);
-//                    channelProxy.resetRetryCounter();
-//
-//                    log.info("Finish to reconnect the remote server. channel proxy: {}", channelProxy);
-//
-//                } else {
-//                    Throwable cause = future.cause();
-//                    log.warn("Fail to reconnect to the remote server. channel proxy: {}", channelProxy, cause);
-//
-//                    future.channel().eventLoop().schedule(new Runnable() {
-//                        @Override
-//                        public void run() {
-//                            reconnect(context);
-//                        }
-//                    }, Constants.RECONNECT_DELAY, TimeUnit.SECONDS);
-//                }
-//            }
-//        });
-//    }
-
-    /**
-     * Handles a channel to read a coming message and convert it to a response
+     * Handles a channel to read a coming message and complete the matching call, other messages are passed further
      */
     @Override
     public void channelRead(ChannelHandlerContext context, Object message) throws Exception {
-        try {
-            // read a message and convert it to a response
-            String responseJson = (String) message;
-            Response response = JsonSerializer.getInstance().fromJson(responseJson, Response.class);
-            log.debug("Receive a request. id: {}", response.getId());
+        if (!(message instanceof Response)) {
+            context.fireChannelRead(message);
+            return;
+        }
+        Response response = (Response) message;
+        log.debug("Receive a response. id: {}", response.getId());
 
-            // find the original channel proxy and let the proxy receive it
-            ChannelProxy channelProxy = ClientChannelManager.getInstance().findChannelProxy(context.channel());
-            if (channelProxy != null) {
-                channelProxy.receive(response);
-            } else {
-                throw new ClientSideException("Fail to find any matching proxy of client channel.").addContextValue("Remote Address", context.channel()
-                        .remoteAddress());
-            }
-        } finally {
-            ReferenceCountUtil.release(message);
+        // find the call waiting for this response, calls may complete in any order
+        if (!pendingCalls.complete(response)) {
+            log.warn("Fail to find any pending call for a response. id: {}, remote address: {}", response.getId(), context.channel().remoteAddress());
         }
     }
 
@@ -130,16 +59,11 @@ public class ChannelHandlerAdapter extends ChannelInboundHandlerAdapter {
      */
     @Override
     public void exceptionCaught(ChannelHandlerContext context, Throwable cause) {
-        ChannelProxy channelProxy = ClientChannelManager.getInstance().findChannelProxy(context.channel());
-        if (channelProxy != null) {
-            ClientChannelManager.getInstance().stopChannelProxy(channelProxy);
-        }
-
         // log exception if any error occurred
-        log.error("Fail to hold a connection between client and server. channel proxy: {}", channelProxy, cause);
+        log.error("Fail to hold a connection between client and server. remote address: {}", context.channel().remoteAddress(), cause);
 
-        // close channel on exception
+        // close channel on exception, pending calls are failed once channel becomes inactive
         context.close();
+        context.fireExceptionCaught(cause);
     }
 }
-
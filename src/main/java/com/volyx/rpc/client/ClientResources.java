@@ -0,0 +1,86 @@
+package com.volyx.rpc.client;
+
+import com.volyx.rpc.api.Transport;
+import com.volyx.rpc.common.TransportConfig;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.EventLoopGroup;
+
+import java.util.Timer;
+
+/**
+ * Event loops, allocator and keep-alive timer used by clients. <br/>
+ * <br/>
+ * Resources created for a single client are released when the client is shut down,
+ * shared ones live until their owner shuts them down.
+ */
+public class ClientResources {
+
+    private final Transport transport;
+    private final ByteBufAllocator allocator;
+    private final EventLoopGroup eventLoopGroup;
+    private final Timer timer;
+    private final boolean shared;
+
+    private ClientResources(TransportConfig transportConfig, int threads, boolean shared) {
+        this.transport = transportConfig.getTransport();
+        this.allocator = transportConfig.getAllocator();
+        this.eventLoopGroup = transportConfig.newEventLoopGroup(threads);
+        this.timer = new Timer("KeepAliveTimer", true);
+        this.shared = shared;
+    }
+
+    /**
+     * @return resources owned by a single client
+     */
+    public static ClientResources dedicated(TransportConfig transportConfig) {
+        return new ClientResources(transportConfig, 0, false);
+    }
+
+    /**
+     * @param threads number of event loops serving all the clients, zero for netty's default
+     * @return resources shared by many clients, see {@link #shutdown()}
+     */
+    public static ClientResources shared(TransportConfig transportConfig, int threads) {
+        return new ClientResources(transportConfig, threads, true);
+    }
+
+    /**
+     * @return resolved transport of the event loops
+     */
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public ByteBufAllocator getAllocator() {
+        return allocator;
+    }
+
+    public EventLoopGroup getEventLoopGroup() {
+        return eventLoopGroup;
+    }
+
+    public Timer getTimer() {
+        return timer;
+    }
+
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * called by a client being shut down, shared resources are kept
+     */
+    public void release() {
+        if (!shared) {
+            shutdown();
+        }
+    }
+
+    /**
+     * stops event loops and timer
+     */
+    public void shutdown() {
+        timer.cancel();
+        eventLoopGroup.shutdownGracefully();
+    }
+}
@@ -1,14 +1,9 @@
 package com.volyx.rpc.client;
 
 
-import com.volyx.rpc.common.Constants;
-import com.volyx.rpc.common.JsonSerializer;
 import com.volyx.rpc.common.Request;
-import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.*;
 import io.netty.handler.timeout.IdleStateEvent;
-import io.netty.util.CharsetUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,16 +23,8 @@ public class HeartbeatHandler extends ChannelInboundHandlerAdapter {
     @Override
     public void userEventTriggered(ChannelHandlerContext context, Object event) throws Exception {
         if (event instanceof IdleStateEvent) {
-            // create a heartbeat message and convert it to a json message
-            String requestJson = JsonSerializer.getInstance().toJson(Request.HEARTBEAT, Request.class);
-
-            StringBuilder requestMsg = new StringBuilder(requestJson);
-            // append a request's boundary
-            requestMsg.append(Constants.REQUEST_BOUNDARY);
-            ByteBuf reqMsgByteBuf = Unpooled.copiedBuffer(requestMsg.toString(), CharsetUtil.UTF_8);
-
-            // send a heartbeat message to a remote server
-            ChannelFuture future = context.channel().writeAndFlush(reqMsgByteBuf);
+            // send a heartbeat message to a remote server, serialization and framing are added by the codecs
+            ChannelFuture future = context.channel().writeAndFlush(Request.HEARTBEAT);
             future.addListener(new ChannelFutureListener() {
                 @Override
                 public void operationComplete(ChannelFuture future) {
@@ -46,11 +33,10 @@ public class HeartbeatHandler extends ChannelInboundHandlerAdapter {
 
                     } else {
                         Channel channel = future.channel();
-                        ChannelProxy channelProxy = ClientChannelManager.getInstance().findChannelProxy(channel);
 
                         // log warning message, subsequent event handling is taken over by channelInactive method
                         Throwable cause = future.cause();
-                        log.warn("Fail to send a HEARTBEAT signal to the remote server. channel proxy: {}", channelProxy, cause);
+                        log.warn("Fail to send a HEARTBEAT signal to the remote server. remote address: {}", channel.remoteAddress(), cause);
                     }
                 }
             });
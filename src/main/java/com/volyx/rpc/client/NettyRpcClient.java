@@ -1,23 +1,35 @@
 package com.volyx.rpc.client;
 
-import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.TimerTask;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 
+import com.volyx.rpc.api.ConnectionSelection;
 import com.volyx.rpc.api.ExceptionListener;
 import com.volyx.rpc.api.RpcClient;
+import com.volyx.rpc.common.Backpressure;
+import com.volyx.rpc.common.Constants;
+import com.volyx.rpc.common.DispatchTable;
 import com.volyx.rpc.common.NettyRemote;
+import com.volyx.rpc.common.PendingCalls;
+import com.volyx.rpc.common.PooledRemote;
+import com.volyx.rpc.common.TransportConfig;
+import com.volyx.rpc.common.codec.CodecConfig;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.serialization.ClassResolver;
 import io.netty.handler.codec.serialization.ObjectDecoder;
 import io.netty.handler.codec.serialization.ObjectEncoder;
+import io.netty.util.concurrent.ScheduledFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.volyx.rpc.api.Remote;
@@ -31,7 +43,6 @@ import com.volyx.rpc.common.message.KeepAlive;
 import com.volyx.rpc.common.message.RpcMessage;
 
 import static com.volyx.rpc.common.Util.foldClassesToStrings;
-import static com.volyx.rpc.common.Util.invokeMethod;
 import static com.volyx.rpc.common.Util.unfoldStringToClasses;
 
 public class NettyRpcClient implements RpcClient {
@@ -40,66 +51,233 @@ public class NettyRpcClient implements RpcClient {
 
     private final ClassResolver classResolver;
     private KeepAliveTimer keepAliveTimer;
-    private CountDownLatch latch;
 
     private final Map<Class<?>, Object> implementations;
     private final ExceptionListener[] listeners;
+    private final DispatchTable dispatchTable;
+    private final CodecConfig codecConfig;
+    private final TransportConfig transportConfig;
+    private final Backpressure backpressure;
+    private final long callTimeout;
+    private final ClientResources resources;
+    private final Bootstrap bootstrap = new Bootstrap();
 
-    private Channel channel;
-    private volatile NettyRemote remote;
+    /**
+     * open connections, kept alive by the timer
+     */
+    private final List<NettyRemote> connections = new CopyOnWriteArrayList<NettyRemote>();
+    /**
+     * endpoint of every connection slot of the pooled remote
+     */
+    private final SocketAddress[] slotAddresses;
+    private final AtomicBoolean[] probing;
+    private TimerTask probe;
+    /**
+     * set by shutdown, connections reopened by a probe in flight are closed right away
+     */
+    private volatile boolean closed;
+    private volatile Remote remote;
     private ChannelId id;
-    private final NioEventLoopGroup workerGroup;
 
-    public NettyRpcClient(final InetSocketAddress remoteAddress, final Map<Class<?>, Object> implementations, final ExceptionListener[] listeners, final ClassResolver classResolver, final long keepalivePeriod) {
+    /**
+     * @param remoteAddresses endpoints of server replicas, calls are spread over them if more than one,
+     *                        tcp, unix domain socket or in-JVM local addresses
+     * @param connectionsPerEndpoint number of connections opened to every endpoint
+     * @param selection picks connection for a call when there are several
+     * @param orderedProxies whether all calls of a proxy go over the same connection
+     * @param probeInterval period of reconnecting broken connections in milliseconds, zero disables it
+     * @param backpressure water marks of connections and what calls do when they are exceeded
+     * @param callTimeout milliseconds blocking calls wait for the response
+     */
+    public NettyRpcClient(final List<SocketAddress> remoteAddresses, final Map<Class<?>, Object> implementations, final DispatchTable dispatchTable, final ExceptionListener[] listeners, final ClassResolver classResolver, final long keepalivePeriod, final CodecConfig codecConfig, final TransportConfig transportConfig, final ClientResources resources, final int connectionsPerEndpoint, final ConnectionSelection selection, final boolean orderedProxies, final long probeInterval, final Backpressure backpressure, final long callTimeout) {
         this.implementations = implementations;
         this.listeners = listeners;
         this.classResolver = classResolver;
+        this.dispatchTable = dispatchTable;
+        this.codecConfig = codecConfig;
+        this.transportConfig = transportConfig;
+        this.backpressure = backpressure;
+        this.callTimeout = callTimeout;
+        this.resources = resources;
 
-        Bootstrap bootstrap = new Bootstrap();
-        workerGroup = new NioEventLoopGroup();
-        try {
-            bootstrap.group(workerGroup);
-            bootstrap.channel(NioSocketChannel.class); // (3)
-            bootstrap.option(ChannelOption.SO_KEEPALIVE, true); // (4)
-            bootstrap.remoteAddress(remoteAddress);
-            bootstrap.handler(new RpcClientInitializer(implementations, listeners, classResolver));
+        // slots of different endpoints alternate, so round robin alternates replicas
+        final int endpoints = remoteAddresses.size();
+        this.slotAddresses = new SocketAddress[endpoints * connectionsPerEndpoint];
+        this.probing = new AtomicBoolean[slotAddresses.length];
+        for (int i = 0; i < slotAddresses.length; i++) {
+            slotAddresses[i] = remoteAddresses.get(i % endpoints);
+            probing[i] = new AtomicBoolean();
+        }
 
-            // connect the client to remote server the wait until the awaitUninterruptibly() method is completed
-            final ChannelFuture future = bootstrap.connect().awaitUninterruptibly();
+        try {
+            bootstrap.group(resources.getEventLoopGroup());
+            backpressure.configure(bootstrap);
 
-            if (future.isDone()) {
-                if (!future.isSuccess()) {
-//                bootstrap.releaseExternalResources();
-                    throw new TransportException("failed to connect to " + remoteAddress, future.cause());
+            if (slotAddresses.length == 1) {
+                final NettyRemote connection = await(connect(slotAddresses[0]), slotAddresses[0]);
+                connections.add(connection);
+                remote = connection;
+            } else {
+                remote = connectPool(selection, orderedProxies);
+                if (probeInterval > 0) {
+                    probe = new ProbeTask();
+                    resources.getTimer().schedule(probe, probeInterval, probeInterval);
                 }
+            }
+            id = remote.getId();
 
-                latch = new CountDownLatch(1);
-                channel = future.channel();
-                channel.writeAndFlush(new HandshakeFromClient(foldClassesToStrings(new ArrayList<Class<?>>(implementations.keySet()))));
-                try {
-                    latch.await();
-                } catch (InterruptedException e) {
-                    throw new RuntimeException("interrupted waiting for handshake", e);
-                }
+            keepAliveTimer = new KeepAliveTimer(resources.getTimer(), connections, keepalivePeriod);
+        } catch (RuntimeException e) {
+            if (probe != null) {
+                probe.cancel();
+            }
+            for (NettyRemote connection : connections) {
+                connection.getChannel().close();
+            }
+            resources.release();
+            throw e;
+        }
+    }
 
-                keepAliveTimer = new KeepAliveTimer(Collections.singleton(remote), keepalivePeriod);
+    /**
+     * connects all the slots at once, endpoints which are down are left to the probe
+     * @throws TransportException if no endpoint could be connected
+     */
+    private PooledRemote connectPool(ConnectionSelection selection, boolean orderedProxies) {
+        final PooledRemote pool = new PooledRemote(slotAddresses.length, selection, orderedProxies);
+        final List<CompletableFuture<NettyRemote>> handshakes = new ArrayList<CompletableFuture<NettyRemote>>();
+        for (SocketAddress address : slotAddresses) {
+            handshakes.add(connect(address));
+        }
+
+        TransportException failure = null;
+        for (int i = 0; i < slotAddresses.length; i++) {
+            try {
+                final NettyRemote connection = await(handshakes.get(i), slotAddresses[i]);
+                connections.add(connection);
+                pool.setConnection(i, connection);
+            } catch (TransportException e) {
+                log.warn("Fail to connect to an endpoint, it is left out of rotation. remote address: {}", slotAddresses[i], e);
+                failure = e;
             }
+        }
+        if (connections.isEmpty()) {
+            throw failure;
+        }
+        return pool;
+    }
 
+    /**
+     * @return future completed once server answers the handshake, or exceptionally if it doesn't in time
+     */
+    private CompletableFuture<NettyRemote> connect(final SocketAddress address) {
+        final CompletableFuture<NettyRemote> handshake = new CompletableFuture<>();
+        final Bootstrap connection = bootstrap.clone();
+        transportConfig.configure(connection, address);
+        connection.remoteAddress(address);
+        connection.handler(new RpcClientInitializer(implementations, listeners, classResolver, codecConfig, transportConfig, new PendingCalls(), handshake, dispatchTable, backpressure, callTimeout));
 
+        connection.connect().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                if (!future.isSuccess()) {
+                    handshake.completeExceptionally(new TransportException("failed to connect to " + address, future.cause()));
+                    return;
+                }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException();
+                final Channel channel = future.channel();
+                final ScheduledFuture<?> timeout = channel.eventLoop().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        handshake.completeExceptionally(new TransportException("timed out waiting for handshake with " + address));
+                    }
+                }, Constants.CONNECT_TIMEOUT, TimeUnit.MILLISECONDS);
+                handshake.whenComplete(new BiConsumer<NettyRemote, Throwable>() {
+                    @Override
+                    public void accept(NettyRemote remote, Throwable exc) {
+                        timeout.cancel(false);
+                        if (exc != null) {
+                            channel.close();
+                        }
+                    }
+                });
+                final String[] compressions = TransportConfig.isInJvm(address) ? new String[0] : codecConfig.getOfferedCompressions();
+                channel.writeAndFlush(new HandshakeFromClient(foldClassesToStrings(new ArrayList<Class<?>>(implementations.keySet())), dispatchTable.getMethods().getSignatures(), compressions));
+            }
+        });
+        return handshake;
+    }
+
+    private static NettyRemote await(CompletableFuture<NettyRemote> handshake, SocketAddress address) {
+        try {
+            return handshake.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransportException("interrupted waiting for handshake", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TransportException) {
+                throw (TransportException) e.getCause();
+            }
+            throw new TransportException("failed to handshake with " + address, e.getCause());
+        }
+    }
 
+    /**
+     * reconnects slots whose connection is broken, a slot is back in rotation once its handshake completes
+     */
+    private class ProbeTask extends TimerTask {
+        @Override
+        public void run() {
+            final PooledRemote pool = (PooledRemote) remote;
+            for (int i = 0; i < slotAddresses.length && !closed; i++) {
+                if (pool.isHealthy(i) || !probing[i].compareAndSet(false, true)) {
+                    continue;
+                }
+                final int slot = i;
+                connect(slotAddresses[slot]).whenComplete(new BiConsumer<NettyRemote, Throwable>() {
+                    @Override
+                    public void accept(NettyRemote connection, Throwable exc) {
+                        probing[slot].set(false);
+                        if (exc != null) {
+                            log.debug("Endpoint is still down. remote address: {}", slotAddresses[slot], exc);
+                            return;
+                        }
+                        if (closed) {
+                            connection.getChannel().close();
+                            return;
+                        }
+                        final NettyRemote broken = pool.getConnection(slot);
+                        if (broken != null) {
+                            connections.remove(broken);
+                        }
+                        connections.add(connection);
+                        pool.setConnection(slot, connection);
+                        // shutdown may have gone through the connections between the check and the add
+                        if (closed) {
+                            connection.getChannel().close();
+                            connection.failPendingCalls(new TransportException("client is shut down"));
+                            return;
+                        }
+                        log.info("Endpoint is back in rotation. remote address: {}", slotAddresses[slot]);
+                    }
+                });
+            }
         }
     }
 
     @Override
     public void shutdown() {
+        closed = true;
+        if (probe != null) {
+            probe.cancel();
+        }
         keepAliveTimer.stop();
-        channel.close().awaitUninterruptibly();
+        for (NettyRemote connection : connections) {
+            connection.getChannel().close().awaitUninterruptibly();
+            connection.failPendingCalls(new TransportException("client is shut down"));
+        }
 //        bootstrap.releaseExternalResources();
-        workerGroup.shutdownGracefully();
+        resources.release();
     }
 
     @Override
@@ -1,9 +1,18 @@
 package com.volyx.rpc.client;
 
+import com.volyx.rpc.api.Compression;
 import com.volyx.rpc.api.ExceptionListener;
+import com.volyx.rpc.api.exception.ConfigurationException;
 import com.volyx.rpc.api.exception.TransportException;
+import com.volyx.rpc.common.Backpressure;
+import com.volyx.rpc.common.DispatchTable;
+import com.volyx.rpc.common.MethodTable;
 import com.volyx.rpc.common.NettyRemote;
+import com.volyx.rpc.common.PendingCalls;
+import com.volyx.rpc.common.codec.CodecConfig;
+import com.volyx.rpc.common.codec.CompressionCodec;
 import com.volyx.rpc.common.message.*;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.serialization.ClassResolver;
@@ -11,10 +20,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import java.lang.reflect.InvocationTargetException;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
-import static com.volyx.rpc.common.Util.invokeMethod;
 import static com.volyx.rpc.common.Util.unfoldStringToClasses;
 
 public class RpcClientHandler extends SimpleChannelInboundHandler implements RpcMessage.Visitor {
@@ -26,11 +36,52 @@ public class RpcClientHandler extends SimpleChannelInboundHandler implements Rpc
     private final ExceptionListener[] listeners;
     @Nonnull
     private ClassResolver classResolver;
+    @Nonnull
+    private final CodecConfig codecConfig;
+    @Nonnull
+    private final PendingCalls pendingCalls;
+    @Nonnull
+    private final CompletableFuture<NettyRemote> handshake;
+    @Nonnull
+    private final DispatchTable dispatchTable;
+    @Nonnull
+    private final Backpressure backpressure;
+    private final long callTimeout;
 
-    public RpcClientHandler(Map<Class<?>, Object> implementations, ExceptionListener[] listeners, @Nonnull ClassResolver classResolver) {
+    private Channel channel;
+    private volatile NettyRemote remote;
+
+    public RpcClientHandler(@Nonnull Map<Class<?>, Object> implementations, @Nonnull ExceptionListener[] listeners, @Nonnull ClassResolver classResolver, @Nonnull CodecConfig codecConfig, @Nonnull PendingCalls pendingCalls, @Nonnull CompletableFuture<NettyRemote> handshake, @Nonnull DispatchTable dispatchTable, @Nonnull Backpressure backpressure, long callTimeout) {
         this.implementations = implementations;
         this.listeners = listeners;
         this.classResolver = classResolver;
+        this.codecConfig = codecConfig;
+        this.pendingCalls = pendingCalls;
+        this.handshake = handshake;
+        this.dispatchTable = dispatchTable;
+        this.backpressure = backpressure;
+        this.callTimeout = callTimeout;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        channel = ctx.channel();
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        handshake.completeExceptionally(new TransportException("connection to " + ctx.channel().remoteAddress() + " is closed before handshake"));
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        final NettyRemote remote = this.remote;
+        if (remote != null) {
+            remote.writabilityChanged();
+        }
+        super.channelWritabilityChanged(ctx);
     }
 
     @Override
@@ -53,30 +104,38 @@ public class RpcClientHandler extends SimpleChannelInboundHandler implements Rpc
 
     @Override
     public void acceptHandshakeFromServer(HandshakeFromServer msg) {
-        throw new RuntimeException();
-//        try {
-//            id = msg.getClientId();
-//            remote = new NettyRemote(channel, new HashSet<Class<?>>(unfoldStringToClasses(classResolver, msg.classNames)));
-//        } catch (ClassNotFoundException e) {
-//            logger.error("interfaces registered on server side are not in the classpath", e);
-//            throw new RuntimeException("interfaces registered on server side are not in the classpath", e);
-//        } finally {
-//            latch.countDown();
-//        }
+        try {
+            final HashSet<Class<?>> classes = new HashSet<Class<?>>(unfoldStringToClasses(classResolver, msg.classNames));
+            // server compresses everything after its handshake, so the codec goes in before the next frame is read
+            if (!msg.compression.isEmpty()) {
+                CompressionCodec.install(channel.pipeline(), Compression.valueOf(msg.compression), codecConfig);
+            }
+            remote = new NettyRemote(channel, msg.getClientId(), classes, MethodTable.fromSignatures(msg.methodSignatures, classes), pendingCalls, backpressure);
+            remote.setCallTimeout(callTimeout);
+            handshake.complete(remote);
+        } catch (ClassNotFoundException e) {
+            logger.error("interfaces registered on server side are not in the classpath", e);
+            handshake.completeExceptionally(new TransportException("interfaces registered on server side are not in the classpath", e));
+        } catch (ConfigurationException e) {
+            logger.error("server sent malformed handshake", e);
+            handshake.completeExceptionally(e);
+        }
     }
 
     @Override
     public void acceptInvocationRequest(InvocationRequest msg) {
-        throw new RuntimeException();
-//        try {
-//            Class<?> clazz = classResolver.resolve(msg.className);
-//            Object impl = getImplementation(msg, clazz);
-//
-//            invokeMethod(msg, impl, classResolver);
-//        } catch (Exception exc) {
-//            logger.error("caught exception while trying to invoke implementation", exc);
-//            channel.write(new ExceptionNotify(exc));
-//        }
+        try {
+            Object impl = getImplementation(dispatchTable.getInterface(msg.methodId));
+
+            dispatchTable.invoke(msg.methodId, impl, msg.args);
+        } catch (InvocationTargetException exc) {
+            logger.error("implementation threw exception", exc.getCause());
+            Throwable cause = exc.getCause();
+            channel.writeAndFlush(new ExceptionNotify(cause instanceof Exception ? (Exception) cause : new RuntimeException(cause)));
+        } catch (Exception exc) {
+            logger.error("caught exception while trying to invoke implementation", exc);
+            channel.writeAndFlush(new ExceptionNotify(exc));
+        }
     }
 
     @Override
@@ -84,10 +143,10 @@ public class RpcClientHandler extends SimpleChannelInboundHandler implements Rpc
         // ignore
     }
 
-    private Object getImplementation(InvocationRequest msg, Class<?> clazz) {
+    private Object getImplementation(Class<?> clazz) {
         Object impl = implementations.get(clazz);
         if (impl == null) {
-            throw new RuntimeException("interface is not registered on client: " + msg.className);
+            throw new RuntimeException("interface is not registered on client: " + clazz.getName());
         }
         return impl;
     }
@@ -99,13 +158,12 @@ public class RpcClientHandler extends SimpleChannelInboundHandler implements Rpc
     }
 
     private void fireException(Exception exc) {
-        throw new RuntimeException();
-//        for (ExceptionListener listener : listeners) {
-//            try {
-//                listener.onExceptionCaught(remote, exc);
-//            } catch (Exception e) {
-//                logger.error("exception listener " + listener + " threw exception", exc);
-//            }
-//        }
+        for (ExceptionListener listener : listeners) {
+            try {
+                listener.onExceptionCaught(remote, exc);
+            } catch (Exception e) {
+                logger.error("exception listener " + listener + " threw exception", e);
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,82 +1,121 @@
 package com.volyx.rpc.client;
 
 import com.volyx.rpc.api.ExceptionListener;
+import com.volyx.rpc.common.Backpressure;
 import com.volyx.rpc.common.Constants;
+import com.volyx.rpc.common.DispatchTable;
+import com.volyx.rpc.common.NettyRemote;
+import com.volyx.rpc.common.PendingCalls;
+import com.volyx.rpc.common.TransportConfig;
+import com.volyx.rpc.common.codec.CodecConfig;
+import com.volyx.rpc.common.codec.FrameCodecs;
+import com.volyx.rpc.common.codec.LocalMessageCodec;
+import com.volyx.rpc.common.codec.MessageCodec;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.handler.codec.DelimiterBasedFrameDecoder;
-import io.netty.handler.codec.Delimiters;
-import io.netty.handler.codec.compression.ZlibCodecFactory;
-import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.channel.Channel;
 import io.netty.handler.codec.serialization.ClassResolver;
-import io.netty.handler.codec.serialization.ObjectDecoder;
-import io.netty.handler.codec.serialization.ObjectEncoder;
-import io.netty.handler.codec.string.StringDecoder;
-import io.netty.handler.codec.string.StringEncoder;
 import io.netty.handler.timeout.IdleStateHandler;
-import io.netty.util.CharsetUtil;
 
 import javax.annotation.Nonnull;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Created by dima.v on 24.10.2016.
  */
-public class RpcClientInitializer extends ChannelInitializer<SocketChannel> {
+public class RpcClientInitializer extends ChannelInitializer<Channel> {
     @Nonnull
     private final Map<Class<?>, Object> implementations;
     @Nonnull
     private final ExceptionListener[] listeners;
     @Nonnull
     private ClassResolver classResolver;
+    @Nonnull
+    private final CodecConfig codecConfig;
+    @Nonnull
+    private final TransportConfig transportConfig;
+    @Nonnull
+    private final PendingCalls pendingCalls;
+    @Nonnull
+    private final CompletableFuture<NettyRemote> handshake;
+    @Nonnull
+    private final DispatchTable dispatchTable;
+    @Nonnull
+    private final Backpressure backpressure;
+    private final long callTimeout;
     /**
      * Handles the idle channels.
      */
     private static final HeartbeatHandler heartbeatHandler = new HeartbeatHandler();
 
     /**
-     * Decodes a received string.
+     * Converts payloads to messages and back.
      */
-    private static final StringDecoder utf8Decoder = new StringDecoder(CharsetUtil.UTF_8);
+    @Nonnull
+    private final MessageCodec messageCodec;
 
     /**
-     * Encodes a requested string.
+     * Passes messages of in-JVM connections, serializing only the ones which have to be copied.
      */
-    private static final StringEncoder utf8Encoder = new StringEncoder(CharsetUtil.UTF_8);
+    @Nonnull
+    private final LocalMessageCodec localCodec;
 
     /**
      * The most important channel handler for processing business logic.
      */
-    private static final ChannelHandlerAdapter clientHandler = new ChannelHandlerAdapter();
+    @Nonnull
+    private final ChannelHandlerAdapter clientHandler;
 
-    public RpcClientInitializer(@Nonnull Map<Class<?>, Object> implementations, @Nonnull ExceptionListener[] listeners, @Nonnull ClassResolver classResolver) {
+    /**
+     * @param handshake completed with remote once server answers the handshake
+     * @param dispatchTable invokes methods of registered interfaces, its method table is sent to server during handshake
+     * @param backpressure what calls do when the channel is not writable
+     * @param callTimeout milliseconds blocking calls wait for the response
+     */
+    public RpcClientInitializer(@Nonnull Map<Class<?>, Object> implementations, @Nonnull ExceptionListener[] listeners, @Nonnull ClassResolver classResolver, @Nonnull CodecConfig codecConfig, @Nonnull TransportConfig transportConfig, @Nonnull PendingCalls pendingCalls, @Nonnull CompletableFuture<NettyRemote> handshake, @Nonnull DispatchTable dispatchTable, @Nonnull Backpressure backpressure, long callTimeout) {
         this.implementations = implementations;
         this.listeners = listeners;
         this.classResolver = classResolver;
+        this.codecConfig = codecConfig;
+        this.transportConfig = transportConfig;
+        this.pendingCalls = pendingCalls;
+        this.handshake = handshake;
+        this.dispatchTable = dispatchTable;
+        this.backpressure = backpressure;
+        this.callTimeout = callTimeout;
+        this.messageCodec = new MessageCodec(codecConfig.getSerializer(), classResolver);
+        this.localCodec = new LocalMessageCodec(codecConfig.getSerializer(), classResolver);
+        this.clientHandler = new ChannelHandlerAdapter(pendingCalls);
     }
 
     @Override
-    protected void initChannel(SocketChannel ch) throws Exception {
-//        ch.pipeline().addLast(new ObjectEncoder());
-//        ch.pipeline().addLast(new ObjectDecoder(classResolver));
-//        ch.pipeline().addLast(new RpcClientHandler(implementations, listeners, classResolver));
-
+    protected void initChannel(Channel ch) throws Exception {
         // use the IdleStateHandler to get notified if you haven't received or sent data for dozens of seconds.
         // If this is the case, a heartbeat will be written to the remote peer, and if this fails the connection is closed.
         ChannelPipeline pipeline = ch.pipeline();
         pipeline.addLast("idleStateHandler", new IdleStateHandler(0, 0, Constants.HEARTBEAT_PERIOD, TimeUnit.SECONDS));
         pipeline.addLast("heartbeatHandler", heartbeatHandler);
 
-        // NUL (0x00) is a message delimiter
-        pipeline.addLast("framer", new DelimiterBasedFrameDecoder(8192, Delimiters.nulDelimiter()));
+        if (TransportConfig.isInJvm(ch)) {
+            // in-JVM connection carries messages as objects, the codec serializes only those which have to be copied
+            pipeline.addLast("codec", localCodec.forConnection(codecConfig.getMaxFrameLength()));
+        } else {
+            // frame decoder / encoder are responsible for cutting the stream into messages, see Framing
+            FrameCodecs.addFraming(pipeline, codecConfig);
+
+            // message codec is responsible for converting payloads to messages and back, see Serializer
+            pipeline.addLast("codec", messageCodec.forConnection(codecConfig.getMaxFrameLength()));
+        }
 
-        // string encoder / decoder are responsible for encoding / decoding an UTF-8 string
-        pipeline.addLast("encoder", utf8Encoder);
-        pipeline.addLast("decoder", utf8Decoder);
+        // flush consolidator is responsible for sending bursts of calls with few syscalls, see FlushMode
+        transportConfig.addFlushing(pipeline);
 
-        // client hander is responsible for as a remoting call stub
+        // client hander is responsible for completing calls with responses
         pipeline.addLast("clientHandler", clientHandler);
+
+        // rpc handler is responsible for handshake and invocations coming from server
+        pipeline.addLast("rpcHandler", new RpcClientHandler(implementations, listeners, classResolver, codecConfig, pendingCalls, handshake, dispatchTable, backpressure, callTimeout));
     }
 }
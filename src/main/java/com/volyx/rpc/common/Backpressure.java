@@ -0,0 +1,89 @@
+package com.volyx.rpc.common;
+
+import com.volyx.rpc.api.BackpressurePolicy;
+import com.volyx.rpc.api.Remote;
+import com.volyx.rpc.api.WritabilityListener;
+import com.volyx.rpc.api.exception.ConfigurationException;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.WriteBufferWaterMark;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Immutable set of settings deciding when a connection stops being writable and what proxy calls do about it. <br/>
+ * <br/>
+ * Connection turns unwritable once bytes waiting in its outbound buffer exceed the high water mark,
+ * and writable again once they drop below the low one.
+ */
+public class Backpressure {
+
+    private static final Logger logger = LoggerFactory.getLogger(Backpressure.class);
+
+    /**
+     * netty's default water marks, calls are written regardless of them
+     */
+    public static final Backpressure NONE = new Backpressure(null, BackpressurePolicy.NONE, 0, new WritabilityListener[0]);
+
+    private final WriteBufferWaterMark waterMark;
+    private final BackpressurePolicy policy;
+    private final long blockTimeout;
+    private final WritabilityListener[] listeners;
+
+    /**
+     * @param waterMark water marks of the write buffer, null for netty's default
+     * @param blockTimeout milliseconds a call waits for writability with {@link BackpressurePolicy#BLOCK}
+     */
+    public Backpressure(WriteBufferWaterMark waterMark, BackpressurePolicy policy, long blockTimeout, WritabilityListener[] listeners) {
+        if (policy == BackpressurePolicy.BLOCK && blockTimeout <= 0) {
+            throw new ConfigurationException("blocking backpressure needs positive timeout, got " + blockTimeout);
+        }
+        this.waterMark = waterMark;
+        this.policy = policy;
+        this.blockTimeout = blockTimeout;
+        this.listeners = listeners;
+    }
+
+    public BackpressurePolicy getPolicy() {
+        return policy;
+    }
+
+    public long getBlockTimeout() {
+        return blockTimeout;
+    }
+
+    public void configure(Bootstrap bootstrap) {
+        if (waterMark != null) {
+            bootstrap.option(ChannelOption.WRITE_BUFFER_WATER_MARK, waterMark);
+        }
+    }
+
+    /**
+     * sets water marks of accepted connections
+     */
+    public void configure(ServerBootstrap bootstrap) {
+        if (waterMark != null) {
+            bootstrap.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, waterMark);
+        }
+    }
+
+    public void fireWritabilityChanged(Remote remote, boolean writable) {
+        for (WritabilityListener listener : listeners) {
+            try {
+                listener.onWritabilityChanged(remote, writable);
+            } catch (Exception e) {
+                logger.error("writability listener " + listener + " threw exception", e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Backpressure{" +
+                "waterMark=" + waterMark +
+                ", policy=" + policy +
+                ", blockTimeout=" + blockTimeout +
+                '}';
+    }
+}
@@ -0,0 +1,29 @@
+package com.volyx.rpc.common;
+
+/**
+ * Several commands sent as one request, remote side executes them in the given order
+ * and answers all of them with one {@link BatchResponse}. <br/>
+ * It is a request on its own, so it shares the id space and routing of single requests.
+ */
+public class BatchRequest extends Request {
+
+    private final Command[] commands;
+
+    /**
+     * @param id unique id, the combined response is sent back with it
+     * @param commands to be executed one after another
+     */
+    public BatchRequest(long id, Command[] commands) {
+        super(id, null);
+        this.commands = commands;
+    }
+
+    public Command[] getCommands() {
+        return this.commands;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BatchRequest-%d[%d]", getId(), this.commands.length);
+    }
+}
@@ -0,0 +1,23 @@
+package com.volyx.rpc.common;
+
+/**
+ * Answer to a {@link BatchRequest}, holds result or exception of every command in the order they were sent.
+ */
+public class BatchResponse extends Response {
+
+    private final Result[] results;
+
+    public BatchResponse(long id, Result[] results) {
+        super(id, null, null);
+        this.results = results;
+    }
+
+    public Result[] getResults() {
+        return this.results;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BatchResponse-%d[%d]", getId(), this.results.length);
+    }
+}
@@ -8,29 +8,20 @@ import java.util.List;
 
 public class Command {
     private static final Logger log = LoggerFactory.getLogger(Command.class);
-    private final String skeleton;
-    private final String method;
-    private final boolean staticMethod;
+    private final int methodId;
     private List<Object> parameters = new ArrayList<>();
     private List<Class> paramClasses = new ArrayList<>();
 
-    public Command(String skeleton, String method, boolean staticMethod) {
+    /**
+     * @param methodId id of the method in the table remote side sent during handshake, see {@link MethodTable}
+     */
+    public Command(int methodId) {
         super();
-        this.skeleton = skeleton;
-        this.method = method;
-        this.staticMethod = staticMethod;
+        this.methodId = methodId;
     }
 
-    public String getSkeleton() {
-        return this.skeleton;
-    }
-
-    public String getMethod() {
-        return this.method;
-    }
-
-    public boolean isStaticMethod() {
-        return this.staticMethod;
+    public int getMethodId() {
+        return this.methodId;
     }
 
     public List<Object> getParameters() {
@@ -17,4 +17,31 @@ public final class Constants {
     public static int HEARTBEAT_PERIOD = 60;
 
     public static String REQUEST_BOUNDARY = new String(new byte[]{0}, CharsetUtil.UTF_8);
+
+    /**
+     * milliseconds a blocking call waits for its response
+     */
+    public static final long DEFAULT_CALL_TIMEOUT = 30000;
+
+    public static int DEFAULT_MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+    /**
+     * every byte of a delimited frame is scanned for the delimiter, so those are kept short
+     */
+    public static int DEFAULT_DELIMITED_MAX_FRAME_LENGTH = 8192;
+
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+
+    public static int DEFAULT_FLUSH_MAX_MESSAGES = 256;
+
+    public static int DEFAULT_FLUSH_MAX_BYTES = 64 * 1024;
+
+    public static final short FRAME_MAGIC = 0x4E52;
+
+    public static final byte FRAME_VERSION = 1;
+
+    /**
+     * magic (2 bytes) + version (1 byte) + payload length (4 bytes)
+     */
+    public static final int FRAME_HEADER_LENGTH = 7;
 }
@@ -0,0 +1,105 @@
+package com.volyx.rpc.common;
+
+import com.volyx.rpc.api.exception.ConfigurationException;
+import org.apache.commons.lang3.ClassUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Invokes methods of the local {@link MethodTable} by id. <br/>
+ * <br/>
+ * Method handles are resolved once, when server or client is built,
+ * so an invocation is an array lookup plus an exact invoke.
+ */
+public class DispatchTable {
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final MethodTable methods;
+    private final MethodHandle[] handles;
+    private final Class<?>[][] parameterTypes;
+
+    public DispatchTable(MethodTable methods) {
+        this.methods = methods;
+        this.handles = new MethodHandle[methods.size()];
+        this.parameterTypes = new Class<?>[methods.size()][];
+        for (int id = 0; id < handles.length; id++) {
+            handles[id] = toHandle(methods.getMethod(id));
+            parameterTypes[id] = methods.getMethod(id).getParameterTypes();
+        }
+    }
+
+    /**
+     * adapts the method to (Object impl, Object[] args)Object, void methods return null
+     */
+    private static MethodHandle toHandle(Method method) {
+        try {
+            // interfaces don't have to be public, e.g. nested in a test class
+            method.setAccessible(true);
+            final MethodHandle handle = MethodHandles.lookup().unreflect(method);
+            return handle.asType(handle.type().generic())
+                    .asSpreader(Object[].class, method.getParameterCount());
+        } catch (IllegalAccessException | SecurityException e) {
+            throw new ConfigurationException("method can't be invoked: " + method, e);
+        }
+    }
+
+    public MethodTable getMethods() {
+        return methods;
+    }
+
+    /**
+     * @return interface the method with such id was registered with
+     * @throws ConfigurationException if there is no method with such id
+     */
+    public Class<?> getInterface(int id) {
+        return methods.getInterface(id);
+    }
+
+    /**
+     * @return value returned by the method, null for void methods
+     * @throws ConfigurationException if there is no method with such id or implementation does not declare it
+     * @throws IllegalArgumentException if arguments do not match parameters of the method
+     * @throws InvocationTargetException if the method threw an exception
+     */
+    public Object invoke(int id, Object impl, Object[] args) throws InvocationTargetException {
+        if (id < 0 || id >= handles.length) {
+            throw new ConfigurationException("method is not found by id: " + id);
+        }
+        // invokeExact matches on static types, a conditional expression would be typed as Object
+        final Object[] spreadArgs = args == null ? NO_ARGS : args;
+        checkArguments(id, impl, spreadArgs);
+        try {
+            return (Object) handles[id].invokeExact(impl, spreadArgs);
+        } catch (VirtualMachineError e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    /**
+     * handles would fail with ClassCastException or NullPointerException, which could not be told apart from
+     * the ones thrown by the method itself
+     */
+    private void checkArguments(int id, Object impl, Object[] args) {
+        final Class<?>[] types = parameterTypes[id];
+        if (args.length != types.length) {
+            throw new IllegalArgumentException("method " + methods.getMethod(id) + " takes " + types.length
+                    + " arguments, got " + args.length);
+        }
+        if (!methods.getMethod(id).getDeclaringClass().isInstance(impl)) {
+            throw new ConfigurationException("implementation does not declare method " + methods.getMethod(id) + ": " + impl);
+        }
+        for (int i = 0; i < args.length; i++) {
+            final Object arg = args[i];
+            if (arg == null ? types[i].isPrimitive() : !ClassUtils.isAssignable(arg.getClass(), types[i], true)) {
+                throw new IllegalArgumentException("argument " + i + " of method " + methods.getMethod(id)
+                        + " must be " + types[i].getName() + ", got " + (arg == null ? "null" : arg.getClass().getName()));
+            }
+        }
+    }
+}
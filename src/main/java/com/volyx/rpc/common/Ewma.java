@@ -0,0 +1,41 @@
+package com.volyx.rpc.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exponentially weighted moving average, updated without locks from any thread. <br/>
+ * Recent samples weigh more, so the average follows a connection getting slower or faster.
+ */
+public class Ewma {
+
+    private final double alpha;
+    private final AtomicLong bits;
+
+    /**
+     * @param alpha weight of a new sample, between 0 and 1
+     * @param initial value before the first sample, NaN to take the first sample as it is
+     */
+    public Ewma(double alpha, double initial) {
+        this.alpha = alpha;
+        this.bits = new AtomicLong(Double.doubleToRawLongBits(initial));
+    }
+
+    public void update(double sample) {
+        long current;
+        long updated;
+        do {
+            current = bits.get();
+            final double value = Double.longBitsToDouble(current);
+            updated = Double.doubleToRawLongBits(Double.isNaN(value) ? sample : value + alpha * (sample - value));
+        } while (!bits.compareAndSet(current, updated));
+    }
+
+    public double get() {
+        return Double.longBitsToDouble(bits.get());
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(get());
+    }
+}
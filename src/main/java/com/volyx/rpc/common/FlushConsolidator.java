@@ -0,0 +1,144 @@
+package com.volyx.rpc.common;
+
+import com.volyx.rpc.api.FlushMode;
+import com.volyx.rpc.common.message.InvocationRequest;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * Gathers flushes of a channel, so a burst of messages is sent with a few syscalls instead of one per message. <br/>
+ * <br/>
+ * Messages written from other threads reach the event loop as separate tasks, the first flush among them schedules
+ * a single flush task behind them. Flushes requested while a read is in progress wait until the read completes.
+ * A flush is done right away once unflushed messages or bytes reach the thresholds.
+ * Handler keeps per-channel state and runs on the channel's event loop only.
+ */
+public class FlushConsolidator extends ChannelDuplexHandler {
+
+    public static final String NAME = "flushConsolidator";
+
+    private final FlushMode mode;
+    private final int maxMessages;
+    private final long maxBytes;
+
+    private ChannelHandlerContext context;
+    private int unflushedMessages;
+    /**
+     * whether a message which must not wait for explicit flush is written since last flush
+     */
+    private boolean urgent;
+    private boolean reading;
+    private boolean flushScheduled;
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled = false;
+            flushNow();
+        }
+    };
+
+    /**
+     * @param mode either {@link FlushMode#CONSOLIDATED} or {@link FlushMode#EXPLICIT}
+     * @param maxMessages unflushed messages which trigger a flush
+     * @param maxBytes unflushed bytes which trigger a flush
+     */
+    public FlushConsolidator(FlushMode mode, int maxMessages, long maxBytes) {
+        this.mode = mode;
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.context = ctx;
+        super.handlerAdded(ctx);
+    }
+
+    /**
+     * flushes whatever is written, e.g. calls waiting for explicit flush, may be called from any thread
+     */
+    public void forceFlush() {
+        if (context.executor().inEventLoop()) {
+            flushNow();
+        } else {
+            context.executor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    flushNow();
+                }
+            });
+        }
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        unflushedMessages++;
+        if (mode != FlushMode.EXPLICIT || !isCall(msg)) {
+            urgent = true;
+        }
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (unflushedMessages == 0) {
+            ctx.flush();
+            return;
+        }
+        if (unflushedMessages >= maxMessages || unflushedBytes() >= maxBytes) {
+            flushNow();
+            return;
+        }
+        if (!urgent || reading || flushScheduled) {
+            // explicit flush, read completion or scheduled task will flush it
+            return;
+        }
+        flushScheduled = true;
+        ctx.executor().execute(flushTask);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        reading = true;
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        reading = false;
+        if (urgent) {
+            flushNow();
+        }
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        // messages still buffered would be failed by close otherwise
+        flushNow();
+        ctx.close(promise);
+    }
+
+    private void flushNow() {
+        if (unflushedMessages > 0) {
+            unflushedMessages = 0;
+            urgent = false;
+            context.flush();
+        }
+    }
+
+    private long unflushedBytes() {
+        final ChannelOutboundBuffer buffer = context.channel().unsafe().outboundBuffer();
+        return buffer == null ? 0 : buffer.totalPendingWriteBytes();
+    }
+
+    /**
+     * calls made through proxies, they wait for explicit flush in {@link FlushMode#EXPLICIT} mode
+     */
+    private static boolean isCall(Object msg) {
+        return msg instanceof InvocationRequest || msg instanceof Request && !((Request) msg).isHeartbeat();
+    }
+}
@@ -1,8 +1,11 @@
 package com.volyx.rpc.common;
 
-import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import com.volyx.rpc.common.json.GsonSerializer;
 
+import java.io.IOException;
+
 public abstract class JsonSerializer {
     /**
      * Apply a lazy-loaded singleton - Initialization on Demand Holder.<br>
@@ -30,12 +33,13 @@ public abstract class JsonSerializer {
     public abstract String toJson(Object src, Class srcClass);
 
     /**
-     * Serializes an object into its equivalent json string
+     * Streams an object as json, no intermediate string or json tree is built
      *
      * @param src an object
-     * @return a json element represents the specified object
+     * @param srcClass the specific class of src object.
+     * @param writer a json writer the object is written to
      */
-    public abstract JsonElement toJsonElement(Object src);
+    public abstract void toJson(Object src, Class srcClass, JsonWriter writer) throws IOException;
 
     /**
      * Deserializes a json string into an object of the specified class
@@ -47,12 +51,12 @@ public abstract class JsonSerializer {
     public abstract <T> T fromJson(String jsonString, Class<T> srcClass);
 
     /**
-     * Deserializes a json element into an object of the specified class
+     * Reads the next json value from the stream into an object of the specified class
      *
-     * @param jsonElement
-     * @param srcClass an object of the specified object.
+     * @param reader a json reader positioned at the value
+     * @param srcClass a specific class of the specified object
      * @return the specified object
      */
-    public abstract <T> T fromJsonElement(JsonElement jsonElement, Class<T> srcClass);
+    public abstract <T> T fromJson(JsonReader reader, Class<T> srcClass) throws IOException;
 
 }
@@ -5,30 +5,44 @@ import java.util.Timer;
 import java.util.TimerTask;
 
 import com.volyx.rpc.common.message.KeepAlive;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 
 public class KeepAliveTimer {
 
     private final Collection<NettyRemote> remotes;
-    private final Timer timer;    
+    private final TimerTask task = new KeepaliveTimerTask();
 
-    public KeepAliveTimer(Collection<NettyRemote> remotes, long keepalivePeriod) {
+    /**
+     * @param timer may be shared by many clients, it is not cancelled when this one stops
+     */
+    public KeepAliveTimer(Timer timer, Collection<NettyRemote> remotes, long keepalivePeriod) {
         this.remotes = remotes;
-        this.timer = new Timer("KeepAliveTimer", true);
 
         if(keepalivePeriod > 0) {
-            timer.scheduleAtFixedRate(new KeepaliveTimerTask(), 0, keepalivePeriod);
+            timer.scheduleAtFixedRate(task, 0, keepalivePeriod);
         }
     }
 
     public void stop() {
-        timer.cancel();
+        task.cancel();
     }
 
     private class KeepaliveTimerTask extends TimerTask {
         @Override
         public void run() {
             for (NettyRemote remote : remotes) {
-                remote.getChannel().writeAndFlush(new KeepAlive());
+                final Channel channel = remote.getChannel();
+                channel.writeAndFlush(new KeepAlive()).addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) {
+                        // let the handlers report a broken connection to exception listeners
+                        if (!future.isSuccess() && channel.isOpen()) {
+                            channel.pipeline().fireExceptionCaught(future.cause());
+                        }
+                    }
+                });
             }
         }
     }
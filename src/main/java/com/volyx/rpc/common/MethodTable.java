@@ -0,0 +1,180 @@
+package com.volyx.rpc.common;
+
+import com.volyx.rpc.api.exception.ConfigurationException;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Numbers methods of the interfaces one side of a connection implements. <br/>
+ * <br/>
+ * Implementing side builds the table and sends its signatures during handshake,
+ * calling side matches them against its own interfaces, so invocations carry
+ * a small int instead of class and method names.
+ */
+public class MethodTable {
+
+    public static final MethodTable EMPTY = new MethodTable(new Class<?>[0], new Method[0]);
+
+    private static final Comparator<Method> BY_SIGNATURE = new Comparator<Method>() {
+        @Override
+        public int compare(Method m1, Method m2) {
+            return signature(m1).compareTo(signature(m2));
+        }
+    };
+
+    private final Class<?>[] interfaces;
+    private final Method[] methods;
+    private final Map<Class<?>, Map<Method, Integer>> ids = new HashMap<>();
+
+    private MethodTable(Class<?>[] interfaces, Method[] methods) {
+        this.interfaces = interfaces;
+        this.methods = methods;
+        for (int i = 0; i < methods.length; i++) {
+            if (methods[i] == null) {
+                continue;
+            }
+            Map<Method, Integer> interfaceIds = ids.get(interfaces[i]);
+            if (interfaceIds == null) {
+                interfaceIds = new HashMap<>();
+                ids.put(interfaces[i], interfaceIds);
+            }
+            interfaceIds.put(methods[i], i);
+        }
+    }
+
+    /**
+     * numbers methods of the implemented interfaces
+     */
+    public static MethodTable of(Collection<Class<?>> interfaces) {
+        final List<Class<?>> tableInterfaces = new ArrayList<>();
+        final List<Method> tableMethods = new ArrayList<>();
+        for (Class<?> clazz : interfaces) {
+            final Method[] methods = clazz.getMethods();
+            Arrays.sort(methods, BY_SIGNATURE);
+            for (Method method : methods) {
+                tableInterfaces.add(clazz);
+                tableMethods.add(method);
+            }
+        }
+        return new MethodTable(tableInterfaces.toArray(new Class<?>[tableInterfaces.size()]), tableMethods.toArray(new Method[tableMethods.size()]));
+    }
+
+    /**
+     * rebuilds table of remote side from its signatures <br/>
+     * signatures unknown to local interfaces are skipped, calling such methods fails only if they are actually called
+     * @throws ConfigurationException if a signature is not interface name, '#' and method
+     */
+    public static MethodTable fromSignatures(String[] signatures, Collection<Class<?>> interfaces) {
+        final Map<String, Class<?>> byName = new HashMap<>();
+        for (Class<?> clazz : interfaces) {
+            byName.put(clazz.getName(), clazz);
+        }
+
+        final Class<?>[] tableInterfaces = new Class<?>[signatures.length];
+        final Method[] tableMethods = new Method[signatures.length];
+        for (int i = 0; i < signatures.length; i++) {
+            final String signature = signatures[i];
+            // signatures come from the remote side, see signature(Class, Method)
+            final int separator = signature == null ? -1 : signature.indexOf('#');
+            if (separator <= 0) {
+                throw new ConfigurationException("malformed method signature received from remote side: " + signature);
+            }
+            final Class<?> clazz = byName.get(signature.substring(0, separator));
+            if (clazz == null) {
+                continue;
+            }
+            for (Method method : clazz.getMethods()) {
+                if (signature.equals(signature(clazz, method))) {
+                    tableInterfaces[i] = clazz;
+                    tableMethods[i] = method;
+                    break;
+                }
+            }
+        }
+        return new MethodTable(tableInterfaces, tableMethods);
+    }
+
+    public String[] getSignatures() {
+        final String[] signatures = new String[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            signatures[i] = methods[i] == null ? null : signature(interfaces[i], methods[i]);
+        }
+        return signatures;
+    }
+
+    /**
+     * @return whether remote side knows the method called through proxy of the interface
+     */
+    public boolean contains(Class<?> clazz, Method method) {
+        final Map<Method, Integer> interfaceIds = ids.get(clazz);
+        return interfaceIds != null && interfaceIds.containsKey(method);
+    }
+
+    /**
+     * @return id of method called through proxy of the interface
+     * @throws ConfigurationException if remote side does not know the method
+     */
+    public int getId(Class<?> clazz, Method method) {
+        final Map<Method, Integer> interfaceIds = ids.get(clazz);
+        final Integer id = interfaceIds == null ? null : interfaceIds.get(method);
+        if (id == null) {
+            throw new ConfigurationException("method is not implemented on remote side: " + signature(clazz, method));
+        }
+        return id;
+    }
+
+    /**
+     * @throws ConfigurationException if there is no method with such id
+     */
+    public Method getMethod(int id) {
+        checkId(id);
+        return methods[id];
+    }
+
+    /**
+     * @return interface the method with such id was registered with
+     * @throws ConfigurationException if there is no method with such id
+     */
+    public Class<?> getInterface(int id) {
+        checkId(id);
+        return interfaces[id];
+    }
+
+    public int size() {
+        return methods.length;
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= methods.length || methods[id] == null) {
+            throw new ConfigurationException("method is not found by id: " + id);
+        }
+    }
+
+    private static String signature(Method method) {
+        return signature(method.getDeclaringClass(), method);
+    }
+
+    static String signature(Class<?> clazz, Method method) {
+        final StringBuilder signature = new StringBuilder(clazz.getName()).append('#').append(method.getName()).append('(');
+        final Class<?>[] paramClasses = method.getParameterTypes();
+        for (int i = 0; i < paramClasses.length; i++) {
+            if (i > 0) {
+                signature.append(',');
+            }
+            signature.append(paramClasses[i].getName());
+        }
+        return signature.append(')').toString();
+    }
+
+    @Override
+    public String toString() {
+        return "MethodTable{" + Arrays.toString(getSignatures()) + "}";
+    }
+}
@@ -0,0 +1,81 @@
+package com.volyx.rpc.common;
+
+import com.volyx.rpc.api.MicroBatch;
+import com.volyx.rpc.common.message.InvocationRequest;
+import io.netty.channel.Channel;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accumulates calls of a {@link MicroBatch} method of one connection and sends them as one call of its bulk method. <br/>
+ * <br/>
+ * The first item of a window schedules its flush on the channel's event loop, a full window is sent by the caller
+ * which filled it. Windows are written while holding the lock, so they go out in the order they were opened.
+ */
+class MicroBatcher implements Runnable {
+
+    private final Channel channel;
+    private final int bulkMethodId;
+    private final int maxItems;
+    private final long maxDelayMicros;
+
+    /**
+     * items of the open window, null if there is none
+     */
+    private ArrayList<Object> items;
+    private ScheduledFuture<?> scheduledFlush;
+
+    MicroBatcher(Channel channel, int bulkMethodId, MicroBatch microBatch) {
+        this.channel = channel;
+        this.bulkMethodId = bulkMethodId;
+        this.maxItems = microBatch.maxItems();
+        this.maxDelayMicros = microBatch.maxDelayMicros();
+    }
+
+    synchronized void add(Object item) {
+        if (items == null) {
+            items = new ArrayList<>(Math.min(maxItems, 1024));
+            if (maxItems > 1) {
+                scheduledFlush = channel.eventLoop().schedule(this, maxDelayMicros, TimeUnit.MICROSECONDS);
+            }
+        }
+        items.add(item);
+        if (items.size() >= maxItems) {
+            send(takeItems());
+        }
+    }
+
+    /**
+     * sends the open window, if any, before its time
+     */
+    synchronized void flush() {
+        if (items != null) {
+            send(takeItems());
+        }
+    }
+
+    /**
+     * window's delay is over
+     */
+    @Override
+    public void run() {
+        flush();
+    }
+
+    private ArrayList<Object> takeItems() {
+        final ArrayList<Object> taken = items;
+        items = null;
+        if (scheduledFlush != null) {
+            // a flush which already started would find the next window, sending it early does no harm
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return taken;
+    }
+
+    private void send(ArrayList<Object> batch) {
+        channel.writeAndFlush(new InvocationRequest(bulkMethodId, new Object[]{batch}));
+    }
+}
@@ -4,46 +4,137 @@ import java.io.Serializable;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelId;
+import io.netty.channel.ChannelOutboundBuffer;
+import com.volyx.rpc.api.BackpressurePolicy;
+import com.volyx.rpc.api.MicroBatch;
 import com.volyx.rpc.api.Remote;
+import com.volyx.rpc.api.exception.BackpressureException;
 import com.volyx.rpc.api.exception.ConfigurationException;
+import com.volyx.rpc.api.exception.RemoteException;
+import com.volyx.rpc.api.exception.TransportException;
+import com.volyx.rpc.common.codec.CompressionCodec;
+import com.volyx.rpc.common.codec.CompressionStats;
 import com.volyx.rpc.common.message.InvocationRequest;
 
-import static com.volyx.rpc.common.Util.foldClassesToStrings;
-import static com.volyx.rpc.common.Util.toSerializable;
-
 public class NettyRemote implements Remote, Serializable {
 
+    private static final double LATENCY_WEIGHT = 0.2;
+
     private final Channel channel;
+    private final ChannelId id;
     private final Set<Class<?>> classes;
+    private final MethodTable methods;
+    private final PendingCalls pendingCalls;
+    private final Backpressure backpressure;
+    /**
+     * writability listeners were last told about, accessed on the event loop only
+     */
+    private boolean reportedWritable = true;
+    /**
+     * calls blocked by {@link BackpressurePolicy#BLOCK} wait on it, private so callers locking the remote don't interfere
+     */
+    private final Object writabilityLock = new Object();
+    /**
+     * proxies are stateless, so one per interface is enough
+     */
+    private final ConcurrentMap<Class<?>, Object> proxies = new ConcurrentHashMap<>();
+    /**
+     * response time of requests in nanoseconds, null unless tracked
+     */
+    private volatile Ewma latency;
+    /**
+     * milliseconds blocking calls wait for their response
+     */
+    private volatile long callTimeout = Constants.DEFAULT_CALL_TIMEOUT;
+
+    /**
+     * @param methods table remote side sent during handshake, calls are sent with ids from it
+     */
+    public NettyRemote(Channel channel, Set<Class<?>> classes, MethodTable methods) {
+        this(channel, classes, methods, Backpressure.NONE);
+    }
 
-    public NettyRemote(Channel channel, Set<Class<?>> classes) {
+    /**
+     * @param methods table remote side sent during handshake, calls are sent with ids from it
+     * @param backpressure what calls do when the channel is not writable
+     */
+    public NettyRemote(Channel channel, Set<Class<?>> classes, MethodTable methods, Backpressure backpressure) {
+        this(channel, channel.id(), classes, methods, null, backpressure);
+    }
+
+    /**
+     * @param id the remote is known by, e.g. the one server assigned to this client during handshake
+     * @param methods table remote side sent during handshake, calls are sent with ids from it
+     * @param pendingCalls table responses received over the channel are routed to, null if remote side never responds
+     */
+    public NettyRemote(Channel channel, ChannelId id, Set<Class<?>> classes, MethodTable methods, PendingCalls pendingCalls) {
+        this(channel, id, classes, methods, pendingCalls, Backpressure.NONE);
+    }
+
+    /**
+     * @param backpressure what calls do when the channel is not writable
+     */
+    public NettyRemote(Channel channel, ChannelId id, Set<Class<?>> classes, MethodTable methods, PendingCalls pendingCalls, Backpressure backpressure) {
         this.channel = channel;
+        this.id = id;
         this.classes = classes;
+        this.methods = methods;
+        this.pendingCalls = pendingCalls;
+        this.backpressure = backpressure;
+    }
+
+    /**
+     * @return handler of the cached proxy, lets another remote route calls over this one's channel
+     */
+    InvocationHandler getInvocationHandler(Class<?> clazz) {
+        return Proxy.getInvocationHandler(getProxy(clazz));
     }
 
     @Override
     @SuppressWarnings({"unchecked"})
     public <T> T getProxy(Class<T> clazz) {
-        if (classes.contains(clazz)) {
-            return (T) Proxy.newProxyInstance(clazz.getClassLoader(), new Class[]{clazz}, new ProxyHandler());
+        final Object proxy = proxies.get(clazz);
+        if (proxy != null) {
+            return (T) proxy;
+        }
+        if (!classes.contains(clazz)) {
+            throw new ConfigurationException("no implementation on remote side for " + clazz.getCanonicalName());
         }
 
-        throw new ConfigurationException("no implementation on remote side for " + clazz.getCanonicalName());
+        final Object created = Proxy.newProxyInstance(clazz.getClassLoader(), new Class[]{clazz}, new ProxyHandler(clazz));
+        final Object raced = proxies.putIfAbsent(clazz, created);
+        return (T) (raced == null ? created : raced);
     }
 
     @Override
     public ChannelId getId() {
-        return channel.id();
+        return id;
     }
 
     @Override
     public String getRemoteAddress() {
-        return channel.remoteAddress().toString();
+        return String.valueOf(channel.remoteAddress());
     }
 
     @Override
@@ -55,9 +146,219 @@ public class NettyRemote implements Remote, Serializable {
         return channel;
     }
 
+    /**
+     * @return byte counters of the connection, null if no compression was negotiated for it
+     */
+    public CompressionStats getCompressionStats() {
+        final ChannelHandler compression = channel.pipeline().get(CompressionCodec.NAME);
+        return compression == null ? null : ((CompressionCodec) compression).getStats();
+    }
+
+    /**
+     * also sends items micro batched so far, see {@link MicroBatch}
+     */
+    @Override
+    public void flush() {
+        for (Object proxy : proxies.values()) {
+            ((ProxyHandler) Proxy.getInvocationHandler(proxy)).flushMicroBatches();
+        }
+        flushChannel();
+    }
+
+    /**
+     * flushes whatever is written to the channel, calls waiting for explicit flush included
+     */
+    private void flushChannel() {
+        final ChannelHandler flushing = channel.pipeline().get(FlushConsolidator.NAME);
+        if (flushing != null) {
+            ((FlushConsolidator) flushing).forceFlush();
+        } else {
+            channel.flush();
+        }
+    }
+
+    /**
+     * to be called by the channel's handler once writability changes, wakes up calls waiting for it
+     */
+    public void writabilityChanged() {
+        final boolean writable = channel.isWritable();
+        // netty may fire the event more than once per transition, e.g. for a message split into several buffers
+        if (writable == reportedWritable) {
+            return;
+        }
+        reportedWritable = writable;
+        if (writable && backpressure.getPolicy() == BackpressurePolicy.BLOCK) {
+            synchronized (writabilityLock) {
+                writabilityLock.notifyAll();
+            }
+        }
+        backpressure.fireWritabilityChanged(this, writable);
+    }
+
+    /**
+     * applies backpressure policy before a call is written
+     * @return false if the call is to be dropped
+     * @throws BackpressureException if the call is refused
+     */
+    private boolean checkWritable(String call, boolean dropAllowed) {
+        if (backpressure.getPolicy() == BackpressurePolicy.NONE || channel.isWritable()) {
+            return true;
+        }
+        switch (backpressure.getPolicy()) {
+            case DROP:
+                if (dropAllowed) {
+                    return false;
+                }
+                break;
+            case BLOCK:
+                // writability changes on the event loop, waiting there would never end
+                if (!channel.eventLoop().inEventLoop() && awaitWritable(backpressure.getBlockTimeout())) {
+                    return true;
+                }
+                break;
+        }
+        throw new BackpressureException("call of " + call + " is refused, " + this + " has " + getOutstandingBytes() + " bytes waiting to be sent");
+    }
+
+    /**
+     * @return whether the channel became writable, closed channel is not waited for, its writes fail anyway
+     */
+    private boolean awaitWritable(long timeout) {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        synchronized (writabilityLock) {
+            while (!channel.isWritable() && channel.isActive()) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(writabilityLock, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return bytes written to the channel but not yet sent to the socket
+     */
+    public long getOutstandingBytes() {
+        final ChannelOutboundBuffer buffer = channel.unsafe().outboundBuffer();
+        return buffer == null ? 0 : buffer.totalPendingWriteBytes();
+    }
+
+    /**
+     * @param millis time blocking calls wait for their response before failing with {@link TransportException}
+     */
+    public void setCallTimeout(long millis) {
+        if (millis <= 0) {
+            throw new ConfigurationException("call timeout must be positive, got " + millis);
+        }
+        this.callTimeout = millis;
+    }
+
+    /**
+     * starts measuring response times, see {@link #getLatency()}
+     */
+    public void trackLatency() {
+        if (latency == null) {
+            latency = new Ewma(LATENCY_WEIGHT, Double.NaN);
+        }
+    }
+
+    /**
+     * @return moving average of response times in nanoseconds, NaN if not tracked or nothing answered yet
+     */
+    public double getLatency() {
+        final Ewma latency = this.latency;
+        return latency == null ? Double.NaN : latency.get();
+    }
+
+    /**
+     * fails all the requests waiting for response, e.g. once the connection is closed
+     */
+    public void failPendingCalls(Throwable cause) {
+        if (pendingCalls != null) {
+            pendingCalls.failAll(cause);
+        }
+    }
+
+    /**
+     * @return number of requests sent but not answered yet
+     */
+    public int getPendingCallCount() {
+        return pendingCalls == null ? 0 : pendingCalls.size();
+    }
+
+    /**
+     * sends command without waiting for previously sent ones to be answered
+     * @param command to be executed on remote side
+     * @return future, completed when response with the same id arrives, or exceptionally if it can't be sent
+     */
+    public CompletableFuture<Response> send(Command command) {
+        return send(command, null);
+    }
+
+    /**
+     * @param batch commands sent as one {@link BatchRequest} in place of the single command, null to send the command alone
+     */
+    private CompletableFuture<Response> send(Command command, Command[] batch) {
+        if (pendingCalls == null) {
+            throw new ConfigurationException("remote side of " + this + " does not answer requests");
+        }
+
+        final CompletableFuture<Response> future = new CompletableFuture<>();
+        final Ewma latency = this.latency;
+        if (latency != null) {
+            final long start = System.nanoTime();
+            future.whenComplete(new BiConsumer<Response, Throwable>() {
+                @Override
+                public void accept(Response response, Throwable exc) {
+                    latency.update(System.nanoTime() - start);
+                }
+            });
+        }
+        final long id = pendingCalls.register(future);
+        final Request request = batch == null ? new Request(id, command) : new BatchRequest(id, batch);
+        channel.writeAndFlush(request).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture channelFuture) {
+                if (!channelFuture.isSuccess() && pendingCalls.remove(id) != null) {
+                    future.completeExceptionally(new TransportException("failed to send request " + id, channelFuture.cause()));
+                }
+            }
+        });
+        return future;
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked"})
+    public <T> CompletableFuture<Void> batch(Class<T> clazz, Consumer<? super T> calls) {
+        final Batch batch = new Batch((ProxyHandler) getInvocationHandler(clazz));
+        try {
+            calls.accept((T) Proxy.newProxyInstance(clazz.getClassLoader(), new Class[]{clazz}, batch));
+        } finally {
+            batch.closed = true;
+        }
+        if (batch.commands.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        try {
+            checkWritable("batch of " + batch.commands.size() + " calls", false);
+        } catch (BackpressureException e) {
+            final CompletableFuture<Response> refused = new CompletableFuture<>();
+            refused.completeExceptionally(e);
+            return refused.handle(batch);
+        }
+        return send(null, batch.commands.toArray(new Command[batch.commands.size()])).handle(batch);
+    }
+
     @Override
     public int hashCode() {
-        return channel.id().hashCode();
+        return id.hashCode();
     }
 
     @Override
@@ -67,27 +368,258 @@ public class NettyRemote implements Remote, Serializable {
 
         NettyRemote that = (NettyRemote) o;
 
-        return this.channel.id().equals(that.channel.id());
+        return this.id.equals(that.id);
     }
 
     @Override
     public String toString() {
-        return "NettyRemote{" + channel.id() + "}";
+        return "NettyRemote{" + id + "}";
     }
 
     private class ProxyHandler implements InvocationHandler {
 
+        private final Class<?> clazz;
+        /**
+         * everything a call needs is resolved once per interface, so calls do no reflection or string building
+         */
+        private final Map<Method, RemoteMethod> remoteMethods = new HashMap<>();
+
+        private ProxyHandler(Class<?> clazz) {
+            this.clazz = clazz;
+            for (Method method : clazz.getMethods()) {
+                remoteMethods.put(method, new RemoteMethod(clazz, method));
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            final RemoteMethod remoteMethod = remoteMethods.get(method);
+            if (remoteMethod == null) {
+                return invokeObjectMethod(proxy, method, args);
+            }
+
+            // checked before anything is sent, a call the caller can't wait for must not run on the remote side either
+            if (remoteMethod.returnKind == ReturnKind.BLOCKING && channel.eventLoop().inEventLoop()) {
+                throw new ConfigurationException("blocking call of " + method.getName() + " from event loop would never complete, return CompletableFuture instead");
+            }
+            if (!checkWritable(method.getName(), remoteMethod.returnKind == ReturnKind.VOID)) {
+                return null;
+            }
+            if (remoteMethod.microBatcher != null) {
+                remoteMethod.microBatcher.add(args[0]);
+                return null;
+            }
+
+            final int methodId = remoteMethod.getId();
+            if (remoteMethod.returnKind == ReturnKind.VOID) {
+                channel.writeAndFlush(new InvocationRequest(methodId, args));
+                return null;
+            }
+
+            final CompletableFuture<Object> result = send(toCommand(methodId, remoteMethod.paramClasses, args)).thenApply(UNPACK_RESULT);
+            if (remoteMethod.returnKind == ReturnKind.FUTURE) {
+                return result;
+            }
+
+            // caller is about to wait for the response, the request must not wait for explicit flush
+            flushChannel();
+            final long timeout = callTimeout;
+            try {
+                return result.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            } catch (TimeoutException e) {
+                throw new TransportException("no response to call of " + method.getName() + " in " + timeout + " ms from " + NettyRemote.this, e);
+            }
+        }
+
+        private void flushMicroBatches() {
+            for (RemoteMethod remoteMethod : remoteMethods.values()) {
+                if (remoteMethod.microBatcher != null) {
+                    remoteMethod.microBatcher.flush();
+                }
+            }
+        }
+
+        /**
+         * equals, hashCode and toString are answered locally, so proxies can be kept in collections
+         */
+        private Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return clazz.getName() + "@" + NettyRemote.this;
+                default:
+                    throw new ConfigurationException("method can't be called on remote proxy: " + method);
+            }
+        }
+
+    }
+
+    /**
+     * collects calls made inside batch scope, then hands results of the combined response out to them
+     */
+    private class Batch implements InvocationHandler, BiFunction<Response, Throwable, Void> {
+
+        private final ProxyHandler handler;
+        private final List<Command> commands = new ArrayList<>();
+        /**
+         * futures returned to the calls, null for void ones
+         */
+        private final List<CompletableFuture<Object>> results = new ArrayList<>();
+        private volatile boolean closed;
+
+        private Batch(ProxyHandler handler) {
+            this.handler = handler;
+        }
+
         @Override
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-            channel.writeAndFlush(new InvocationRequest(
-                    method.getDeclaringClass().getName(),
-                    method.getName(),
-                    toSerializable(args),
-                    foldClassesToStrings(Arrays.asList(method.getParameterTypes())))
-            );
+            final RemoteMethod remoteMethod = handler.remoteMethods.get(method);
+            if (remoteMethod == null) {
+                return handler.invokeObjectMethod(proxy, method, args);
+            }
+            if (closed) {
+                throw new ConfigurationException("batch proxy can't be used once its scope is over, call of " + method.getName());
+            }
+            if (remoteMethod.returnKind == ReturnKind.BLOCKING) {
+                throw new ConfigurationException("blocking call of " + method.getName() + " can't be batched, return CompletableFuture instead");
+            }
+
+            commands.add(toCommand(remoteMethod.getId(), remoteMethod.paramClasses, args));
+            final CompletableFuture<Object> result = remoteMethod.returnKind == ReturnKind.FUTURE ? new CompletableFuture<>() : null;
+            results.add(result);
+            return result;
+        }
+
+        /**
+         * completes the calls in order and fails the batch with the first exception any of them got
+         */
+        @Override
+        public Void apply(Response response, Throwable exc) {
+            RuntimeException failure = null;
+            if (exc != null) {
+                failure = exc instanceof RuntimeException ? (RuntimeException) exc : new TransportException(exc);
+            } else if (!(response instanceof BatchResponse)) {
+                // whole batch was refused, e.g. rejected by a saturated executor
+                failure = toRemoteException(response.getResult() == null ? null : response.getResult().getReturn());
+            } else if (((BatchResponse) response).getResults().length != results.size()) {
+                failure = new RemoteException("batch of " + results.size() + " calls is answered with " + ((BatchResponse) response).getResults().length + " results");
+            }
+            if (failure != null) {
+                for (CompletableFuture<Object> result : results) {
+                    if (result != null) {
+                        result.completeExceptionally(failure);
+                    }
+                }
+                throw failure;
+            }
+
+            final Result[] answers = ((BatchResponse) response).getResults();
+            for (int i = 0; i < answers.length; i++) {
+                final CompletableFuture<Object> result = results.get(i);
+                if (answers[i].isExceptional()) {
+                    final RemoteException callFailure = toRemoteException(answers[i].getReturn());
+                    if (failure == null) {
+                        failure = callFailure;
+                    }
+                    if (result != null) {
+                        result.completeExceptionally(callFailure);
+                    }
+                } else if (result != null) {
+                    result.complete(answers[i].getReturn());
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
             return null;
         }
+    }
+
+    private enum ReturnKind {
+        VOID, FUTURE, BLOCKING
+    }
+
+    /**
+     * call metadata of a method of proxied interface
+     */
+    private class RemoteMethod {
+
+        private final Class<?> clazz;
+        private final Method method;
+        private final Class<?>[] paramClasses;
+        private final ReturnKind returnKind;
+        private final int id;
+        /**
+         * accumulates calls of {@link MicroBatch} method, null for other methods
+         */
+        private final MicroBatcher microBatcher;
+
+        private RemoteMethod(Class<?> clazz, Method method) {
+            this.clazz = clazz;
+            this.method = method;
+            this.paramClasses = method.getParameterTypes();
+            final Class<?> returnType = method.getReturnType();
+            this.returnKind = returnType == Void.TYPE ? ReturnKind.VOID : returnType == CompletableFuture.class ? ReturnKind.FUTURE : ReturnKind.BLOCKING;
+            this.id = methods.contains(clazz, method) ? methods.getId(clazz, method) : -1;
+            this.microBatcher = createMicroBatcher(clazz, method);
+        }
+
+        /**
+         * calls are sent one by one if remote side does not know the bulk method
+         */
+        private MicroBatcher createMicroBatcher(Class<?> clazz, Method method) {
+            final MicroBatch microBatch = method.getAnnotation(MicroBatch.class);
+            if (microBatch == null) {
+                return null;
+            }
+            final Method bulk = Validator.findBulkMethod(clazz, microBatch.value());
+            return methods.contains(clazz, bulk) ? new MicroBatcher(channel, methods.getId(clazz, bulk), microBatch) : null;
+        }
 
+        /**
+         * @throws ConfigurationException if remote side does not know the method
+         */
+        private int getId() {
+            if (id < 0) {
+                // fails with a descriptive message
+                return methods.getId(clazz, method);
+            }
+            return id;
+        }
     }
 
+    private static Command toCommand(int methodId, Class<?>[] paramClasses, Object[] args) {
+        final Command command = new Command(methodId);
+        for (int i = 0; i < paramClasses.length; i++) {
+            command.addParameter(args[i], paramClasses[i]);
+        }
+        return command;
+    }
+
+    /**
+     * @param thrown stack trace text of the remote exception, or the exception itself if it was not serialized
+     */
+    private static RemoteException toRemoteException(Object thrown) {
+        return thrown instanceof Throwable ? new RemoteException((Throwable) thrown) : new RemoteException(String.valueOf(thrown));
+    }
+
+    private static final Function<Response, Object> UNPACK_RESULT = new Function<Response, Object>() {
+        @Override
+        public Object apply(Response response) {
+            final Result result = response.getResult();
+            if (result == null) {
+                return null;
+            }
+            if (result.isExceptional()) {
+                throw toRemoteException(result.getReturn());
+            }
+            return result.getReturn();
+        }
+    };
+
 }
@@ -0,0 +1,204 @@
+package com.volyx.rpc.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registry of calls sent over a connection and still waiting for their {@link Response}. <br/>
+ * Calls are keyed by primitive request id, so neither lookup nor registration boxes the id. <br/>
+ * Table is split into independently locked stripes, each stripe is an open-addressing hash table
+ * with linear probing, so registering and completing calls from different threads rarely contend.
+ */
+public class PendingCalls {
+
+    private static final int STRIPE_BITS = 4;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    private static final int STRIPE_MASK = STRIPES - 1;
+    private static final int INITIAL_STRIPE_CAPACITY = 16;
+
+    private final AtomicLong ids = new AtomicLong();
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public PendingCalls() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * allocates new request id and registers future under it
+     * @param future to be completed when response arrives
+     * @return request id, never zero as zero is reserved for heartbeats
+     */
+    public long register(CompletableFuture<Response> future) {
+        long id;
+        do {
+            id = ids.incrementAndGet();
+        } while (id == 0);
+
+        final long hash = mix(id);
+        stripeFor(hash).put(id, hash, future);
+        return id;
+    }
+
+    /**
+     * @param id request id
+     * @return future registered under the id, or null if there is no such call pending
+     */
+    public CompletableFuture<Response> remove(long id) {
+        final long hash = mix(id);
+        return stripeFor(hash).remove(id, hash);
+    }
+
+    /**
+     * completes response future of the call with the same id
+     * @param response received from remote side
+     * @return true if there was a call waiting for this response
+     */
+    public boolean complete(Response response) {
+        final CompletableFuture<Response> future = remove(response.getId());
+        if (future == null) {
+            return false;
+        }
+        future.complete(response);
+        return true;
+    }
+
+    /**
+     * removes all pending calls and fails them, used when connection is lost
+     * @param cause exception to complete pending futures with
+     */
+    public void failAll(Throwable cause) {
+        for (Stripe stripe : stripes) {
+            for (CompletableFuture<Response> future : stripe.drain()) {
+                future.completeExceptionally(cause);
+            }
+        }
+    }
+
+    /**
+     * @return number of calls waiting for response
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private Stripe stripeFor(long hash) {
+        return stripes[(int) hash & STRIPE_MASK];
+    }
+
+    /**
+     * ids are sequential, so spread them before taking low bits for stripe and slot
+     */
+    private static long mix(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    private static class Stripe {
+
+        private long[] keys = new long[INITIAL_STRIPE_CAPACITY];
+        private Object[] values = new Object[INITIAL_STRIPE_CAPACITY];
+        private int size;
+
+        synchronized void put(long id, long hash, CompletableFuture<Response> future) {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            insert(keys, values, id, hash, future);
+            size++;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized CompletableFuture<Response> remove(long id, long hash) {
+            final int mask = keys.length - 1;
+            int slot = slot(hash, mask);
+            while (keys[slot] != 0) {
+                if (keys[slot] == id) {
+                    final CompletableFuture<Response> future = (CompletableFuture<Response>) values[slot];
+                    shiftBack(slot, mask);
+                    size--;
+                    return future;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized List<CompletableFuture<Response>> drain() {
+            final List<CompletableFuture<Response>> drained = new ArrayList<>(size);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    drained.add((CompletableFuture<Response>) values[i]);
+                    keys[i] = 0;
+                    values[i] = null;
+                }
+            }
+            size = 0;
+            return drained;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        /**
+         * backward shift deletion - keeps probe chains intact without tombstones
+         */
+        private void shiftBack(int freed, int mask) {
+            int slot = freed;
+            while (true) {
+                slot = (slot + 1) & mask;
+                final long key = keys[slot];
+                if (key == 0) {
+                    break;
+                }
+                final int home = slot(mix(key), mask);
+                // move entry into the freed slot unless its home lies cyclically in (freed, slot]
+                if (freed <= slot ? (home <= freed || home > slot) : (home <= freed && home > slot)) {
+                    keys[freed] = key;
+                    values[freed] = values[slot];
+                    freed = slot;
+                }
+            }
+            keys[freed] = 0;
+            values[freed] = null;
+        }
+
+        private void resize(int capacity) {
+            final long[] newKeys = new long[capacity];
+            final Object[] newValues = new Object[capacity];
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    insert(newKeys, newValues, keys[i], mix(keys[i]), values[i]);
+                }
+            }
+            keys = newKeys;
+            values = newValues;
+        }
+
+        private static void insert(long[] keys, Object[] values, long id, long hash, Object value) {
+            final int mask = keys.length - 1;
+            int slot = slot(hash, mask);
+            while (keys[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = id;
+            values[slot] = value;
+        }
+
+        /**
+         * low bits of the hash pick the stripe, so slot is taken from the bits above them
+         */
+        private static int slot(long hash, int mask) {
+            return (int) (hash >>> STRIPE_BITS) & mask;
+        }
+    }
+}
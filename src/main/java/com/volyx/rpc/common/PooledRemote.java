@@ -0,0 +1,298 @@
+package com.volyx.rpc.common;
+
+import com.volyx.rpc.api.ConnectionSelection;
+import com.volyx.rpc.api.Remote;
+import com.volyx.rpc.api.exception.ConfigurationException;
+import com.volyx.rpc.api.exception.TransportException;
+import io.netty.channel.ChannelId;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Several connections, to one server or to its replicas, presented as a single remote. <br/>
+ * <br/>
+ * Every call is sent over a healthy connection picked by {@link ConnectionSelection},
+ * so calls from many threads are spread over several sockets and event loops.
+ * A connection which is closed or not yet established is left out until it is replaced.
+ * With ordered proxies all calls of a proxy go over one connection and keep their order.
+ */
+public class PooledRemote implements Remote {
+
+    private final AtomicReferenceArray<NettyRemote> connections;
+    private final ConnectionSelection selection;
+    private final boolean orderedProxies;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ConcurrentMap<Class<?>, Object> proxies = new ConcurrentHashMap<>();
+
+    /**
+     * @param size number of connection slots, see {@link #setConnection(int, NettyRemote)}
+     * @param orderedProxies whether every proxy sticks to one connection slot
+     */
+    public PooledRemote(int size, ConnectionSelection selection, boolean orderedProxies) {
+        this.connections = new AtomicReferenceArray<>(size);
+        this.selection = selection;
+        this.orderedProxies = orderedProxies;
+    }
+
+    /**
+     * puts handshaken connection into the slot, replacing a broken one
+     */
+    public void setConnection(int index, NettyRemote connection) {
+        if (selection == ConnectionSelection.POWER_OF_TWO_CHOICES) {
+            connection.trackLatency();
+        }
+        connections.set(index, connection);
+    }
+
+    /**
+     * @return connection in the slot, null if it was never established
+     */
+    public NettyRemote getConnection(int index) {
+        return connections.get(index);
+    }
+
+    /**
+     * @return whether the slot holds an open connection
+     */
+    public boolean isHealthy(int index) {
+        return isHealthy(connections.get(index));
+    }
+
+    private static boolean isHealthy(NettyRemote connection) {
+        return connection != null && connection.getChannel().isActive();
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked"})
+    public <T> T getProxy(Class<T> clazz) {
+        final Object proxy = proxies.get(clazz);
+        if (proxy != null) {
+            return (T) proxy;
+        }
+
+        // fails for interfaces server does not implement
+        firstHealthy().getInvocationHandler(clazz);
+        final Object created = Proxy.newProxyInstance(clazz.getClassLoader(), new Class[]{clazz}, new ProxyHandler(clazz, orderedProxies ? nextIndex() : -1));
+        final Object raced = proxies.putIfAbsent(clazz, created);
+        return (T) (raced == null ? created : raced);
+    }
+
+    /**
+     * @return id of the first open connection
+     */
+    @Override
+    public ChannelId getId() {
+        return firstHealthy().getId();
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        return firstHealthy().getRemoteAddress();
+    }
+
+    /**
+     * @return whether any of the connections is writable
+     */
+    @Override
+    public boolean isWritable() {
+        for (int i = 0; i < connections.length(); i++) {
+            final NettyRemote connection = connections.get(i);
+            if (isHealthy(connection) && connection.isWritable()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * whole batch goes over one connection, so its calls keep their order, <br/>
+     * with ordered proxies it is the connection of the interface's proxy
+     */
+    @Override
+    public <T> CompletableFuture<Void> batch(Class<T> clazz, Consumer<? super T> calls) {
+        final NettyRemote connection = orderedProxies ? ((ProxyHandler) Proxy.getInvocationHandler(getProxy(clazz))).pinnedConnection() : select();
+        return connection.batch(clazz, calls);
+    }
+
+    @Override
+    public void flush() {
+        for (int i = 0; i < connections.length(); i++) {
+            final NettyRemote connection = connections.get(i);
+            if (isHealthy(connection)) {
+                connection.flush();
+            }
+        }
+    }
+
+    public int size() {
+        return connections.length();
+    }
+
+    private NettyRemote firstHealthy() {
+        for (int i = 0; i < connections.length(); i++) {
+            final NettyRemote connection = connections.get(i);
+            if (isHealthy(connection)) {
+                return connection;
+            }
+        }
+        throw new TransportException("none of " + connections.length() + " connections is open");
+    }
+
+    private int nextIndex() {
+        return (next.getAndIncrement() & Integer.MAX_VALUE) % connections.length();
+    }
+
+    /**
+     * @return open connection for the next call
+     * @throws TransportException if none of the connections is open
+     */
+    NettyRemote select() {
+        if (selection == ConnectionSelection.POWER_OF_TWO_CHOICES) {
+            return selectOfTwo();
+        }
+
+        // scanning from a rotating start spreads calls among equally loaded connections
+        final int start = nextIndex();
+        NettyRemote best = null;
+        for (int i = 0; i < connections.length(); i++) {
+            final NettyRemote connection = connections.get((start + i) % connections.length());
+            if (!isHealthy(connection)) {
+                continue;
+            }
+            if (selection == ConnectionSelection.ROUND_ROBIN) {
+                return connection;
+            }
+            if (best == null || isLessLoaded(connection, best)) {
+                best = connection;
+            }
+        }
+        if (best == null) {
+            throw new TransportException("none of " + connections.length() + " connections is open");
+        }
+        return best;
+    }
+
+    private boolean isLessLoaded(NettyRemote connection, NettyRemote than) {
+        if (selection == ConnectionSelection.LEAST_OUTSTANDING_REQUESTS) {
+            return connection.getPendingCallCount() < than.getPendingCallCount();
+        }
+        final long bytes = connection.getOutstandingBytes();
+        final long thanBytes = than.getOutstandingBytes();
+        return bytes < thanBytes || bytes == thanBytes && connection.getPendingCallCount() < than.getPendingCallCount();
+    }
+
+    /**
+     * compares two random open connections instead of all of them, which avoids herding on a single least loaded one
+     */
+    private NettyRemote selectOfTwo() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int size = connections.length();
+        final int first = random.nextInt(size);
+        final int second = size == 1 ? first : (first + 1 + random.nextInt(size - 1)) % size;
+        final NettyRemote a = connections.get(first);
+        final NettyRemote b = connections.get(second);
+        if (isHealthy(a) && isHealthy(b)) {
+            // a connection nothing has answered yet is expected to be as fast as the others, not infinitely fast
+            final double unknown = Double.isNaN(a.getLatency()) || Double.isNaN(b.getLatency()) ? meanLatency() : Double.NaN;
+            final double costA = cost(a, unknown);
+            final double costB = cost(b, unknown);
+            if (costA != costB) {
+                return costA < costB ? a : b;
+            }
+            return a.getPendingCallCount() <= b.getPendingCallCount() ? a : b;
+        }
+        if (isHealthy(a)) {
+            return a;
+        }
+        if (isHealthy(b)) {
+            return b;
+        }
+        return firstHealthy();
+    }
+
+    /**
+     * expected wait of a new request: average latency times requests queued before it
+     * @param unknownLatency taken for a connection nothing has answered yet
+     */
+    private static double cost(NettyRemote connection, double unknownLatency) {
+        final double latency = connection.getLatency();
+        return (Double.isNaN(latency) ? unknownLatency : latency) * (connection.getPendingCallCount() + 1);
+    }
+
+    /**
+     * @return mean latency of open connections which have answered, 1 if none has, so only queued requests count
+     */
+    private double meanLatency() {
+        double sum = 0;
+        int count = 0;
+        for (int i = 0; i < connections.length(); i++) {
+            final NettyRemote connection = connections.get(i);
+            if (isHealthy(connection) && !Double.isNaN(connection.getLatency())) {
+                sum += connection.getLatency();
+                count++;
+            }
+        }
+        return count == 0 ? 1 : sum / count;
+    }
+
+    @Override
+    public String toString() {
+        return "PooledRemote{" + connections.length() + " connections, " + selection + "}";
+    }
+
+    private class ProxyHandler implements InvocationHandler {
+
+        private final Class<?> clazz;
+        private final int pinned;
+
+        /**
+         * @param pinned slot of the connection every call goes over, negative to select one per call
+         */
+        private ProxyHandler(Class<?> clazz, int pinned) {
+            this.clazz = clazz;
+            this.pinned = pinned;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return invokeObjectMethod(proxy, method, args);
+            }
+            final NettyRemote connection = pinned < 0 ? select() : pinnedConnection();
+            return connection.getInvocationHandler(clazz).invoke(proxy, method, args);
+        }
+
+        /**
+         * calls of a proxy whose connection is broken fail rather than lose their order, until the connection is replaced
+         */
+        private NettyRemote pinnedConnection() {
+            final NettyRemote connection = connections.get(pinned);
+            if (!isHealthy(connection)) {
+                throw new TransportException("connection " + pinned + " of " + PooledRemote.this + " is not open");
+            }
+            return connection;
+        }
+
+        private Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return clazz.getName() + "@" + PooledRemote.this;
+                default:
+                    throw new ConfigurationException("method can't be called on remote proxy: " + method);
+            }
+        }
+    }
+}
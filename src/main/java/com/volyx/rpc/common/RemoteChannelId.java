@@ -0,0 +1,49 @@
+package com.volyx.rpc.common;
+
+import io.netty.channel.ChannelId;
+
+/**
+ * Id of a channel which lives on the other side of the connection, known by its long text only. <br/>
+ * Equal to any channel id with the same long text.
+ */
+public class RemoteChannelId implements ChannelId {
+
+    private final String longText;
+
+    public RemoteChannelId(String longText) {
+        this.longText = longText;
+    }
+
+    @Override
+    public String asShortText() {
+        return longText.substring(longText.lastIndexOf('-') + 1);
+    }
+
+    @Override
+    public String asLongText() {
+        return longText;
+    }
+
+    @Override
+    public int compareTo(ChannelId o) {
+        return longText.compareTo(o.asLongText());
+    }
+
+    @Override
+    public int hashCode() {
+        return longText.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ChannelId)) return false;
+
+        return longText.equals(((ChannelId) o).asLongText());
+    }
+
+    @Override
+    public String toString() {
+        return asShortText();
+    }
+}
@@ -17,7 +17,7 @@ public class Request {
      * @param id unique id
      * @param command a command
      */
-    public Request(Long id, Command command) {
+    public Request(long id, Command command) {
         super();
         this.id = id;
         this.command = command;
@@ -26,14 +26,14 @@ public class Request {
     /**
      * Request's id
      */
-    private final Long id;
+    private final long id;
 
     /**
      * Getter method for field 'id'
      *
      * @return request's unqiue id
      */
-    public Long getId() {
+    public long getId() {
         return this.id;
     }
 
@@ -7,18 +7,18 @@ import org.slf4j.LoggerFactory;
 public class Response {
     private static final Logger log = LoggerFactory.getLogger(Response.class);
 
-    public Response(Long id, Result result, String resultClass) {
+    public Response(long id, Result result, String resultClass) {
         super();
         this.id = id;
         this.result = result;
         this.resultClass = resultClass;
     }
 
-    private final Long id;
+    private final long id;
     private final Result result;
     private final String resultClass;
 
-    public Long getId() {
+    public long getId() {
         return this.id;
     }
 
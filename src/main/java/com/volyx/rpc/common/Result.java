@@ -8,11 +8,21 @@ public class Result {
 
     public static final Result VOID_RETURN = new Result(null, Void.class);
 
+    /**
+     * result is taken for a failure if its class is a throwable
+     */
     public Result(Object returnObj, Class returnClass) {
+        this(returnObj, returnClass, Throwable.class.isAssignableFrom(returnClass));
+    }
+
+    /**
+     * @param exceptional whether the method threw the returned object, a method may as well return a throwable
+     */
+    public Result(Object returnObj, Class returnClass, boolean exceptional) {
         super();
         this.returnObj = returnObj;
         this.returnClass = returnClass;
-        this.exceptional = Throwable.class.isAssignableFrom(returnClass);
+        this.exceptional = exceptional;
     }
 
     private final Object returnObj;
@@ -0,0 +1,277 @@
+package com.volyx.rpc.common;
+
+import com.volyx.rpc.api.FlushMode;
+import com.volyx.rpc.api.SharedMemoryAddress;
+import com.volyx.rpc.api.Transport;
+import com.volyx.rpc.api.exception.ConfigurationException;
+import com.volyx.rpc.common.shm.SharedMemoryChannel;
+import com.volyx.rpc.common.shm.SharedMemoryServerChannel;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+/**
+ * Immutable set of socket settings of one side of a connection, unlike {@link com.volyx.rpc.common.codec.CodecConfig} sides don't have to agree on them. <br/>
+ * <br/>
+ * {@link Transport#AUTO} is resolved once, when server or client is built.
+ * Channel classes are picked per address, unix domain socket addresses require epoll and get no TCP options,
+ * {@link LocalAddress} connects server and client of the same JVM without any socket and works with either transport,
+ * so does {@link SharedMemoryAddress}, which connects processes of the same host.
+ */
+public class TransportConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransportConfig.class);
+
+    private final Transport transport;
+    private final ByteBufAllocator allocator;
+    private final boolean tcpQuickAck;
+    private final boolean edgeTriggered;
+    private final boolean reusePort;
+    private final FlushMode flushMode;
+    private final int flushMaxMessages;
+    private final int flushMaxBytes;
+
+    /**
+     * @param transport requested transport, {@link Transport#AUTO} falls back to NIO if epoll is not available
+     * @param tcpQuickAck epoll only, acknowledge packets right away instead of delaying acks
+     * @param edgeTriggered epoll only, edge- or level-triggered mode
+     * @param reusePort epoll only, allow several sockets to bind the same port
+     * @param flushMode when written messages are flushed to the socket
+     * @param flushMaxMessages unflushed messages which trigger a flush unless mode is {@link FlushMode#IMMEDIATE}
+     * @param flushMaxBytes unflushed bytes which trigger a flush unless mode is {@link FlushMode#IMMEDIATE}
+     * @throws ConfigurationException if {@link Transport#EPOLL} is requested but not available
+     */
+    public TransportConfig(Transport transport, ByteBufAllocator allocator, boolean tcpQuickAck, boolean edgeTriggered, boolean reusePort, FlushMode flushMode, int flushMaxMessages, int flushMaxBytes) {
+        this.transport = resolve(transport);
+        this.allocator = allocator;
+        this.tcpQuickAck = tcpQuickAck;
+        this.edgeTriggered = edgeTriggered;
+        this.reusePort = reusePort;
+        this.flushMode = flushMode;
+        this.flushMaxMessages = flushMaxMessages;
+        this.flushMaxBytes = flushMaxBytes;
+        if (this.transport != Transport.EPOLL && (tcpQuickAck || reusePort)) {
+            logger.warn("TCP_QUICKACK and SO_REUSEPORT require epoll, they are ignored by {} transport", this.transport);
+        }
+    }
+
+    private static Transport resolve(Transport transport) {
+        switch (transport) {
+            case AUTO:
+                if (Epoll.isAvailable()) {
+                    return Transport.EPOLL;
+                }
+                logger.debug("epoll is not available, falling back to NIO", Epoll.unavailabilityCause());
+                return Transport.NIO;
+            case EPOLL:
+                if (!Epoll.isAvailable()) {
+                    throw new ConfigurationException("epoll transport is not available", Epoll.unavailabilityCause());
+                }
+                return transport;
+            default:
+                return transport;
+        }
+    }
+
+    /**
+     * @return resolved transport, never {@link Transport#AUTO}
+     */
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public ByteBufAllocator getAllocator() {
+        return allocator;
+    }
+
+    public FlushMode getFlushMode() {
+        return flushMode;
+    }
+
+    /**
+     * adds handler gathering flushes, nothing is added in {@link FlushMode#IMMEDIATE} mode <br/>
+     * it must see messages before they are encoded, so it is added right after the message codec
+     */
+    public void addFlushing(ChannelPipeline pipeline) {
+        if (flushMode != FlushMode.IMMEDIATE) {
+            pipeline.addLast(FlushConsolidator.NAME, new FlushConsolidator(flushMode, flushMaxMessages, flushMaxBytes));
+        }
+    }
+
+    /**
+     * @param threads number of event loops, zero for netty's default
+     */
+    public EventLoopGroup newEventLoopGroup(int threads) {
+        return transport == Transport.EPOLL ? new EpollEventLoopGroup(threads) : new NioEventLoopGroup(threads);
+    }
+
+    /**
+     * @return whether the address is a unix domain socket, such connections are served by epoll only
+     */
+    public static boolean isDomainSocket(SocketAddress address) {
+        return address instanceof DomainSocketAddress;
+    }
+
+    /**
+     * @return whether the address is an in-JVM one, such connections carry messages as objects, see {@link com.volyx.rpc.common.codec.LocalMessageCodec}
+     */
+    public static boolean isInJvm(SocketAddress address) {
+        return address instanceof LocalAddress;
+    }
+
+    /**
+     * @return whether the channel connects two sides of this JVM
+     */
+    public static boolean isInJvm(Channel channel) {
+        return channel instanceof LocalChannel;
+    }
+
+    /**
+     * @return whether the address is a shared memory one, such connections are polled by threads of their own
+     */
+    public static boolean isSharedMemory(SocketAddress address) {
+        return address instanceof SharedMemoryAddress;
+    }
+
+    /**
+     * @return whether the address is a TCP one, only such connections get TCP options
+     */
+    public static boolean isTcp(SocketAddress address) {
+        return address instanceof InetSocketAddress;
+    }
+
+    /**
+     * @return whether connections of the address are sockets of the transport, only such ones get socket options
+     */
+    public static boolean isSocket(SocketAddress address) {
+        return isTcp(address) || isDomainSocket(address);
+    }
+
+    public Class<? extends ServerChannel> getServerChannelClass(SocketAddress localAddress) {
+        if (isInJvm(localAddress)) {
+            return LocalServerChannel.class;
+        }
+        if (isSharedMemory(localAddress)) {
+            checkSharedMemory();
+            return SharedMemoryServerChannel.class;
+        }
+        if (isDomainSocket(localAddress)) {
+            checkDomainSockets(localAddress);
+            return EpollServerDomainSocketChannel.class;
+        }
+        return transport == Transport.EPOLL ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    public Class<? extends Channel> getChannelClass(SocketAddress remoteAddress) {
+        if (isInJvm(remoteAddress)) {
+            return LocalChannel.class;
+        }
+        if (isSharedMemory(remoteAddress)) {
+            checkSharedMemory();
+            return SharedMemoryChannel.class;
+        }
+        if (isDomainSocket(remoteAddress)) {
+            checkDomainSockets(remoteAddress);
+            return EpollDomainSocketChannel.class;
+        }
+        return transport == Transport.EPOLL ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    private static void checkSharedMemory() {
+        if (!SharedMemoryChannel.isAvailable()) {
+            throw new ConfigurationException("shared memory connections require sun.misc.Unsafe, which is not available");
+        }
+    }
+
+    private void checkDomainSockets(SocketAddress address) {
+        if (transport != Transport.EPOLL) {
+            throw new ConfigurationException("unix domain socket " + address + " requires " + Transport.EPOLL + " transport, " + transport + " is used");
+        }
+    }
+
+    /**
+     * sets channel class and options of a client connection to the address
+     */
+    public void configure(Bootstrap bootstrap, SocketAddress remoteAddress) {
+        final boolean tcp = isTcp(remoteAddress);
+        bootstrap.channel(getChannelClass(remoteAddress));
+        bootstrap.option(ChannelOption.ALLOCATOR, allocator);
+        if (tcp) {
+            bootstrap.option(ChannelOption.SO_KEEPALIVE, true);
+        }
+        if (transport == Transport.EPOLL && isSocket(remoteAddress)) {
+            bootstrap.option(EpollChannelOption.EPOLL_MODE, epollMode());
+            if (tcp) {
+                bootstrap.option(EpollChannelOption.TCP_QUICKACK, tcpQuickAck);
+            }
+        }
+    }
+
+    /**
+     * sets channel class and options of the channel accepting on the address and of accepted connections
+     */
+    public void configure(ServerBootstrap bootstrap, SocketAddress localAddress) {
+        final boolean tcp = isTcp(localAddress);
+        final boolean epoll = transport == Transport.EPOLL && isSocket(localAddress);
+        bootstrap.channel(getServerChannelClass(localAddress));
+        bootstrap.option(ChannelOption.ALLOCATOR, allocator);
+        if (epoll) {
+            bootstrap.option(EpollChannelOption.EPOLL_MODE, epollMode());
+            if (tcp) {
+                bootstrap.option(EpollChannelOption.SO_REUSEPORT, reusePort);
+            }
+        }
+
+        bootstrap.childOption(ChannelOption.ALLOCATOR, allocator);
+        if (tcp) {
+            bootstrap.childOption(ChannelOption.SO_KEEPALIVE, true);
+        }
+        if (epoll) {
+            bootstrap.childOption(EpollChannelOption.EPOLL_MODE, epollMode());
+            if (tcp) {
+                bootstrap.childOption(EpollChannelOption.TCP_QUICKACK, tcpQuickAck);
+            }
+        }
+    }
+
+    private EpollMode epollMode() {
+        return edgeTriggered ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED;
+    }
+
+    @Override
+    public String toString() {
+        return "TransportConfig{" +
+                "transport=" + transport +
+                ", allocator=" + allocator.getClass().getSimpleName() +
+                ", tcpQuickAck=" + tcpQuickAck +
+                ", edgeTriggered=" + edgeTriggered +
+                ", reusePort=" + reusePort +
+                ", flushMode=" + flushMode +
+                '}';
+    }
+}
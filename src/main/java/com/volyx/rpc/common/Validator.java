@@ -1,20 +1,102 @@
 package com.volyx.rpc.common;
 
+import com.volyx.rpc.api.MicroBatch;
 import com.volyx.rpc.api.exception.ConfigurationException;
+import org.apache.commons.lang3.ClassUtils;
 
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public class Validator {
-    
+
+    private final boolean allowReturnValues;
+
+    /**
+     * creates validator which accepts only methods with void return type
+     */
+    public Validator() {
+        this(false);
+    }
+
+    /**
+     * @param allowReturnValues if true, methods may also return CompletableFuture&lt;T&gt; or plain T, T being serializable
+     */
+    public Validator(boolean allowReturnValues) {
+        this.allowReturnValues = allowReturnValues;
+    }
+
     public void validateInterface(Class clazz) {
         if(!clazz.isInterface()) {
             throw new ConfigurationException("you must supply interface class instead of " + clazz.getCanonicalName());
         }
 
+        // bulk methods take a List, which is not serializable as declared, but the one sent always is
+        final Set<Method> bulkMethods = new HashSet<>();
         for (Method method : clazz.getMethods()) {
-            validateMethod(method);
+            final MicroBatch microBatch = method.getAnnotation(MicroBatch.class);
+            if (microBatch != null) {
+                bulkMethods.add(validateMicroBatch(clazz, method, microBatch));
+            }
+        }
+        for (Method method : clazz.getMethods()) {
+            if (!bulkMethods.contains(method)) {
+                validateMethod(method);
+            }
+        }
+    }
+
+    /**
+     * @return bulk method the single-item method is linked to
+     */
+    private static Method validateMicroBatch(Class<?> clazz, Method method, MicroBatch microBatch) {
+        if (method.getReturnType() != Void.TYPE || method.getParameterTypes().length != 1) {
+            throw new ConfigurationException("micro batched method " + method.getName() + " must be void and take a single parameter");
+        }
+        if (microBatch.maxItems() < 1 || microBatch.maxDelayMicros() < 0) {
+            throw new ConfigurationException("micro batch of " + method.getName() + " must allow at least one item and non negative delay");
+        }
+
+        final Method bulk = findBulkMethod(clazz, microBatch.value());
+        final Class<?>[] bulkParams = bulk.getParameterTypes();
+        if (bulk.getReturnType() != Void.TYPE || bulkParams.length != 1 || !bulkParams[0].isAssignableFrom(ArrayList.class)) {
+            throw new ConfigurationException("bulk method " + bulk.getName() + " must be void and take a single List parameter");
+        }
+        final Type bulkType = bulk.getGenericParameterTypes()[0];
+        if (bulkType instanceof ParameterizedType) {
+            final Type itemType = ((ParameterizedType) bulkType).getActualTypeArguments()[0];
+            if (itemType instanceof Class && !((Class<?>) itemType).isAssignableFrom(ClassUtils.primitiveToWrapper(method.getParameterTypes()[0]))) {
+                throw new ConfigurationException("bulk method " + bulk.getName() + " does not accept items of " + method.getName());
+            }
+        }
+        if (bulk.isAnnotationPresent(MicroBatch.class)) {
+            throw new ConfigurationException("bulk method " + bulk.getName() + " can't be micro batched itself");
         }
+        return bulk;
+    }
+
+    /**
+     * @throws ConfigurationException unless there is exactly one method with such name
+     */
+    public static Method findBulkMethod(Class<?> clazz, String name) {
+        Method bulk = null;
+        for (Method candidate : clazz.getMethods()) {
+            if (candidate.getName().equals(name)) {
+                if (bulk != null) {
+                    throw new ConfigurationException("bulk method " + name + " of " + clazz.getName() + " is overloaded");
+                }
+                bulk = candidate;
+            }
+        }
+        if (bulk == null) {
+            throw new ConfigurationException("bulk method " + name + " is not found in " + clazz.getName());
+        }
+        return bulk;
     }
 
     public void validateMethod(Method method) {
@@ -25,10 +107,30 @@ public class Validator {
             }
         }
         Class<?> clazz = method.getReturnType();
-        if(clazz != Void.TYPE) {
+        if(clazz == Void.TYPE) {
+            return;
+        }
+        if(!allowReturnValues) {
             throw new ConfigurationException("method must have void as return type");
         }
+        if(clazz == CompletableFuture.class) {
+            validateFutureType(method);
+            return;
+        }
+        if (!clazz.isPrimitive() && !Serializable.class.isAssignableFrom(clazz)) {
+            throw new ConfigurationException("return type (" + clazz.getName() + ") of " + method.getName() + " is not serializable");
+        }
     }
 
+    private static void validateFutureType(Method method) {
+        Type type = method.getGenericReturnType();
+        if (!(type instanceof ParameterizedType)) {
+            return;
+        }
+        Type valueType = ((ParameterizedType) type).getActualTypeArguments()[0];
+        if (valueType instanceof Class && !Serializable.class.isAssignableFrom((Class<?>) valueType)) {
+            throw new ConfigurationException("future value type (" + ((Class<?>) valueType).getName() + ") of " + method.getName() + " is not serializable");
+        }
+    }
 
 }
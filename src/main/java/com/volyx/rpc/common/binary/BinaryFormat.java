@@ -0,0 +1,382 @@
+package com.volyx.rpc.common.binary;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.serialization.ClassResolver;
+import io.netty.util.CharsetUtil;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.Arrays;
+
+/**
+ * Primitive building blocks of {@link BinarySerializer}: varints, strings and tagged values. <br/>
+ * <br/>
+ * Tagged value is one tag byte followed by the value, primitives, strings and byte arrays have compact encodings,
+ * throwables are sent as stack trace text, everything else falls back to java serialization, which reads
+ * classes of {@link SerializableTypes} only. <br/>
+ * Given a {@link StringDictionary}, repeated strings are sent as dictionary ids.
+ */
+public class BinaryFormat {
+
+    public static final byte NULL = 0;
+    public static final byte TRUE = 1;
+    public static final byte FALSE = 2;
+    public static final byte BYTE = 3;
+    public static final byte SHORT = 4;
+    public static final byte CHAR = 5;
+    public static final byte INT = 6;
+    public static final byte LONG = 7;
+    public static final byte FLOAT = 8;
+    public static final byte DOUBLE = 9;
+    public static final byte STRING = 10;
+    public static final byte BYTES = 11;
+    public static final byte THROWABLE = 12;
+    public static final byte SERIALIZED = 13;
+    /**
+     * string followed by its text, added to the dictionary
+     */
+    public static final byte STRING_DEF = 14;
+    /**
+     * string sent as dictionary id
+     */
+    public static final byte STRING_REF = 15;
+    /**
+     * same as {@link #STRING_DEF}, dictionary is cleared first
+     */
+    public static final byte STRING_RESET_DEF = 16;
+
+    public static void writeVarLong(ByteBuf out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte(((int) value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public static long readVarLong(ByteBuf in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new CorruptedFrameException("malformed varint");
+    }
+
+    public static void writeVarInt(ByteBuf out, int value) {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    public static int readVarInt(ByteBuf in) {
+        return (int) readVarLong(in);
+    }
+
+    /**
+     * reads count of the elements or bytes which follow, every element takes at least a byte <br/>
+     * counts come from the remote side, so they are checked before anything is allocated for them
+     * @throws CorruptedFrameException if count is negative or exceeds the bytes left in the frame
+     */
+    public static int readCount(ByteBuf in) {
+        final long count = readVarLong(in);
+        if (count < 0 || count > in.readableBytes()) {
+            throw new CorruptedFrameException("count exceeds bytes left in the frame: " + count + " > " + in.readableBytes());
+        }
+        return (int) count;
+    }
+
+    /**
+     * zigzag keeps small negative numbers short
+     */
+    public static void writeSignedVarLong(ByteBuf out, long value) {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    public static long readSignedVarLong(ByteBuf in) {
+        final long value = readVarLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * writes utf-8 bytes prefixed with their count <br/>
+     * room for the count is reserved for the worst case and patched afterwards, so string is encoded only once
+     */
+    public static void writeString(ByteBuf out, String value) {
+        final int width = varIntWidth(ByteBufUtil.utf8MaxBytes(value));
+        final int lengthIndex = out.writerIndex();
+        out.writeZero(width);
+        final int length = ByteBufUtil.writeUtf8(out, value);
+        setPaddedVarInt(out, lengthIndex, length, width);
+    }
+
+    public static String readString(ByteBuf in) {
+        final int length = readCount(in);
+        final String value = in.toString(in.readerIndex(), length, CharsetUtil.UTF_8);
+        in.skipBytes(length);
+        return value;
+    }
+
+    public static void writeStrings(ByteBuf out, String[] values) {
+        writeVarInt(out, values.length);
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    public static String[] readStrings(ByteBuf in) {
+        final String[] values = new String[readCount(in)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readString(in);
+        }
+        return values;
+    }
+
+    /**
+     * writes tagged string, as dictionary id if the dictionary has it
+     * @param dictionary of the connection's outbound direction, null if strings are always sent in full
+     */
+    static void writeTaggedString(ByteBuf out, String value, StringDictionary dictionary) {
+        if (dictionary == null || !StringDictionary.isWorthIt(value)) {
+            out.writeByte(STRING);
+            writeString(out, value);
+            return;
+        }
+        final int id = dictionary.use(value);
+        if (id >= 0) {
+            out.writeByte(STRING_REF);
+            writeVarInt(out, id);
+            return;
+        }
+        out.writeByte(dictionary.takeReset() ? STRING_RESET_DEF : STRING_DEF);
+        dictionary.define(value);
+        writeString(out, value);
+    }
+
+    static String readTaggedString(ByteBuf in, StringDictionary dictionary) {
+        return readTaggedString(in.readByte(), in, dictionary);
+    }
+
+    private static String readTaggedString(byte tag, ByteBuf in, StringDictionary dictionary) {
+        if (tag == STRING) {
+            return readString(in);
+        }
+        if (dictionary == null) {
+            throw new CorruptedFrameException("dictionary string is not expected: " + tag);
+        }
+        switch (tag) {
+            case STRING_REF:
+                return dictionary.use(readVarInt(in));
+            case STRING_RESET_DEF:
+                dictionary.clear();
+                return readDefinition(in, dictionary);
+            case STRING_DEF:
+                return readDefinition(in, dictionary);
+            default:
+                throw new CorruptedFrameException("unknown string tag: " + tag);
+        }
+    }
+
+    private static String readDefinition(ByteBuf in, StringDictionary dictionary) {
+        final String value = readString(in);
+        dictionary.define(value);
+        return value;
+    }
+
+    public static void writeValue(ByteBuf out, Object value) throws IOException {
+        writeValue(out, value, null);
+    }
+
+    /**
+     * @param dictionary of the connection's outbound direction, null if strings are always sent in full
+     */
+    static void writeValue(ByteBuf out, Object value, StringDictionary dictionary) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            writeTaggedString(out, (String) value, dictionary);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            writeSignedVarLong(out, (Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            writeSignedVarLong(out, (Long) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            writeSignedVarLong(out, (Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Character) {
+            out.writeByte(CHAR);
+            out.writeChar((Character) value);
+        } else if (value instanceof byte[]) {
+            final byte[] bytes = (byte[]) value;
+            out.writeByte(BYTES);
+            writeVarInt(out, bytes.length);
+            out.writeBytes(bytes);
+        } else if (value instanceof Throwable) {
+            out.writeByte(THROWABLE);
+            writeString(out, ExceptionUtils.getStackTrace((Throwable) value));
+        } else {
+            out.writeByte(SERIALIZED);
+            writeSerialized(out, value);
+        }
+    }
+
+    /**
+     * @return decoded value, throwables are decoded as their stack trace text,
+     * java serialized values are accepted of built-in {@link SerializableTypes} only
+     */
+    public static Object readValue(ByteBuf in, ClassResolver classResolver) throws IOException, ClassNotFoundException {
+        return readValue(in, classResolver, null, SerializableTypes.NONE_DECLARED);
+    }
+
+    /**
+     * @param dictionary of the connection's inbound direction, null if strings are always sent in full
+     * @param serializableTypes classes java serialized values may consist of
+     */
+    static Object readValue(ByteBuf in, ClassResolver classResolver, StringDictionary dictionary,
+                            SerializableTypes serializableTypes) throws IOException, ClassNotFoundException {
+        final byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case BYTE:
+                return in.readByte();
+            case SHORT:
+                return (short) readSignedVarLong(in);
+            case CHAR:
+                return in.readChar();
+            case INT:
+                return (int) readSignedVarLong(in);
+            case LONG:
+                return readSignedVarLong(in);
+            case FLOAT:
+                return in.readFloat();
+            case DOUBLE:
+                return in.readDouble();
+            case THROWABLE:
+                return readString(in);
+            case STRING:
+            case STRING_DEF:
+            case STRING_REF:
+            case STRING_RESET_DEF:
+                return readTaggedString(tag, in, dictionary);
+            case BYTES:
+                final byte[] bytes = new byte[readCount(in)];
+                in.readBytes(bytes);
+                return bytes;
+            case SERIALIZED:
+                return readSerialized(in, classResolver, serializableTypes);
+            default:
+                throw new CorruptedFrameException("unknown value tag: " + tag);
+        }
+    }
+
+    /**
+     * writes the value java serialized whatever its class is
+     */
+    static void writeSerializedValue(ByteBuf out, Object value) throws IOException {
+        out.writeByte(SERIALIZED);
+        writeSerialized(out, value);
+    }
+
+    private static void writeSerialized(ByteBuf out, Object value) throws IOException {
+        final int lengthIndex = out.writerIndex();
+        out.writeInt(0);
+        final ObjectOutputStream stream = new ObjectOutputStream(new ByteBufOutputStream(out));
+        stream.writeObject(value);
+        stream.flush();
+        out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+    }
+
+    private static Object readSerialized(ByteBuf in, ClassResolver classResolver, SerializableTypes serializableTypes)
+            throws IOException, ClassNotFoundException {
+        final int length = in.readInt();
+        if (length < 0 || length > in.readableBytes()) {
+            throw new CorruptedFrameException("serialized value length exceeds readable bytes: " + length);
+        }
+        final int start = in.readerIndex();
+        try {
+            return new ResolvingObjectInputStream(new ByteBufInputStream(in, length), classResolver, serializableTypes).readObject();
+        } finally {
+            // object stream may stop short of the length or read ahead, next value starts right after it anyway
+            in.readerIndex(start + length);
+        }
+    }
+
+    private static int varIntWidth(int value) {
+        int width = 1;
+        while ((value >>>= 7) != 0) {
+            width++;
+        }
+        return width;
+    }
+
+    /**
+     * writes varint of exactly given width, padding it with continuation bytes if needed
+     */
+    private static void setPaddedVarInt(ByteBuf out, int index, int value, int width) {
+        for (int i = 0; i < width - 1; i++) {
+            out.setByte(index + i, (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.setByte(index + width - 1, value);
+    }
+
+    /**
+     * resolves classes of the stream, rejecting those not in the allowed types before any instance is created
+     */
+    private static class ResolvingObjectInputStream extends ObjectInputStream {
+
+        private final ClassResolver classResolver;
+        private final SerializableTypes serializableTypes;
+
+        ResolvingObjectInputStream(InputStream in, ClassResolver classResolver, SerializableTypes serializableTypes) throws IOException {
+            super(in);
+            this.classResolver = classResolver;
+            this.serializableTypes = serializableTypes;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            Class<?> clazz;
+            try {
+                clazz = classResolver.resolve(desc.getName());
+            } catch (ClassNotFoundException e) {
+                // array and primitive names, the class is loaded but not initialized
+                clazz = super.resolveClass(desc);
+            }
+            if (!serializableTypes.isAllowed(clazz)) {
+                throw new CorruptedFrameException("class is not allowed to be deserialized: " + desc.getName());
+            }
+            return clazz;
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+            throw new CorruptedFrameException("proxy is not allowed to be deserialized: " + Arrays.toString(interfaces));
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.volyx.rpc.common.binary;
+
+import com.volyx.rpc.api.Serializer;
+import com.volyx.rpc.api.exception.ConfigurationException;
+import com.volyx.rpc.api.exception.RemoteException;
+import com.volyx.rpc.common.BatchRequest;
+import com.volyx.rpc.common.BatchResponse;
+import com.volyx.rpc.common.Command;
+import com.volyx.rpc.common.RemoteChannelId;
+import com.volyx.rpc.common.Request;
+import com.volyx.rpc.common.Response;
+import com.volyx.rpc.common.Result;
+import com.volyx.rpc.common.message.*;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.serialization.ClassResolver;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static com.volyx.rpc.common.binary.BinaryFormat.*;
+
+/**
+ * Compact binary serializer, writes messages straight into the buffer. <br/>
+ * <br/>
+ * Every message starts with a type byte, ids and lengths are varints,
+ * arguments and results are tagged values, see {@link BinaryFormat}. <br/>
+ * <br/>
+ * With a dictionary, each connection remembers strings of arguments, results and their class names
+ * in both directions, so a string repeated in later messages is sent as a small id, see {@link StringDictionary}.
+ * Both sides must use the same dictionary size. <br/>
+ * <br/>
+ * Values falling back to java serialization are read only if their classes are {@link SerializableTypes}:
+ * JDK value classes and collections, types of the registered interfaces' methods and those allowed by
+ * {@link #allowSerialized(Class[])}. Client side does not register the interfaces it calls,
+ * so custom types they take or return must be allowed there explicitly.
+ */
+public class BinarySerializer implements Serializer {
+
+    private static final byte REQUEST = 1;
+    private static final byte RESPONSE = 2;
+    private static final byte HANDSHAKE_FROM_CLIENT = 3;
+    private static final byte HANDSHAKE_FROM_SERVER = 4;
+    private static final byte INVOCATION_REQUEST = 5;
+    private static final byte EXCEPTION_NOTIFY = 6;
+    private static final byte KEEP_ALIVE = 7;
+    private static final byte BATCH_REQUEST = 8;
+    private static final byte BATCH_RESPONSE = 9;
+
+    private final int dictionarySize;
+    private final int maxMessageLength;
+    private final StringDictionary outbound;
+    private final StringDictionary inbound;
+    private final SerializableTypes serializableTypes;
+
+    /**
+     * strings are always sent in full
+     */
+    public BinarySerializer() {
+        this(0);
+    }
+
+    /**
+     * @param dictionarySize number of strings remembered per connection and direction, 0 to always send them in full
+     */
+    public BinarySerializer(int dictionarySize) {
+        if (dictionarySize < 0) {
+            throw new ConfigurationException("dictionary size must not be negative: " + dictionarySize);
+        }
+        this.dictionarySize = dictionarySize;
+        this.maxMessageLength = Integer.MAX_VALUE;
+        this.outbound = null;
+        this.inbound = null;
+        this.serializableTypes = SerializableTypes.NONE_DECLARED;
+    }
+
+    private BinarySerializer(int dictionarySize, int maxMessageLength, boolean perConnection, SerializableTypes serializableTypes) {
+        this.dictionarySize = dictionarySize;
+        this.maxMessageLength = maxMessageLength;
+        this.outbound = perConnection ? new StringDictionary(dictionarySize) : null;
+        this.inbound = perConnection ? new StringDictionary(dictionarySize) : null;
+        this.serializableTypes = serializableTypes;
+    }
+
+    /**
+     * @param types classes, along with their subclasses, java serialized values may be read of
+     * @return serializer reading also the given classes
+     */
+    public BinarySerializer allowSerialized(Class<?>... types) {
+        return new BinarySerializer(dictionarySize, maxMessageLength, false, serializableTypes.with(Arrays.asList(types)));
+    }
+
+    /**
+     * @return serializer reading also java serialized values of types the interfaces' methods take or return
+     */
+    @Override
+    public Serializer forInterfaces(Collection<Class<?>> interfaces) {
+        return new BinarySerializer(dictionarySize, maxMessageLength, false, serializableTypes.withInterfaces(interfaces));
+    }
+
+    /**
+     * @return serializer with its own dictionaries if they are enabled, this one otherwise
+     */
+    @Override
+    public Serializer forConnection(int maxMessageLength) {
+        return dictionarySize == 0 ? this : new BinarySerializer(dictionarySize, maxMessageLength, true, serializableTypes);
+    }
+
+    @Override
+    public void write(Object message, ByteBuf out) throws Exception {
+        if (outbound == null) {
+            writeMessage(message, out);
+            return;
+        }
+        final int start = out.writerIndex();
+        try {
+            writeMessage(message, out);
+            // checked here rather than by framing, so the dictionary is not updated for a message which is not sent
+            final int length = out.writerIndex() - start;
+            if (length > maxMessageLength) {
+                throw new TooLongFrameException("message length exceeds " + maxMessageLength + ": " + length);
+            }
+        } catch (Exception e) {
+            // other side won't see strings this message has added or used, both sides start over
+            outbound.reset();
+            throw e;
+        }
+    }
+
+    private void writeMessage(Object message, ByteBuf out) throws Exception {
+        if (message instanceof BatchRequest) {
+            out.writeByte(BATCH_REQUEST);
+            writeBatchRequest((BatchRequest) message, out);
+        } else if (message instanceof BatchResponse) {
+            out.writeByte(BATCH_RESPONSE);
+            writeBatchResponse((BatchResponse) message, out);
+        } else if (message instanceof Request) {
+            out.writeByte(REQUEST);
+            writeRequest((Request) message, out);
+        } else if (message instanceof Response) {
+            out.writeByte(RESPONSE);
+            writeResponse((Response) message, out);
+        } else if (message instanceof InvocationRequest) {
+            out.writeByte(INVOCATION_REQUEST);
+            writeInvocationRequest((InvocationRequest) message, out);
+        } else if (message instanceof KeepAlive) {
+            out.writeByte(KEEP_ALIVE);
+        } else if (message instanceof ExceptionNotify) {
+            out.writeByte(EXCEPTION_NOTIFY);
+            writeValue(out, ((ExceptionNotify) message).exc);
+        } else if (message instanceof HandshakeFromClient) {
+            out.writeByte(HANDSHAKE_FROM_CLIENT);
+            final HandshakeFromClient handshake = (HandshakeFromClient) message;
+            writeStrings(out, handshake.classNames);
+            writeStrings(out, handshake.methodSignatures);
+            writeStrings(out, handshake.compressions);
+        } else if (message instanceof HandshakeFromServer) {
+            final HandshakeFromServer handshake = (HandshakeFromServer) message;
+            out.writeByte(HANDSHAKE_FROM_SERVER);
+            writeString(out, handshake.clientId.asLongText());
+            writeStrings(out, handshake.classNames);
+            writeStrings(out, handshake.methodSignatures);
+            writeString(out, handshake.compression);
+        } else {
+            throw new IllegalArgumentException("unsupported message type: " + message.getClass().getName());
+        }
+    }
+
+    @Override
+    public Object read(ByteBuf in, ClassResolver classResolver) throws Exception {
+        final byte type = in.readByte();
+        switch (type) {
+            case REQUEST:
+                return readRequest(in, classResolver);
+            case RESPONSE:
+                return readResponse(in, classResolver);
+            case INVOCATION_REQUEST:
+                return readInvocationRequest(in, classResolver);
+            case BATCH_REQUEST:
+                return readBatchRequest(in, classResolver);
+            case BATCH_RESPONSE:
+                return readBatchResponse(in, classResolver);
+            case KEEP_ALIVE:
+                return new KeepAlive();
+            case EXCEPTION_NOTIFY:
+                return new ExceptionNotify(new RemoteException(String.valueOf(readValue(in, classResolver, inbound, serializableTypes))));
+            case HANDSHAKE_FROM_CLIENT:
+                return new HandshakeFromClient(readStrings(in), readStrings(in), readStrings(in));
+            case HANDSHAKE_FROM_SERVER:
+                return new HandshakeFromServer(new RemoteChannelId(readString(in)), readStrings(in), readStrings(in), readString(in));
+            default:
+                throw new CorruptedFrameException("unknown message type: " + type);
+        }
+    }
+
+    @Override
+    public boolean isTextual() {
+        return false;
+    }
+
+    private void writeRequest(Request request, ByteBuf out) throws Exception {
+        writeVarLong(out, request.getId());
+
+        final Command command = request.getCommand();
+        if (command == null) {
+            out.writeBoolean(false);
+            return;
+        }
+        out.writeBoolean(true);
+        writeCommand(command, out);
+    }
+
+    private Request readRequest(ByteBuf in, ClassResolver classResolver) throws Exception {
+        final long id = readVarLong(in);
+        if (!in.readBoolean()) {
+            return new Request(id, null);
+        }
+        return new Request(id, readCommand(in, classResolver));
+    }
+
+    private void writeBatchRequest(BatchRequest request, ByteBuf out) throws Exception {
+        writeVarLong(out, request.getId());
+        final Command[] commands = request.getCommands();
+        writeVarInt(out, commands.length);
+        for (Command command : commands) {
+            writeCommand(command, out);
+        }
+    }
+
+    private BatchRequest readBatchRequest(ByteBuf in, ClassResolver classResolver) throws Exception {
+        final long id = readVarLong(in);
+        final Command[] commands = new Command[readCount(in)];
+        for (int i = 0; i < commands.length; i++) {
+            commands[i] = readCommand(in, classResolver);
+        }
+        return new BatchRequest(id, commands);
+    }
+
+    private void writeCommand(Command command, ByteBuf out) throws Exception {
+        // method id stands for the signature, so declared parameter classes are not sent
+        writeVarInt(out, command.getMethodId());
+
+        final List<Object> parameters = command.getParameters();
+        writeVarInt(out, parameters.size());
+        for (Object parameter : parameters) {
+            writeValue(out, parameter, outbound);
+        }
+    }
+
+    private Command readCommand(ByteBuf in, ClassResolver classResolver) throws Exception {
+        final Command command = new Command(readVarInt(in));
+        final int size = readCount(in);
+        for (int i = 0; i < size; i++) {
+            final Object parameter = readValue(in, classResolver, inbound, serializableTypes);
+            command.addParameter(parameter, parameter == null ? Object.class : parameter.getClass());
+        }
+        return command;
+    }
+
+    private void writeResponse(Response response, ByteBuf out) throws Exception {
+        writeVarLong(out, response.getId());
+
+        final Result result = response.getResult();
+        if (result == null) {
+            out.writeBoolean(false);
+            return;
+        }
+        out.writeBoolean(true);
+        writeClassName(out, result.getReturnClass().getName());
+        writeResult(result, out);
+    }
+
+    private Response readResponse(ByteBuf in, ClassResolver classResolver) throws Exception {
+        final long id = readVarLong(in);
+        if (!in.readBoolean()) {
+            return new Response(id, null, null);
+        }
+
+        final String className = readClassName(in);
+        return new Response(id, readResult(className, in, classResolver), className);
+    }
+
+    private void writeBatchResponse(BatchResponse response, ByteBuf out) throws Exception {
+        writeVarLong(out, response.getId());
+        final Result[] results = response.getResults();
+        writeVarInt(out, results.length);
+        for (Result result : results) {
+            writeClassName(out, result.getReturnClass().getName());
+            writeResult(result, out);
+        }
+    }
+
+    private BatchResponse readBatchResponse(ByteBuf in, ClassResolver classResolver) throws Exception {
+        final long id = readVarLong(in);
+        final Result[] results = new Result[readCount(in)];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = readResult(readClassName(in), in, classResolver);
+        }
+        return new BatchResponse(id, results);
+    }
+
+    private void writeResult(Result result, ByteBuf out) throws Exception {
+        out.writeBoolean(result.isExceptional());
+        if (!result.isExceptional() && result.getReturn() instanceof Throwable) {
+            // throwable returned by the method is a value, not a stack trace
+            writeSerializedValue(out, result.getReturn());
+            return;
+        }
+        writeValue(out, result.getReturn(), outbound);
+    }
+
+    private Result readResult(String className, ByteBuf in, ClassResolver classResolver) throws Exception {
+        final boolean exceptional = in.readBoolean();
+        Class<?> returnClass;
+        try {
+            returnClass = classResolver.resolve(className);
+        } catch (ClassNotFoundException e) {
+            if (!exceptional) {
+                throw e;
+            }
+            // exception thrown on remote side does not have to be in local classpath, its stack trace is kept anyway
+            returnClass = Exception.class;
+        }
+        return new Result(readValue(in, classResolver, inbound, serializableTypes), returnClass, exceptional);
+    }
+
+    private void writeInvocationRequest(InvocationRequest msg, ByteBuf out) throws Exception {
+        writeVarInt(out, msg.methodId);
+        if (msg.args == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        writeVarInt(out, msg.args.length);
+        for (Object arg : msg.args) {
+            writeValue(out, arg, outbound);
+        }
+    }
+
+    private InvocationRequest readInvocationRequest(ByteBuf in, ClassResolver classResolver) throws Exception {
+        final int methodId = readVarInt(in);
+        // checked against the arity of the method once it is resolved, see DispatchTable
+        final int size = readCount(in);
+        final Object[] args = size == 0 ? null : new Object[size];
+        for (int i = 0; i < size; i++) {
+            args[i] = readValue(in, classResolver, inbound, serializableTypes);
+        }
+        return new InvocationRequest(methodId, args);
+    }
+
+    private void writeClassName(ByteBuf out, String className) {
+        if (outbound == null) {
+            writeString(out, className);
+        } else {
+            writeTaggedString(out, className, outbound);
+        }
+    }
+
+    private String readClassName(ByteBuf in) {
+        return inbound == null ? readString(in) : readTaggedString(in, inbound);
+    }
+
+    @Override
+    public String toString() {
+        return dictionarySize == 0 ? "BinarySerializer" : "BinarySerializer{dictionarySize=" + dictionarySize + "}";
+    }
+}
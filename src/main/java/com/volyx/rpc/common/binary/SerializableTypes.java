@@ -0,0 +1,126 @@
+package com.volyx.rpc.common.binary;
+
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Classes {@link BinaryFormat} agrees to java deserialize, the bytes come from the remote side. <br/>
+ * <br/>
+ * JDK value classes and collections, throwables and arrays of those are always accepted. Any other class must be
+ * declared, or be a subclass of a declared one: declared are the types registered interfaces take and return,
+ * type arguments included, and whatever is allowed explicitly. Supertypes of declared classes are accepted too,
+ * as their fields are deserialized along. Declared JDK types other than the built-in ones match exactly,
+ * so a declared List does not let in an arbitrary implementation of it. Instances are immutable.
+ */
+public class SerializableTypes {
+
+    private static final Set<String> BUILT_IN = new HashSet<String>(Arrays.asList(
+            "java.lang.Boolean", "java.lang.Byte", "java.lang.Character", "java.lang.Short", "java.lang.Integer",
+            "java.lang.Long", "java.lang.Float", "java.lang.Double", "java.lang.Number", "java.lang.String",
+            "java.lang.Enum", "java.lang.StackTraceElement",
+            "java.math.BigInteger", "java.math.BigDecimal",
+            "java.util.ArrayList", "java.util.LinkedList", "java.util.ArrayDeque", "java.util.Arrays$ArrayList",
+            "java.util.HashMap", "java.util.LinkedHashMap", "java.util.TreeMap",
+            "java.util.HashSet", "java.util.LinkedHashSet", "java.util.TreeSet",
+            "java.util.Collections$EmptyList", "java.util.Collections$EmptyMap", "java.util.Collections$EmptySet",
+            "java.util.Collections$SingletonList", "java.util.Collections$SingletonMap", "java.util.Collections$SingletonSet",
+            "java.util.Collections$UnmodifiableCollection", "java.util.Collections$UnmodifiableList",
+            "java.util.Collections$UnmodifiableRandomAccessList", "java.util.Collections$UnmodifiableMap",
+            "java.util.Collections$UnmodifiableSet", "java.util.Collections$UnmodifiableSortedMap",
+            "java.util.Collections$UnmodifiableSortedSet",
+            "java.util.Date", "java.util.UUID", "java.util.Locale", "java.util.Optional"
+    ));
+
+    /**
+     * built-in classes only
+     */
+    public static final SerializableTypes NONE_DECLARED = new SerializableTypes(Collections.<Class<?>>emptySet());
+
+    private final Set<Class<?>> declared;
+
+    private SerializableTypes(Set<Class<?>> declared) {
+        this.declared = declared;
+    }
+
+    /**
+     * @return types accepting also the given classes and their subclasses
+     */
+    public SerializableTypes with(Collection<Class<?>> classes) {
+        final Set<Class<?>> extended = new LinkedHashSet<Class<?>>(declared);
+        for (Class<?> clazz : classes) {
+            addDeclared(extended, clazz);
+        }
+        return new SerializableTypes(Collections.unmodifiableSet(extended));
+    }
+
+    /**
+     * @return types accepting also whatever methods of the interfaces take or return
+     */
+    public SerializableTypes withInterfaces(Collection<Class<?>> interfaces) {
+        final Set<Class<?>> extended = new LinkedHashSet<Class<?>>(declared);
+        for (Class<?> iface : interfaces) {
+            for (Method method : iface.getMethods()) {
+                addDeclared(extended, method.getGenericReturnType());
+                for (Type parameter : method.getGenericParameterTypes()) {
+                    addDeclared(extended, parameter);
+                }
+            }
+        }
+        return new SerializableTypes(Collections.unmodifiableSet(extended));
+    }
+
+    public boolean isAllowed(Class<?> clazz) {
+        if (clazz.isArray()) {
+            return isAllowed(clazz.getComponentType());
+        }
+        if (clazz.isPrimitive() || BUILT_IN.contains(clazz.getName()) || Throwable.class.isAssignableFrom(clazz)) {
+            return true;
+        }
+        for (Class<?> type : declared) {
+            if (type == clazz) {
+                return true;
+            }
+            if (!isJdk(type) && (type.isAssignableFrom(clazz) || clazz != Object.class && clazz.isAssignableFrom(type))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void addDeclared(Set<Class<?>> declared, Type type) {
+        if (type instanceof Class) {
+            final Class<?> clazz = (Class<?>) type;
+            if (clazz.isArray()) {
+                addDeclared(declared, clazz.getComponentType());
+            } else if (!clazz.isPrimitive() && clazz != Object.class) {
+                declared.add(clazz);
+            }
+        } else if (type instanceof ParameterizedType) {
+            addDeclared(declared, ((ParameterizedType) type).getRawType());
+            for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+                addDeclared(declared, argument);
+            }
+        } else if (type instanceof GenericArrayType) {
+            addDeclared(declared, ((GenericArrayType) type).getGenericComponentType());
+        } else if (type instanceof WildcardType) {
+            for (Type bound : ((WildcardType) type).getUpperBounds()) {
+                addDeclared(declared, bound);
+            }
+        }
+        // type variables are left out, their bounds are rarely narrower than Object
+    }
+
+    private static boolean isJdk(Class<?> clazz) {
+        final String name = clazz.getName();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.") || name.startsWith("com.sun.");
+    }
+}
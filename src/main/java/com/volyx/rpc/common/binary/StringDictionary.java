@@ -0,0 +1,105 @@
+package com.volyx.rpc.common.binary;
+
+import io.netty.handler.codec.CorruptedFrameException;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Strings one direction of a connection has already carried, numbered so repeated ones are sent as ids. <br/>
+ * <br/>
+ * Writing and reading side keep a dictionary each and update them in the same order, as strings go over the wire,
+ * so ids match without ever being negotiated. When the dictionary is full the least recently used string gives its id
+ * to the new one. Instances are confined to the connection's event loop.
+ */
+class StringDictionary {
+
+    /**
+     * shorter strings are not worth an id
+     */
+    static final int MIN_LENGTH = 4;
+
+    /**
+     * longer strings are payload rather than names, they rarely repeat
+     */
+    static final int MAX_LENGTH = 512;
+
+    private final String[] values;
+    // iteration order is the eviction order, used entries are moved to the end
+    private final LinkedHashMap<String, Integer> ids = new LinkedHashMap<>();
+    private boolean resetPending;
+
+    StringDictionary(int capacity) {
+        this.values = new String[capacity];
+    }
+
+    static boolean isWorthIt(String value) {
+        return value.length() >= MIN_LENGTH && value.length() <= MAX_LENGTH;
+    }
+
+    /**
+     * @return id of the string marked as just used, -1 if it is not in the dictionary
+     */
+    int use(String value) {
+        final Integer id = ids.remove(value);
+        if (id == null) {
+            return -1;
+        }
+        ids.put(value, id);
+        return id;
+    }
+
+    /**
+     * @return string with such id marked as just used
+     * @throws CorruptedFrameException if there is no such id, the other side's dictionary is out of sync
+     */
+    String use(int id) {
+        final String value = id >= 0 && id < values.length ? values[id] : null;
+        if (value == null) {
+            throw new CorruptedFrameException("unknown dictionary id: " + id);
+        }
+        ids.remove(value);
+        ids.put(value, id);
+        return value;
+    }
+
+    /**
+     * adds string which is not in the dictionary yet, evicting the least recently used one if it is full
+     */
+    void define(String value) {
+        final int id;
+        if (ids.size() < values.length) {
+            id = ids.size();
+        } else {
+            final Iterator<Integer> eldest = ids.values().iterator();
+            id = eldest.next();
+            eldest.remove();
+        }
+        values[id] = value;
+        ids.put(value, id);
+    }
+
+    /**
+     * forgets all the strings, done by the writing side when a message it has updated the dictionary for is not sent,
+     * reading side is told to do the same with the next definition
+     */
+    void reset() {
+        clear();
+        resetPending = true;
+    }
+
+    /**
+     * @return whether the next definition has to tell the reading side to reset its dictionary
+     */
+    boolean takeReset() {
+        final boolean reset = resetPending;
+        resetPending = false;
+        return reset;
+    }
+
+    void clear() {
+        ids.clear();
+        Arrays.fill(values, null);
+    }
+}
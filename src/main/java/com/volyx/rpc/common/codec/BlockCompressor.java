@@ -0,0 +1,145 @@
+package com.volyx.rpc.common.codec;
+
+import com.volyx.rpc.api.Compression;
+import com.volyx.rpc.api.exception.ConfigurationException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses whole payloads of one connection, instances are not thread safe and are used from the event loop only.
+ */
+abstract class BlockCompressor {
+
+    /**
+     * @return compressed payload, null if it would not be smaller than the raw one
+     */
+    abstract byte[] compress(byte[] raw);
+
+    /**
+     * @param raw array of exactly the original payload length, filled with the decompressed payload
+     */
+    abstract void decompress(byte[] compressed, byte[] raw) throws DataFormatException;
+
+    /**
+     * releases native resources, the compressor is not used afterwards
+     */
+    void close() {
+    }
+
+    static boolean isAvailable(Compression compression) {
+        return compression != Compression.LZ4 || Lz4.COMPRESS != null;
+    }
+
+    static BlockCompressor create(Compression compression) {
+        if (!isAvailable(compression)) {
+            throw new ConfigurationException(compression + " compression is not available, lz4-java is not in the classpath");
+        }
+        switch (compression) {
+            case DEFLATE:
+                return new Deflate();
+            case LZ4:
+                return new Lz4();
+            default:
+                throw new IllegalArgumentException("unknown compression " + compression);
+        }
+    }
+
+    private static final class Deflate extends BlockCompressor {
+
+        // no zlib header and checksum, frames are already checked by the framing
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        private final Inflater inflater = new Inflater(true);
+
+        @Override
+        byte[] compress(byte[] raw) {
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            final byte[] out = new byte[raw.length];
+            int length = 0;
+            while (!deflater.finished() && length < out.length) {
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            return deflater.finished() ? Arrays.copyOf(out, length) : null;
+        }
+
+        @Override
+        void decompress(byte[] compressed, byte[] raw) throws DataFormatException {
+            inflater.reset();
+            inflater.setInput(compressed);
+            int length = 0;
+            while (length < raw.length) {
+                final int inflated = inflater.inflate(raw, length, raw.length - length);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("payload is shorter than declared: " + length + " of " + raw.length);
+                }
+                length += inflated;
+            }
+        }
+
+        @Override
+        void close() {
+            deflater.end();
+            inflater.end();
+        }
+    }
+
+    /**
+     * lz4-java is an optional dependency, so it is bound reflectively once; its compressors are thread safe and shared
+     */
+    private static final class Lz4 extends BlockCompressor {
+
+        private static final MethodHandle COMPRESS;
+        private static final MethodHandle DECOMPRESS;
+
+        static {
+            MethodHandle compress = null;
+            MethodHandle decompress = null;
+            try {
+                final Class<?> factoryClass = Class.forName("net.jpountz.lz4.LZ4Factory");
+                final Object factory = factoryClass.getMethod("fastestInstance").invoke(null);
+                final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                compress = lookup.findVirtual(Class.forName("net.jpountz.lz4.LZ4Compressor"), "compress",
+                        MethodType.methodType(byte[].class, byte[].class))
+                        .bindTo(factoryClass.getMethod("fastCompressor").invoke(factory));
+                decompress = lookup.findVirtual(Class.forName("net.jpountz.lz4.LZ4FastDecompressor"), "decompress",
+                        MethodType.methodType(int.class, byte[].class, int.class, byte[].class, int.class, int.class))
+                        .bindTo(factoryClass.getMethod("fastDecompressor").invoke(factory));
+            } catch (Throwable e) {
+                compress = null;
+            }
+            COMPRESS = compress;
+            DECOMPRESS = decompress;
+        }
+
+        @Override
+        byte[] compress(byte[] raw) {
+            final byte[] compressed;
+            try {
+                compressed = (byte[]) COMPRESS.invokeExact(raw);
+            } catch (Throwable e) {
+                throw new IllegalStateException("lz4 compression failed", e);
+            }
+            return compressed.length < raw.length ? compressed : null;
+        }
+
+        @Override
+        void decompress(byte[] compressed, byte[] raw) throws DataFormatException {
+            final int read;
+            try {
+                read = (int) DECOMPRESS.invokeExact(compressed, 0, raw, 0, raw.length);
+            } catch (Throwable e) {
+                throw new DataFormatException("malformed lz4 payload: " + e.getMessage());
+            }
+            if (read != compressed.length) {
+                throw new DataFormatException("lz4 payload has " + (compressed.length - read) + " trailing bytes");
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.volyx.rpc.common.codec;
+
+import com.volyx.rpc.api.Compression;
+import com.volyx.rpc.api.Framing;
+import com.volyx.rpc.api.Serializer;
+import com.volyx.rpc.api.exception.ConfigurationException;
+import com.volyx.rpc.common.Constants;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable set of wire settings shared by both ends of a connection, both sides must agree on them. <br/>
+ * Compression is the exception, each side lists algorithms it accepts and one of them is negotiated during handshake.
+ */
+public class CodecConfig {
+
+    private static final Compression[] NO_COMPRESSION = new Compression[0];
+
+    private final Framing framing;
+    private final int maxFrameLength;
+    private final Serializer serializer;
+    private final Compression[] compressions;
+    private final int compressionThreshold;
+
+    public CodecConfig(Framing framing, int maxFrameLength, Serializer serializer) {
+        this(framing, maxFrameLength, serializer, NO_COMPRESSION, 0);
+    }
+
+    /**
+     * @param compressions accepted algorithms in order of preference, empty to never compress
+     * @param compressionThreshold payloads shorter than this many bytes are sent raw
+     */
+    public CodecConfig(Framing framing, int maxFrameLength, Serializer serializer, Compression[] compressions, int compressionThreshold) {
+        if (framing == Framing.DELIMITED && !serializer.isTextual()) {
+            throw new ConfigurationException(serializer + " may write NUL bytes, it can't be used with " + framing + " framing");
+        }
+        if (framing == Framing.DELIMITED && compressions.length > 0) {
+            throw new ConfigurationException("compressed payloads may contain NUL bytes, compression can't be used with " + framing + " framing");
+        }
+        if (compressionThreshold < 0) {
+            throw new ConfigurationException("compression threshold must not be negative: " + compressionThreshold);
+        }
+        this.framing = framing;
+        this.maxFrameLength = maxFrameLength;
+        this.serializer = serializer;
+        this.compressions = compressions.clone();
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * @return longest frame accepted unless set explicitly, {@link Framing#DELIMITED} keeps its original limit of 8192 bytes
+     */
+    public static int defaultMaxFrameLength(Framing framing) {
+        return framing == Framing.DELIMITED ? Constants.DEFAULT_DELIMITED_MAX_FRAME_LENGTH : Constants.DEFAULT_MAX_FRAME_LENGTH;
+    }
+
+    public Framing getFraming() {
+        return framing;
+    }
+
+    public int getMaxFrameLength() {
+        return maxFrameLength;
+    }
+
+    public Serializer getSerializer() {
+        return serializer;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * @return names of accepted algorithms available in this JVM, in order of preference
+     */
+    public String[] getOfferedCompressions() {
+        final List<String> offered = new ArrayList<>();
+        for (Compression compression : compressions) {
+            if (BlockCompressor.isAvailable(compression)) {
+                offered.add(compression.name());
+            }
+        }
+        return offered.toArray(new String[offered.size()]);
+    }
+
+    /**
+     * @param offered algorithm names offered by the other side, in its order of preference
+     * @return first offered algorithm this side accepts, null if there is none
+     */
+    public Compression negotiate(String[] offered) {
+        final List<String> accepted = Arrays.asList(getOfferedCompressions());
+        for (String name : offered) {
+            if (accepted.contains(name)) {
+                return Compression.valueOf(name);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "CodecConfig{" +
+                "framing=" + framing +
+                ", maxFrameLength=" + maxFrameLength +
+                ", serializer=" + serializer +
+                ", compressions=" + Arrays.toString(compressions) +
+                ", compressionThreshold=" + compressionThreshold +
+                '}';
+    }
+}
@@ -0,0 +1,141 @@
+package com.volyx.rpc.common.codec;
+
+import com.volyx.rpc.api.Compression;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.MessageToMessageCodec;
+import io.netty.handler.codec.TooLongFrameException;
+
+import java.util.List;
+
+import static com.volyx.rpc.common.binary.BinaryFormat.readVarInt;
+import static com.volyx.rpc.common.binary.BinaryFormat.writeVarInt;
+
+/**
+ * Compresses payloads of one connection with the algorithm negotiated during handshake, sits between framing and message codec. <br/>
+ * <br/>
+ * Every payload is prefixed with a byte telling whether it is raw or compressed, compressed ones also carry their raw length. <br/>
+ * Payloads below the threshold are sent raw. When a payload does not shrink to {@link #POOR_RATIO} of its size,
+ * the following payloads are sent raw without trying, the more poorly compressible payloads in a row the longer the pause.
+ */
+public class CompressionCodec extends MessageToMessageCodec<ByteBuf, ByteBuf> {
+
+    public static final String NAME = "compression";
+
+    private static final byte RAW = 0;
+
+    static final double POOR_RATIO = 0.9;
+
+    /**
+     * payloads sent raw after the first poorly compressed one, doubled with each next one up to {@link #MAX_BACKOFF}
+     */
+    static final int MIN_BACKOFF = 8;
+
+    static final int MAX_BACKOFF = 1024;
+
+    private final Compression compression;
+    private final byte header;
+    private final BlockCompressor compressor;
+    private final int threshold;
+    private final int maxFrameLength;
+    private final CompressionStats stats;
+
+    private int backoff = MIN_BACKOFF;
+    private int skip;
+
+    /**
+     * @param threshold payloads shorter than this are sent raw
+     * @param maxFrameLength longest payload a compressed one may expand to
+     */
+    public CompressionCodec(Compression compression, int threshold, int maxFrameLength) {
+        this.compression = compression;
+        this.header = (byte) (compression.ordinal() + 1);
+        this.compressor = BlockCompressor.create(compression);
+        this.threshold = threshold;
+        this.maxFrameLength = maxFrameLength;
+        this.stats = new CompressionStats(compression);
+    }
+
+    /**
+     * adds the codec right after the frame encoder, must be called from the channel's event loop <br/>
+     * messages written before are sent uncompressed, messages read afterwards are expected to be prefixed
+     */
+    public static void install(ChannelPipeline pipeline, Compression compression, CodecConfig config) {
+        pipeline.addAfter("frameEncoder", NAME, new CompressionCodec(compression, config.getCompressionThreshold(), config.getMaxFrameLength()));
+    }
+
+    public CompressionStats getStats() {
+        return stats;
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) throws Exception {
+        final int length = msg.readableBytes();
+        if (length >= threshold) {
+            if (skip > 0) {
+                skip--;
+            } else {
+                final byte[] compressed = compressor.compress(ByteBufUtil.getBytes(msg));
+                if (compressed != null && compressed.length <= length * POOR_RATIO) {
+                    backoff = MIN_BACKOFF;
+                    final ByteBuf prefix = ctx.alloc().ioBuffer(6);
+                    prefix.writeByte(header);
+                    writeVarInt(prefix, length);
+                    stats.written(length, prefix.readableBytes() + compressed.length, true);
+                    out.add(compose(ctx, prefix, Unpooled.wrappedBuffer(compressed)));
+                    return;
+                }
+                skip = backoff;
+                backoff = Math.min(backoff * 2, MAX_BACKOFF);
+            }
+        }
+
+        final ByteBuf prefix = ctx.alloc().ioBuffer(1);
+        prefix.writeByte(RAW);
+        stats.written(length, length + 1, false);
+        out.add(compose(ctx, prefix, msg.retain()));
+    }
+
+    /**
+     * frame encoder takes a single buffer per payload, the prefix is added as a component so the payload is not copied
+     */
+    private static ByteBuf compose(ChannelHandlerContext ctx, ByteBuf prefix, ByteBuf payload) {
+        final CompositeByteBuf buf = ctx.alloc().compositeBuffer(2);
+        buf.addComponents(true, prefix, payload);
+        return buf;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) throws Exception {
+        final int wireLength = msg.readableBytes();
+        final byte type = msg.readByte();
+        if (type == RAW) {
+            stats.read(wireLength - 1, wireLength);
+            out.add(msg.retain());
+            return;
+        }
+        if (type != header) {
+            throw new CorruptedFrameException("payload is not compressed with " + compression + ": " + type);
+        }
+
+        final int length = readVarInt(msg);
+        if (length < 0 || length > maxFrameLength) {
+            throw new TooLongFrameException("decompressed payload length exceeds " + maxFrameLength + ": " + length);
+        }
+        final byte[] raw = new byte[length];
+        compressor.decompress(ByteBufUtil.getBytes(msg), raw);
+        stats.read(length, wireLength);
+        out.add(Unpooled.wrappedBuffer(raw));
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        compressor.close();
+        super.handlerRemoved(ctx);
+    }
+}
@@ -0,0 +1,77 @@
+package com.volyx.rpc.common.codec;
+
+import com.volyx.rpc.api.Compression;
+
+/**
+ * Byte counters of one compressed connection, updated from its event loop and readable from any thread. <br/>
+ * Raw bytes are payloads as serialized, wire bytes are what they took after compression, headers included.
+ */
+public class CompressionStats {
+
+    private final Compression compression;
+
+    private volatile long rawBytesWritten;
+    private volatile long wireBytesWritten;
+    private volatile long compressedMessagesWritten;
+    private volatile long rawBytesRead;
+    private volatile long wireBytesRead;
+
+    CompressionStats(Compression compression) {
+        this.compression = compression;
+    }
+
+    void written(int rawBytes, int wireBytes, boolean compressed) {
+        rawBytesWritten += rawBytes;
+        wireBytesWritten += wireBytes;
+        if (compressed) {
+            compressedMessagesWritten++;
+        }
+    }
+
+    void read(int rawBytes, int wireBytes) {
+        rawBytesRead += rawBytes;
+        wireBytesRead += wireBytes;
+    }
+
+    /**
+     * @return algorithm negotiated for the connection
+     */
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public long getRawBytesWritten() {
+        return rawBytesWritten;
+    }
+
+    public long getWireBytesWritten() {
+        return wireBytesWritten;
+    }
+
+    /**
+     * @return number of payloads sent compressed, others were below the threshold or poorly compressible
+     */
+    public long getCompressedMessagesWritten() {
+        return compressedMessagesWritten;
+    }
+
+    public long getRawBytesRead() {
+        return rawBytesRead;
+    }
+
+    public long getWireBytesRead() {
+        return wireBytesRead;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionStats{" +
+                "compression=" + compression +
+                ", rawBytesWritten=" + rawBytesWritten +
+                ", wireBytesWritten=" + wireBytesWritten +
+                ", compressedMessagesWritten=" + compressedMessagesWritten +
+                ", rawBytesRead=" + rawBytesRead +
+                ", wireBytesRead=" + wireBytesRead +
+                '}';
+    }
+}
@@ -0,0 +1,27 @@
+package com.volyx.rpc.common.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+import java.util.List;
+
+/**
+ * Terminates outbound payloads with NUL (0x00), counterpart of {@link io.netty.handler.codec.DelimiterBasedFrameDecoder}.
+ */
+@ChannelHandler.Sharable
+public class DelimiterFrameEncoder extends MessageToMessageEncoder<ByteBuf> {
+
+    /**
+     * direct, so the transport does not copy it into a direct buffer on every write
+     */
+    private static final ByteBuf DELIMITER = Unpooled.unreleasableBuffer(Unpooled.directBuffer(1, 1).writeByte(0));
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) throws Exception {
+        out.add(msg.retain());
+        out.add(DELIMITER.duplicate());
+    }
+}
@@ -0,0 +1,32 @@
+package com.volyx.rpc.common.codec;
+
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.DelimiterBasedFrameDecoder;
+import io.netty.handler.codec.Delimiters;
+
+public class FrameCodecs {
+
+    private static final DelimiterFrameEncoder delimiterEncoder = new DelimiterFrameEncoder();
+
+    /**
+     * adds frame decoder and encoder, chosen by {@link CodecConfig#getFraming()}, to the end of the pipeline <br/>
+     * handlers added afterwards deal with bare payloads, without delimiters or headers
+     * @param pipeline pipeline of a freshly initialized channel
+     * @param config wire settings
+     */
+    public static void addFraming(ChannelPipeline pipeline, CodecConfig config) {
+        switch (config.getFraming()) {
+            case LENGTH_FIELD:
+                pipeline.addLast("framer", new LengthFieldFrameDecoder(config.getMaxFrameLength()));
+                pipeline.addLast("frameEncoder", new LengthFieldFrameEncoder(config.getMaxFrameLength()));
+                break;
+            case DELIMITED:
+                // NUL (0x00) is a message delimiter
+                pipeline.addLast("framer", new DelimiterBasedFrameDecoder(config.getMaxFrameLength(), Delimiters.nulDelimiter()));
+                pipeline.addLast("frameEncoder", delimiterEncoder);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown framing " + config.getFraming());
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.volyx.rpc.common.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+
+import static com.volyx.rpc.common.Constants.FRAME_HEADER_LENGTH;
+import static com.volyx.rpc.common.Constants.FRAME_MAGIC;
+import static com.volyx.rpc.common.Constants.FRAME_VERSION;
+
+/**
+ * Cuts inbound stream into frames of the following layout:
+ * <pre>
+ * +-------+---------+--------+-----------------+
+ * | magic | version | length | payload         |
+ * | 2     | 1       | 4      | length bytes    |
+ * +-------+---------+--------+-----------------+
+ * </pre>
+ * Header is validated before the length is trusted and stripped from the emitted frame.
+ */
+public class LengthFieldFrameDecoder extends LengthFieldBasedFrameDecoder {
+
+    private static final int LENGTH_FIELD_OFFSET = 3;
+    private static final int LENGTH_FIELD_LENGTH = 4;
+
+    public LengthFieldFrameDecoder(int maxFrameLength) {
+        super(maxFrameLength + FRAME_HEADER_LENGTH, LENGTH_FIELD_OFFSET, LENGTH_FIELD_LENGTH, 0, FRAME_HEADER_LENGTH);
+    }
+
+    @Override
+    protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+        if (in.readableBytes() >= LENGTH_FIELD_OFFSET) {
+            final int readerIndex = in.readerIndex();
+            final short magic = in.getShort(readerIndex);
+            if (magic != FRAME_MAGIC) {
+                in.skipBytes(in.readableBytes());
+                throw new CorruptedFrameException("bad frame magic: 0x" + Integer.toHexString(magic & 0xFFFF));
+            }
+            final byte version = in.getByte(readerIndex + 2);
+            if (version != FRAME_VERSION) {
+                in.skipBytes(in.readableBytes());
+                throw new CorruptedFrameException("unsupported frame version: " + version);
+            }
+        }
+        return super.decode(ctx, in);
+    }
+}
@@ -0,0 +1,43 @@
+package com.volyx.rpc.common.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+import io.netty.handler.codec.TooLongFrameException;
+
+import java.util.List;
+
+import static com.volyx.rpc.common.Constants.FRAME_HEADER_LENGTH;
+import static com.volyx.rpc.common.Constants.FRAME_MAGIC;
+import static com.volyx.rpc.common.Constants.FRAME_VERSION;
+
+/**
+ * Prepends magic, version and length header to outbound payloads, see {@link LengthFieldFrameDecoder}. <br/>
+ * Payload itself is passed on as is, header is written as a separate buffer so nothing gets copied.
+ */
+@ChannelHandler.Sharable
+public class LengthFieldFrameEncoder extends MessageToMessageEncoder<ByteBuf> {
+
+    private final int maxFrameLength;
+
+    public LengthFieldFrameEncoder(int maxFrameLength) {
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) throws Exception {
+        final int length = msg.readableBytes();
+        if (length > maxFrameLength) {
+            throw new TooLongFrameException("frame length exceeds " + maxFrameLength + ": " + length);
+        }
+
+        final ByteBuf header = ctx.alloc().ioBuffer(FRAME_HEADER_LENGTH);
+        header.writeShort(FRAME_MAGIC);
+        header.writeByte(FRAME_VERSION);
+        header.writeInt(length);
+
+        out.add(header);
+        out.add(msg.retain());
+    }
+}
@@ -0,0 +1,131 @@
+package com.volyx.rpc.common.codec;
+
+import com.volyx.rpc.api.Serializer;
+import com.volyx.rpc.common.BatchRequest;
+import com.volyx.rpc.common.BatchResponse;
+import com.volyx.rpc.common.Command;
+import com.volyx.rpc.common.Request;
+import com.volyx.rpc.common.Response;
+import com.volyx.rpc.common.Result;
+import com.volyx.rpc.common.message.InvocationRequest;
+import com.volyx.rpc.common.message.KeepAlive;
+import io.netty.channel.ChannelHandler;
+import io.netty.handler.codec.serialization.ClassResolver;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Message codec of in-JVM connections, which carry objects rather than bytes. <br/>
+ * <br/>
+ * Messages holding nothing but immutable JDK values are handed to the other side as they are.
+ * Any other message is still written with the serializer, to a buffer read by the other side right away,
+ * so user objects are copied and resolved by the receiving side's class resolver, as over a socket.
+ * No framing or compression is involved either way.
+ */
+@ChannelHandler.Sharable
+public class LocalMessageCodec extends MessageCodec {
+
+    /**
+     * final JDK classes without mutable state, loaded by the bootstrap class loader, so both sides see the same class
+     */
+    private static final Set<Class<?>> IMMUTABLE = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+            String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class,
+            Float.class, Double.class, BigInteger.class, BigDecimal.class));
+
+    private final Serializer serializer;
+    private final ClassResolver classResolver;
+
+    public LocalMessageCodec(Serializer serializer, ClassResolver classResolver) {
+        super(serializer, classResolver);
+        this.serializer = serializer;
+        this.classResolver = classResolver;
+    }
+
+    @Override
+    public MessageCodec forConnection(int maxMessageLength) {
+        final Serializer connectionSerializer = serializer.forConnection(maxMessageLength);
+        return connectionSerializer == serializer ? this : new LocalMessageCodec(connectionSerializer, classResolver);
+    }
+
+    /**
+     * messages passed by reference skip encoding, the other side gets them as they are
+     */
+    @Override
+    public boolean acceptOutboundMessage(Object msg) throws Exception {
+        return super.acceptOutboundMessage(msg) && !isPassedByReference(msg);
+    }
+
+    static boolean isPassedByReference(Object msg) {
+        if (msg instanceof KeepAlive) {
+            return true;
+        }
+        if (msg instanceof InvocationRequest) {
+            return areImmutable(((InvocationRequest) msg).args);
+        }
+        if (msg instanceof BatchRequest) {
+            for (Command command : ((BatchRequest) msg).getCommands()) {
+                if (!areImmutable(command.getParameters())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (msg instanceof Request) {
+            final Command command = ((Request) msg).getCommand();
+            return command == null || areImmutable(command.getParameters());
+        }
+        if (msg instanceof BatchResponse) {
+            for (Result result : ((BatchResponse) msg).getResults()) {
+                if (!isImmutable(result)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (msg instanceof Response) {
+            return isImmutable(((Response) msg).getResult());
+        }
+        // handshakes and exception notifications are rare, they keep the serialized form
+        return false;
+    }
+
+    /**
+     * exceptions are serialized, so the caller gets them in the same form as over a socket
+     */
+    private static boolean isImmutable(Result result) {
+        return result == null || !result.isExceptional() && isImmutable(result.getReturn());
+    }
+
+    private static boolean areImmutable(List<Object> values) {
+        for (Object value : values) {
+            if (!isImmutable(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean areImmutable(Object[] values) {
+        if (values == null) {
+            return true;
+        }
+        for (Object value : values) {
+            if (!isImmutable(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean isImmutable(Object value) {
+        if (value == null || IMMUTABLE.contains(value.getClass())) {
+            return true;
+        }
+        return value instanceof Enum && ((Enum<?>) value).getDeclaringClass().getClassLoader() == null;
+    }
+}
@@ -0,0 +1,66 @@
+package com.volyx.rpc.common.codec;
+
+import com.volyx.rpc.api.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageCodec;
+import io.netty.handler.codec.serialization.ClassResolver;
+
+import java.util.List;
+
+/**
+ * Converts framed payloads to messages and back using configured {@link Serializer}. <br/>
+ * Shared by connections unless the serializer keeps per-connection state, see {@link #forConnection(int)}.
+ */
+@ChannelHandler.Sharable
+public class MessageCodec extends MessageToMessageCodec<ByteBuf, Object> {
+
+    private final Serializer serializer;
+    private final ClassResolver classResolver;
+
+    public MessageCodec(Serializer serializer, ClassResolver classResolver) {
+        this.serializer = serializer;
+        this.classResolver = classResolver;
+    }
+
+    /**
+     * @param maxMessageLength longest message the connection carries
+     * @return this codec, or a new one for the connection if its serializer keeps per-connection state
+     */
+    public MessageCodec forConnection(int maxMessageLength) {
+        final Serializer connectionSerializer = serializer.forConnection(maxMessageLength);
+        return connectionSerializer == serializer ? this : new MessageCodec(connectionSerializer, classResolver);
+    }
+
+    /**
+     * raw buffers are already serialized, pass them on as is
+     */
+    @Override
+    public boolean acceptOutboundMessage(Object msg) throws Exception {
+        return !(msg instanceof ByteBuf);
+    }
+
+    /**
+     * encodes into a buffer of channel's allocator, direct one if possible, so it is written to the socket without a copy
+     */
+    @Override
+    protected void encode(ChannelHandlerContext ctx, Object msg, List<Object> out) throws Exception {
+        final ByteBuf buf = ctx.alloc().ioBuffer();
+        try {
+            serializer.write(msg, buf);
+        } catch (Exception e) {
+            buf.release();
+            throw e;
+        }
+        out.add(buf);
+    }
+
+    /**
+     * frame is a slice of the inbound buffer, it is read in place and released once decoded
+     */
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) throws Exception {
+        out.add(serializer.read(msg, classResolver));
+    }
+}
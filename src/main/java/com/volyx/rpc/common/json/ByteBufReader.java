@@ -0,0 +1,52 @@
+package com.volyx.rpc.common.json;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.CharsetUtil;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * Decodes UTF-8 straight from the readable bytes of the buffer into the caller's char array. <br/>
+ * Unlike InputStreamReader it keeps no intermediate byte buffer. Bytes are skipped once the reader is closed.
+ */
+class ByteBufReader extends Reader {
+
+    private final ByteBuf buf;
+    private final ByteBuffer in;
+    private final CharsetDecoder decoder = CharsetUtil.decoder(CharsetUtil.UTF_8);
+
+    ByteBufReader(ByteBuf buf) {
+        this.buf = buf;
+        this.in = buf.nioBuffer();
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        final CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+        CoderResult result = decoder.decode(in, out, true);
+        if (!in.hasRemaining()) {
+            result = decoder.flush(out);
+        }
+        if (result.isError()) {
+            try {
+                result.throwException();
+            } catch (CharacterCodingException e) {
+                throw new IOException("malformed UTF-8", e);
+            }
+        }
+
+        final int read = out.position() - off;
+        return read == 0 && !in.hasRemaining() ? -1 : read;
+    }
+
+    @Override
+    public void close() {
+        buf.skipBytes(buf.readableBytes());
+    }
+}
@@ -0,0 +1,49 @@
+package com.volyx.rpc.common.json;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+/**
+ * Encodes chars as UTF-8 straight into the buffer. <br/>
+ * Unlike OutputStreamWriter it keeps no intermediate byte buffer, so nothing is allocated per message.
+ */
+class ByteBufWriter extends Writer {
+
+    private final ByteBuf out;
+
+    ByteBufWriter(ByteBuf out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(int c) {
+        if (c < 0x80) {
+            out.writeByte(c);
+        } else {
+            ByteBufUtil.writeUtf8(out, String.valueOf((char) c));
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+        ByteBufUtil.writeUtf8(out, off == 0 && len == str.length() ? str : str.subSequence(off, off + len));
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+        ByteBufUtil.writeUtf8(out, CharBuffer.wrap(cbuf, off, len));
+    }
+
+    @Override
+    public void flush() {
+        // nothing is buffered
+    }
+
+    @Override
+    public void close() {
+        // buffer is owned by the caller
+    }
+}
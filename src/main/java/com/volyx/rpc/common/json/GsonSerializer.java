@@ -2,12 +2,11 @@ package com.volyx.rpc.common.json;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import com.volyx.rpc.common.JsonSerializer;
-import com.volyx.rpc.common.Request;
-import com.volyx.rpc.common.Response;
 
-import java.util.Date;
+import java.io.IOException;
 
 public class GsonSerializer extends JsonSerializer {
     private static final Gson DEFAULT_GSON;
@@ -18,8 +17,8 @@ public class GsonSerializer extends JsonSerializer {
         GSON_BUILDER.enableComplexMapKeySerialization();
 
         // register the three kinds of Type Adapters to handle requests, responses, and date objects
-        GSON_BUILDER.registerTypeAdapter(Request.class, new RequestTypeAdapter());
-        GSON_BUILDER.registerTypeAdapter(Response.class, new ResponseTypeAdapter());
+        GSON_BUILDER.registerTypeAdapterFactory(RequestTypeAdapter.FACTORY);
+        GSON_BUILDER.registerTypeAdapterFactory(ResponseTypeAdapter.FACTORY);
 //        GSON_BUILDER.registerTypeAdapter(Date.class, new DateTypeAdapter());
         GSON_BUILDER.serializeNulls();
 
@@ -34,16 +33,17 @@ public class GsonSerializer extends JsonSerializer {
         return DEFAULT_GSON.toJson(src, srcClass);
     }
 
-    public JsonElement toJsonElement(Object src) {
-        return DEFAULT_GSON.toJsonTree(src);
+    @SuppressWarnings("unchecked")
+    public void toJson(Object src, Class srcClass, JsonWriter writer) throws IOException {
+        DEFAULT_GSON.getAdapter(srcClass).write(writer, src);
     }
 
     public <T> T fromJson(String jsonString, Class<T> srcClass) {
         return DEFAULT_GSON.fromJson(jsonString, srcClass);
     }
 
-    public <T> T fromJsonElement(JsonElement jsonElement, Class<T> srcClass) {
-        return DEFAULT_GSON.fromJson(jsonElement, srcClass);
+    public <T> T fromJson(JsonReader reader, Class<T> srcClass) throws IOException {
+        return DEFAULT_GSON.getAdapter(srcClass).read(reader);
     }
 }
 
@@ -0,0 +1,204 @@
+package com.volyx.rpc.common.json;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.volyx.rpc.api.Serializer;
+import com.volyx.rpc.api.exception.RemoteException;
+import com.volyx.rpc.common.BatchRequest;
+import com.volyx.rpc.common.BatchResponse;
+import com.volyx.rpc.common.JsonSerializer;
+import com.volyx.rpc.common.RemoteChannelId;
+import com.volyx.rpc.common.Request;
+import com.volyx.rpc.common.Response;
+import com.volyx.rpc.common.message.*;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.serialization.ClassResolver;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Human readable serializer, handy for debugging - wire traffic can be read as is. <br/>
+ * Every message is a json object with "type" property going first, requests and responses are streamed
+ * by {@link RequestTypeAdapter} / {@link ResponseTypeAdapter} straight into / from the buffer.
+ */
+public class JsonMessageSerializer implements Serializer {
+
+    private static final JsonSerializer json = JsonSerializer.getInstance();
+
+    @Override
+    public void write(Object message, ByteBuf out) throws Exception {
+        final JsonWriter writer = new JsonWriter(new ByteBufWriter(out));
+        writer.setSerializeNulls(true);
+        writeMessage(message, writer);
+        writer.flush();
+    }
+
+    @Override
+    public Object read(ByteBuf in, ClassResolver classResolver) throws Exception {
+        try (JsonReader reader = new JsonReader(new ByteBufReader(in))) {
+            return readMessage(reader, classResolver);
+        }
+    }
+
+    @Override
+    public boolean isTextual() {
+        return true;
+    }
+
+    private static void writeMessage(Object message, JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("type").value(message.getClass().getSimpleName());
+
+        if (message instanceof Request || message instanceof Response) {
+            writer.name("body");
+            json.toJson(message, message.getClass(), writer);
+        } else if (message instanceof InvocationRequest) {
+            final InvocationRequest msg = (InvocationRequest) message;
+            writer.name("methodId").value(msg.methodId);
+            writer.name("args").beginArray();
+            if (msg.args != null) {
+                for (Object arg : msg.args) {
+                    writeTypedValue(arg, writer);
+                }
+            }
+            writer.endArray();
+        } else if (message instanceof ExceptionNotify) {
+            writer.name("exception").value(ExceptionUtils.getStackTrace(((ExceptionNotify) message).exc));
+        } else if (message instanceof HandshakeFromClient) {
+            final HandshakeFromClient msg = (HandshakeFromClient) message;
+            writeStrings("classNames", msg.classNames, writer);
+            writeStrings("methodSignatures", msg.methodSignatures, writer);
+            writeStrings("compressions", msg.compressions, writer);
+        } else if (message instanceof HandshakeFromServer) {
+            final HandshakeFromServer msg = (HandshakeFromServer) message;
+            writer.name("clientId").value(msg.clientId.asLongText());
+            writeStrings("classNames", msg.classNames, writer);
+            writeStrings("methodSignatures", msg.methodSignatures, writer);
+            writer.name("compression").value(msg.compression);
+        } else if (!(message instanceof KeepAlive)) {
+            throw new IllegalArgumentException("unsupported message type: " + message.getClass().getName());
+        }
+        writer.endObject();
+    }
+
+    private static Object readMessage(JsonReader reader, ClassResolver classResolver) throws IOException, ClassNotFoundException {
+        reader.beginObject();
+        if (!"type".equals(reader.nextName())) {
+            throw new CorruptedFrameException("message type must go first");
+        }
+        final String type = reader.nextString();
+
+        final Object message;
+        if ("Request".equals(type)) {
+            expectName("body", reader);
+            message = json.fromJson(reader, Request.class);
+        } else if ("Response".equals(type)) {
+            expectName("body", reader);
+            message = json.fromJson(reader, Response.class);
+        } else if ("BatchRequest".equals(type)) {
+            expectName("body", reader);
+            message = json.fromJson(reader, BatchRequest.class);
+        } else if ("BatchResponse".equals(type)) {
+            expectName("body", reader);
+            message = json.fromJson(reader, BatchResponse.class);
+        } else if ("InvocationRequest".equals(type)) {
+            expectName("methodId", reader);
+            final int methodId = reader.nextInt();
+            expectName("args", reader);
+            final List<Object> args = new ArrayList<>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                args.add(readTypedValue(reader, classResolver));
+            }
+            reader.endArray();
+            message = new InvocationRequest(methodId, args.isEmpty() ? null : args.toArray());
+        } else if ("ExceptionNotify".equals(type)) {
+            expectName("exception", reader);
+            message = new ExceptionNotify(new RemoteException(reader.nextString()));
+        } else if ("HandshakeFromClient".equals(type)) {
+            message = new HandshakeFromClient(readStrings("classNames", reader), readStrings("methodSignatures", reader), readStrings("compressions", reader));
+        } else if ("HandshakeFromServer".equals(type)) {
+            expectName("clientId", reader);
+            final RemoteChannelId clientId = new RemoteChannelId(reader.nextString());
+            final String[] classNames = readStrings("classNames", reader);
+            final String[] methodSignatures = readStrings("methodSignatures", reader);
+            expectName("compression", reader);
+            message = new HandshakeFromServer(clientId, classNames, methodSignatures, reader.nextString());
+        } else if ("KeepAlive".equals(type)) {
+            message = new KeepAlive();
+        } else {
+            throw new CorruptedFrameException("unknown message type: " + type);
+        }
+        reader.endObject();
+        return message;
+    }
+
+    /**
+     * declared parameter type may be an interface, so runtime class is sent along with the value
+     */
+    private static void writeTypedValue(Object value, JsonWriter writer) throws IOException {
+        if (value == null) {
+            writer.nullValue();
+            return;
+        }
+        writer.beginObject();
+        writer.name("class").value(value.getClass().getName());
+        writer.name("value");
+        json.toJson(value, value.getClass(), writer);
+        writer.endObject();
+    }
+
+    private static Object readTypedValue(JsonReader reader, ClassResolver classResolver) throws IOException, ClassNotFoundException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        reader.beginObject();
+        expectName("class", reader);
+        final Class<?> clazz = classResolver.resolve(reader.nextString());
+        expectName("value", reader);
+        final Object value = json.fromJson(reader, clazz);
+        reader.endObject();
+        return value;
+    }
+
+    private static void writeStrings(String name, String[] values, JsonWriter writer) throws IOException {
+        writer.name(name).beginArray();
+        for (String value : values) {
+            writer.value(value);
+        }
+        writer.endArray();
+    }
+
+    private static String[] readStrings(String name, JsonReader reader) throws IOException {
+        expectName(name, reader);
+        final List<String> values = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            values.add(reader.nextString());
+        }
+        reader.endArray();
+        return values.toArray(new String[values.size()]);
+    }
+
+    /**
+     * properties are read in the order they are written, so no json tree has to be kept
+     */
+    private static void expectName(String name, JsonReader reader) throws IOException {
+        final String actual = reader.nextName();
+        if (!name.equals(actual)) {
+            throw new JsonParseException("expected property " + name + " but found " + actual);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "JsonMessageSerializer";
+    }
+}
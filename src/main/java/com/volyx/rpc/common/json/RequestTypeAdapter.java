@@ -1,127 +1,182 @@
 package com.volyx.rpc.common.json;
 
-import com.google.gson.*;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.volyx.rpc.common.BatchRequest;
 import com.volyx.rpc.common.Command;
 import com.volyx.rpc.common.Request;
 import org.apache.commons.lang3.ClassUtils;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 
 /**
- * Serializes and deserializes a request to / from one JSON string.
+ * Streams a request to / from json, no intermediate json tree is built. <br/>
+ * Parameters are written as {"class": ..., "value": ...}, class always goes first,
+ * so the value can be read straight with the adapter of its class.
+ * A {@link BatchRequest} carries "commands" array in place of single "command".
  *
  * @author Y.C. Huang
  */
-public class RequestTypeAdapter implements JsonSerializer<Request>, JsonDeserializer<Request> {
-    private static final Logger log = LoggerFactory.getLogger(RequestTypeAdapter.class);
+public class RequestTypeAdapter extends TypeAdapter<Request> {
+
+    public static final TypeAdapterFactory FACTORY = new TypeAdapterFactory() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            final Class<? super T> rawType = type.getRawType();
+            return rawType == Request.class || rawType == BatchRequest.class ? (TypeAdapter<T>) new RequestTypeAdapter(gson) : null;
+        }
+    };
+
+    private final Gson gson;
+
+    private RequestTypeAdapter(Gson gson) {
+        this.gson = gson;
+    }
 
     /**
-     * Serializes a request to a json element
+     * Writes a request to a json stream
      */
-    public JsonElement serialize(Request request, Type requestClass, JsonSerializationContext context) {
-        JsonObject jsonRequest = new JsonObject();
-        jsonRequest.addProperty("id", request.getId());
+    @Override
+    public void write(JsonWriter out, Request request) throws IOException {
+        out.beginObject();
+        out.name("id").value(request.getId());
+
+        if (request instanceof BatchRequest) {
+            out.name("commands").beginArray();
+            for (Command command : ((BatchRequest) request).getCommands()) {
+                writeCommand(out, command);
+            }
+            out.endArray();
+            out.endObject();
+            return;
+        }
 
+        out.name("command");
         Command command = request.getCommand();
         if (command == null) {
-            jsonRequest.add("command", JsonNull.INSTANCE);
-            return jsonRequest;
+            out.nullValue();
+        } else {
+            writeCommand(out, command);
         }
+        out.endObject();
+    }
 
-        JsonObject jsonCommand = new JsonObject();
-        jsonRequest.add("command", jsonCommand);
-
-        jsonCommand.addProperty("skeleton", command.getSkeleton());
-        jsonCommand.addProperty("method", command.getMethod());
-        jsonCommand.addProperty("staticMethod", command.isStaticMethod());
+    @SuppressWarnings("unchecked")
+    private void writeCommand(JsonWriter out, Command command) throws IOException {
+        out.beginObject();
+        out.name("methodId").value(command.getMethodId());
 
         List<Object> parameters = command.getParameters();
         List<Class> paramClasses = command.getParamClasses();
-
-        Object parameter = null;
-        Class clazz = null;
-        JsonElement jsonParameter = null;
-        JsonArray jsonParameters = new JsonArray();
-        JsonPrimitive jsonParamClass = null;
-        JsonArray jsonParamClasses = new JsonArray();
-
+        out.name("parameters").beginArray();
         for (int i = 0; i < parameters.size(); i++) {
-            parameter = parameters.get(i);
-            clazz = paramClasses.get(i);
-            jsonParameter = context.serialize(parameter, clazz);
-            jsonParameters.add(jsonParameter);
-
-            jsonParamClass = new JsonPrimitive(clazz.getName());
-            jsonParamClasses.add(jsonParamClass);
+            Class clazz = paramClasses.get(i);
+            out.beginObject();
+            out.name("class").value(clazz.getName());
+            out.name("value");
+            gson.getAdapter(clazz).write(out, parameters.get(i));
+            out.endObject();
         }
-        jsonCommand.add("parameters", jsonParameters);
-        jsonCommand.add("paramClasses", jsonParamClasses);
+        out.endArray();
 
-        return jsonRequest;
+        out.endObject();
     }
 
     /**
-     * Deserialize a json element to a request
+     * Reads a request from a json stream
      */
-    public Request deserialize(JsonElement jsonElement, Type requestClass, JsonDeserializationContext context) throws JsonParseException {
-        JsonObject jsonRequest = (JsonObject) jsonElement;
-        long id = jsonRequest.getAsJsonPrimitive("id").getAsLong();
-        JsonElement jsonCmdElement = jsonRequest.get("command");
-
-        Request request = null;
-        if (jsonCmdElement.isJsonNull()) {
-            request = new Request(id, null);
-            return request;
+    @Override
+    public Request read(JsonReader in) throws IOException {
+        long id = 0;
+        Command command = null;
+        List<Command> commands = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if ("id".equals(name)) {
+                id = in.nextLong();
+            } else if ("command".equals(name)) {
+                command = readCommand(in);
+            } else if ("commands".equals(name)) {
+                commands = new ArrayList<>();
+                in.beginArray();
+                while (in.hasNext()) {
+                    commands.add(readCommand(in));
+                }
+                in.endArray();
+            } else {
+                in.skipValue();
+            }
         }
+        in.endObject();
 
-        JsonObject jsonCommand = jsonCmdElement.getAsJsonObject();
-        String skeleton = jsonCommand.getAsJsonPrimitive("skeleton").getAsString();
-        String method = jsonCommand.getAsJsonPrimitive("method").getAsString();
-        boolean staticMethod = jsonCommand.getAsJsonPrimitive("staticMethod").getAsBoolean();
-
-        Command command = new Command(skeleton, method, staticMethod);
-        request = new Request(id, command);
-
-        JsonArray jsonParameters = jsonCommand.getAsJsonArray("parameters");
-        JsonArray jsonParamClasses = jsonCommand.getAsJsonArray("paramClasses");
-
-        Object parameter = null;
-        Class clazz = null;
-        JsonElement jsonParameter = null;
-        JsonElement jsonParamClass = null;
-
-        for (int i = 0; i < jsonParamClasses.size(); i++) {
-            jsonParameter = jsonParameters.get(i);
-            jsonParamClass = jsonParamClasses.get(i);
+        if (commands != null) {
+            return new BatchRequest(id, commands.toArray(new Command[commands.size()]));
+        }
+        return new Request(id, command);
+    }
 
-            String className = jsonParamClass.getAsString();
-            try {
-                clazz = ClassUtils.getClass(className);
-            } catch (ClassNotFoundException e) {
-                throw new JsonParseException("Cannot find a matching class by name: " + className, e);
-            }
+    private Command readCommand(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
 
-            if (jsonParameter.isJsonNull()) {
-                command.addParameter(null, clazz);
-                continue;
+        Command command = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if ("methodId".equals(name)) {
+                command = new Command(in.nextInt());
+            } else if ("parameters".equals(name)) {
+                if (command == null) {
+                    throw new JsonParseException("methodId must precede parameters");
+                }
+                in.beginArray();
+                while (in.hasNext()) {
+                    readParameter(in, command);
+                }
+                in.endArray();
+            } else {
+                in.skipValue();
             }
+        }
+        in.endObject();
 
-            if (clazz.isPrimitive()) {
-                parameter = PrimitiveWrapperUtils.toPrimitive(jsonParameter.getAsString(), clazz);
-
-            } else if (ClassUtils.isPrimitiveOrWrapper(clazz)) {
-                parameter = PrimitiveWrapperUtils.toPrimitiveWrapper(jsonParameter.getAsString(), clazz);
+        if (command == null) {
+            throw new JsonParseException("command without methodId");
+        }
+        return command;
+    }
 
-            } else {
-                parameter = context.deserialize(jsonParameter, clazz);
-            }
-            command.addParameter(parameter, clazz);
+    private void readParameter(JsonReader in, Command command) throws IOException {
+        in.beginObject();
+        if (!"class".equals(in.nextName())) {
+            throw new JsonParseException("parameter class must precede its value");
+        }
+        String className = in.nextString();
+        Class<?> clazz;
+        try {
+            clazz = ClassUtils.getClass(className);
+        } catch (ClassNotFoundException e) {
+            throw new JsonParseException("Cannot find a matching class by name: " + className, e);
         }
 
-        return request;
+        if (!"value".equals(in.nextName())) {
+            throw new JsonParseException("parameter value is missing");
+        }
+        command.addParameter(gson.getAdapter(clazz).read(in), clazz);
+        in.endObject();
     }
 }
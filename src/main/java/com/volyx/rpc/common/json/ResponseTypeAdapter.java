@@ -1,128 +1,172 @@
 package com.volyx.rpc.common.json;
 
-import com.google.gson.*;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.volyx.rpc.common.BatchResponse;
 import com.volyx.rpc.common.Response;
 import com.volyx.rpc.common.Result;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.lang.reflect.Type;
-
 import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
-import com.google.gson.JsonDeserializationContext;
-
-import com.google.gson.JsonElement;
-import com.google.gson.JsonNull;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonPrimitive;
-import com.google.gson.JsonSerializationContext;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 
 /**
- * Serializes and deserializes a response to / from one JSON string.
+ * Streams a response to / from json, no intermediate json tree is built. <br/>
+ * Return class and exceptional flag always go before the return value,
+ * so the value can be read straight with the adapter of its class.
+ * A {@link BatchResponse} carries "results" array in place of single "result".
  *
  * @author Y.C. Huang
  */
-public class ResponseTypeAdapter<Respose> implements JsonSerializer<Response>, JsonDeserializer<Response> {
-    private static final Logger log = LoggerFactory.getLogger(ResponseTypeAdapter.class);
+public class ResponseTypeAdapter extends TypeAdapter<Response> {
+
+    public static final TypeAdapterFactory FACTORY = new TypeAdapterFactory() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            final Class<? super T> rawType = type.getRawType();
+            return rawType == Response.class || rawType == BatchResponse.class ? (TypeAdapter<T>) new ResponseTypeAdapter(gson) : null;
+        }
+    };
+
+    private final Gson gson;
+
+    private ResponseTypeAdapter(Gson gson) {
+        this.gson = gson;
+    }
 
     /**
-     * Serializes a response to a json element
+     * Writes a response to a json stream
      */
     @Override
-    public JsonElement serialize(Response response, Type responseClass, JsonSerializationContext context) {
-        JsonObject jsonResponse = new JsonObject();
-        jsonResponse.addProperty("id", response.getId());
+    public void write(JsonWriter out, Response response) throws IOException {
+        out.beginObject();
+        out.name("id").value(response.getId());
+
+        if (response instanceof BatchResponse) {
+            out.name("results").beginArray();
+            for (Result result : ((BatchResponse) response).getResults()) {
+                writeResult(out, result);
+            }
+            out.endArray();
+            out.endObject();
+            return;
+        }
 
+        out.name("result");
         Result result = response.getResult();
         if (result == null) {
-            jsonResponse.add("result", JsonNull.INSTANCE);
-            return jsonResponse;
+            out.nullValue();
+        } else {
+            writeResult(out, result);
         }
+        out.endObject();
+    }
 
-        JsonObject jsonResult = new JsonObject();
-        jsonResponse.add("result", jsonResult);
-
+    @SuppressWarnings("unchecked")
+    private void writeResult(JsonWriter out, Result result) throws IOException {
         Class resultClass = result.getReturnClass();
-        JsonPrimitive jsonResultClass = new JsonPrimitive(resultClass.getName());
-        JsonPrimitive jsonExceptional = new JsonPrimitive(result.isExceptional());
-
-        JsonElement jsonReturn = null;
-        if (result.getReturn() != null) {
-            if (false == result.isExceptional()) {
-                jsonReturn = context.serialize(result.getReturn(), resultClass);
-            } else {
-                Throwable cause = (Throwable) result.getReturn();
-                String stackTraceMessage = ExceptionUtils.getStackTrace(cause);
-                jsonReturn = new JsonPrimitive(stackTraceMessage);
-            }
+        out.beginObject();
+        out.name("returnClass").value(resultClass.getName());
+        out.name("exceptional").value(result.isExceptional());
+        out.name("return");
+        if (result.getReturn() == null) {
+            out.nullValue();
+        } else if (result.isExceptional()) {
+            out.value(ExceptionUtils.getStackTrace((Throwable) result.getReturn()));
         } else {
-            jsonReturn = JsonNull.INSTANCE;
+            gson.getAdapter(resultClass).write(out, result.getReturn());
         }
-
-        jsonResult.add("return", jsonReturn);
-        jsonResult.add("returnClass", jsonResultClass);
-        jsonResult.add("exceptional", jsonExceptional);
-
-        return jsonResponse;
+        out.endObject();
     }
 
     /**
-     * Deserialize a json element to a response
+     * Reads a response from a json stream
      */
     @Override
-    public Response deserialize(JsonElement jsonElement, Type responseClass, JsonDeserializationContext context) throws JsonParseException {
-        JsonObject jsonResponse = (JsonObject) jsonElement;
-        long id = jsonResponse.getAsJsonPrimitive("id").getAsLong();
-        JsonElement jsonRsElement = jsonResponse.get("result");
-
-        Response response = null;
-        if (jsonRsElement.isJsonNull()) {
-            response = new Response(id, null, null);
-            return response;
+    public Response read(JsonReader in) throws IOException {
+        long id = 0;
+        Result result = null;
+        List<Result> results = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if ("id".equals(name)) {
+                id = in.nextLong();
+            } else if ("result".equals(name)) {
+                result = readResult(in);
+            } else if ("results".equals(name)) {
+                results = new ArrayList<>();
+                in.beginArray();
+                while (in.hasNext()) {
+                    results.add(readResult(in));
+                }
+                in.endArray();
+            } else {
+                in.skipValue();
+            }
         }
+        in.endObject();
 
-        JsonObject jsonResult = jsonRsElement.getAsJsonObject();
-        JsonElement jsonReturn = jsonResult.get("return");
-        JsonPrimitive jsonReturnClass = jsonResult.getAsJsonPrimitive("returnClass");
-        JsonPrimitive jsonExceptional = jsonResult.getAsJsonPrimitive("exceptional");
-
-        Class resultClass = null;
-        try {
-            resultClass = ClassUtils.getClass(jsonReturnClass.getAsString());
-        } catch (ClassNotFoundException e) {
-            throw new JsonParseException("Cannot find a matching class by name: " + jsonReturnClass.getAsString(), e);
+        if (results != null) {
+            return new BatchResponse(id, results.toArray(new Result[results.size()]));
         }
+        return new Response(id, result, result == null ? null : result.getReturnClass().getName());
+    }
 
-        Result result = null;
-        if (jsonReturn.isJsonNull()) {
-            result = new Result(null, resultClass);
-
-        } else {
-            Object resultObj = null;
-
-            if (resultClass.isPrimitive()) {
-                resultObj = PrimitiveWrapperUtils.toPrimitive(jsonReturn.getAsString(), resultClass);
+    private Result readResult(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
 
-            } else if (ClassUtils.isPrimitiveOrWrapper(resultClass)) {
-                resultObj = PrimitiveWrapperUtils.toPrimitiveWrapper(jsonReturn.getAsString(), resultClass);
+        in.beginObject();
+        if (!"returnClass".equals(in.nextName())) {
+            throw new JsonParseException("return class must precede the return value");
+        }
+        String className = in.nextString();
 
-            } else if (Throwable.class.isAssignableFrom(resultClass)) {
-                resultObj = jsonReturn.getAsString();
+        if (!"exceptional".equals(in.nextName())) {
+            throw new JsonParseException("exceptional flag must precede the return value");
+        }
+        boolean exceptional = in.nextBoolean();
 
-            } else {
-                resultObj = context.deserialize(jsonReturn, resultClass);
+        Class<?> resultClass;
+        try {
+            resultClass = ClassUtils.getClass(className);
+        } catch (ClassNotFoundException e) {
+            if (!exceptional) {
+                throw new JsonParseException("Cannot find a matching class by name: " + className, e);
             }
-
-            result = new Result(resultObj, resultClass);
+            // exception thrown on remote side does not have to be in local classpath, its stack trace is kept anyway
+            resultClass = Exception.class;
         }
 
-        response = new Response(id, result, resultClass.getName());
+        if (!"return".equals(in.nextName())) {
+            throw new JsonParseException("return value is missing");
+        }
+        Object resultObj;
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            resultObj = null;
+        } else if (exceptional) {
+            // stack trace of remote exception
+            resultObj = in.nextString();
+        } else {
+            resultObj = gson.getAdapter(resultClass).read(in);
+        }
+        in.endObject();
 
-        return response;
+        return new Result(resultObj, resultClass, exceptional);
     }
 }
-
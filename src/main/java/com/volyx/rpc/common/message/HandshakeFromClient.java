@@ -3,9 +3,19 @@ package com.volyx.rpc.common.message;
 public class HandshakeFromClient extends RpcMessage {
 
     public final String[] classNames;
+    /**
+     * signatures of the methods client implements, index in the array is the method id
+     */
+    public final String[] methodSignatures;
+    /**
+     * compression algorithms client accepts, in its order of preference
+     */
+    public final String[] compressions;
 
-    public HandshakeFromClient(final String[] classNames) {
+    public HandshakeFromClient(final String[] classNames, final String[] methodSignatures, final String[] compressions) {
         this.classNames = classNames;
+        this.methodSignatures = methodSignatures;
+        this.compressions = compressions;
     }
 
     @Override
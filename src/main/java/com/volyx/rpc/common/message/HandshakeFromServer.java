@@ -6,10 +6,20 @@ public class HandshakeFromServer extends RpcMessage {
 
     public final ChannelId clientId;
     public final String[] classNames;
+    /**
+     * signatures of the methods server implements, index in the array is the method id
+     */
+    public final String[] methodSignatures;
+    /**
+     * compression algorithm chosen by server, empty if payloads are not compressed
+     */
+    public final String compression;
 
-    public HandshakeFromServer(final ChannelId clientId, final String[] classNames) {
+    public HandshakeFromServer(final ChannelId clientId, final String[] classNames, final String[] methodSignatures, final String compression) {
         this.clientId = clientId;
         this.classNames = classNames;
+        this.methodSignatures = methodSignatures;
+        this.compression = compression;
     }
 
     @Override
@@ -25,6 +35,7 @@ public class HandshakeFromServer extends RpcMessage {
     public String toString() {
         return "HandshakeFromServer{" +
                 "clientId=" + clientId +
+                ", compression=" + compression +
                 '}';
     }
 }
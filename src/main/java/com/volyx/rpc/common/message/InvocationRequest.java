@@ -1,19 +1,19 @@
 package com.volyx.rpc.common.message;
 
-import java.io.Serializable;
-
 public class InvocationRequest extends RpcMessage {
 
-    public final String className;
-    public final String methodName;
-    public final Serializable[] args;
-    public final String[] paramClassNames;
+    /**
+     * id of the method in the table remote side sent during handshake
+     */
+    public final int methodId;
+    /**
+     * arguments as passed to the proxy, validated to be serializable when it is built
+     */
+    public final Object[] args;
 
-    public InvocationRequest(final String className, final String methodName, final Serializable[] args, final String[] paramClassNames) {
-        this.className = className;
-        this.methodName = methodName;
+    public InvocationRequest(final int methodId, final Object[] args) {
+        this.methodId = methodId;
         this.args = args;
-        this.paramClassNames = paramClassNames;
     }
 
     @Override
@@ -24,8 +24,7 @@ public class InvocationRequest extends RpcMessage {
     @Override
     public String toString() {
         return "InvocationRequest{" +
-                "className='" + className + '\'' +
-                ", methodName='" + methodName + '\'' +
+                "methodId=" + methodId +
                 '}';
     }
 }
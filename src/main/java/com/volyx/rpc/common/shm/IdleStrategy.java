@@ -0,0 +1,42 @@
+package com.volyx.rpc.common.shm;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How threads polling rings wait for the other side: busy spin first, as a message usually follows shortly,
+ * then yield, then park for longer and longer periods so an idle connection costs little cpu. <br/>
+ * Longest park bounds both the wakeups of an idle connection, about a thousand a second per polling thread,
+ * and the delay of the first message after a pause.
+ */
+final class IdleStrategy {
+
+    static final int SPINS = 20000;
+
+    static final int YIELDS = 100;
+
+    static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+
+    static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private IdleStrategy() {
+    }
+
+    /**
+     * @param idleCount polls in a row which found nothing to do, zero once there is something
+     * @return count to pass with the next call
+     */
+    static int idle(int idleCount) {
+        if (idleCount < SPINS) {
+            return idleCount + 1;
+        }
+        if (idleCount < SPINS + YIELDS) {
+            Thread.yield();
+            return idleCount + 1;
+        }
+        final int parks = idleCount - SPINS - YIELDS;
+        LockSupport.parkNanos(Math.min(MIN_PARK_NANOS << parks, MAX_PARK_NANOS));
+        // stops counting once parks are as long as they get
+        return Math.min(idleCount + 1, SPINS + YIELDS + 20);
+    }
+}
@@ -0,0 +1,104 @@
+package com.volyx.rpc.common.shm;
+
+import io.netty.util.internal.PlatformDependent;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+
+/**
+ * Volatile and ordered access to off-heap memory by address. <br/>
+ * <br/>
+ * Neither ByteBuffer nor netty offer such access on java 8, so it goes to sun.misc.Unsafe. The class is looked up
+ * by name and its methods are called through method handles, so the code does not compile against internal api.
+ * Handles are static final constants, JIT inlines them into plain Unsafe calls.
+ */
+final class MemoryAccess {
+
+    private static final MethodHandle GET_INT_VOLATILE;
+    private static final MethodHandle PUT_INT_VOLATILE;
+    private static final MethodHandle GET_LONG_VOLATILE;
+    private static final MethodHandle PUT_ORDERED_LONG;
+    private static final MethodHandle COMPARE_AND_SWAP_INT;
+
+    static {
+        MethodHandle getIntVolatile = null;
+        MethodHandle putIntVolatile = null;
+        MethodHandle getLongVolatile = null;
+        MethodHandle putOrderedLong = null;
+        MethodHandle compareAndSwapInt = null;
+        try {
+            final Class<?> type = Class.forName("sun.misc.Unsafe");
+            final Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            final Object unsafe = field.get(null);
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            getIntVolatile = lookup.unreflect(type.getMethod("getIntVolatile", Object.class, long.class)).bindTo(unsafe);
+            putIntVolatile = lookup.unreflect(type.getMethod("putIntVolatile", Object.class, long.class, int.class)).bindTo(unsafe);
+            getLongVolatile = lookup.unreflect(type.getMethod("getLongVolatile", Object.class, long.class)).bindTo(unsafe);
+            putOrderedLong = lookup.unreflect(type.getMethod("putOrderedLong", Object.class, long.class, long.class)).bindTo(unsafe);
+            compareAndSwapInt = lookup.unreflect(type.getMethod("compareAndSwapInt", Object.class, long.class, int.class, int.class)).bindTo(unsafe);
+        } catch (Exception e) {
+            // one missing handle makes all of them unavailable, see isAvailable
+            getIntVolatile = null;
+        }
+        GET_INT_VOLATILE = getIntVolatile;
+        PUT_INT_VOLATILE = putIntVolatile;
+        GET_LONG_VOLATILE = getLongVolatile;
+        PUT_ORDERED_LONG = putOrderedLong;
+        COMPARE_AND_SWAP_INT = compareAndSwapInt;
+    }
+
+    private MemoryAccess() {
+    }
+
+    static boolean isAvailable() {
+        return GET_INT_VOLATILE != null;
+    }
+
+    static int getIntVolatile(long address) {
+        try {
+            return (int) GET_INT_VOLATILE.invokeExact((Object) null, address);
+        } catch (Throwable e) {
+            PlatformDependent.throwException(e);
+            return 0;
+        }
+    }
+
+    static void putIntVolatile(long address, int value) {
+        try {
+            PUT_INT_VOLATILE.invokeExact((Object) null, address, value);
+        } catch (Throwable e) {
+            PlatformDependent.throwException(e);
+        }
+    }
+
+    static long getLongVolatile(long address) {
+        try {
+            return (long) GET_LONG_VOLATILE.invokeExact((Object) null, address);
+        } catch (Throwable e) {
+            PlatformDependent.throwException(e);
+            return 0;
+        }
+    }
+
+    /**
+     * store-store ordered write, cheaper than volatile one as it does not wait for the store buffer to drain
+     */
+    static void putOrderedLong(long address, long value) {
+        try {
+            PUT_ORDERED_LONG.invokeExact((Object) null, address, value);
+        } catch (Throwable e) {
+            PlatformDependent.throwException(e);
+        }
+    }
+
+    static boolean compareAndSwapInt(long address, int expected, int value) {
+        try {
+            return (boolean) COMPARE_AND_SWAP_INT.invokeExact((Object) null, address, expected, value);
+        } catch (Throwable e) {
+            PlatformDependent.throwException(e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.volyx.rpc.common.shm;
+
+import com.volyx.rpc.api.SharedMemoryAddress;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.AbstractChannel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.ConnectTimeoutException;
+import io.netty.channel.DefaultChannelConfig;
+import io.netty.channel.EventLoop;
+import io.netty.channel.SingleThreadEventLoop;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.AlreadyConnectedException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ConnectionPendingException;
+import java.nio.channels.UnsupportedAddressTypeException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Connection to a process of the same host over a pair of rings in a memory-mapped file, see {@link SharedMemoryAddress}. <br/>
+ * <br/>
+ * Carries bytes like a socket, so the pipeline is the same as over tcp, framing included. Writes are copied into
+ * the outbound ring on the event loop, what does not fit is retried shortly after. A reader thread of the channel
+ * polls the inbound ring with {@link IdleStrategy} and hands whatever it has copied out to the event loop,
+ * one chunk at a time, bytes arriving meanwhile are read as the next chunk.
+ */
+public class SharedMemoryChannel extends AbstractChannel {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedMemoryChannel.class);
+
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false);
+
+    /**
+     * most bytes handed to the pipeline at once
+     */
+    static final int MAX_READ = 64 * 1024;
+
+    /**
+     * delay before writing again what did not fit into the ring
+     */
+    static final long WRITE_RETRY_MICROS = 20;
+
+    private enum State { OPEN, CONNECTED, CLOSED }
+
+    private final ChannelConfig config = new DefaultChannelConfig(this);
+    private final boolean client;
+    private volatile State state;
+    private volatile SharedMemoryFile file;
+    private volatile SharedMemoryAddress localAddress;
+    private volatile SharedMemoryAddress remoteAddress;
+    // used by the event loop only
+    private SpscRing outbound;
+    private ChannelPromise connectPromise;
+    private boolean writeRetryScheduled;
+    // used by the reader thread only
+    private SpscRing inbound;
+    private volatile Thread reader;
+    private volatile boolean delivering;
+
+    private final Runnable writeRetry = new Runnable() {
+        @Override
+        public void run() {
+            writeRetryScheduled = false;
+            ((SharedMemoryUnsafe) unsafe()).flush0();
+        }
+    };
+
+    /**
+     * client side channel, created by bootstrap
+     */
+    public SharedMemoryChannel() {
+        super(null);
+        this.client = true;
+        this.state = State.OPEN;
+    }
+
+    /**
+     * server side channel of a connection accepted by the parent
+     */
+    SharedMemoryChannel(SharedMemoryServerChannel parent, SharedMemoryFile file) {
+        super(parent);
+        this.client = false;
+        this.file = file;
+        this.localAddress = parent.localAddress();
+        this.remoteAddress = new SharedMemoryAddress(file.getFile(), file.getCapacity());
+        this.outbound = file.ring(false, true);
+        this.inbound = file.ring(true, false);
+        this.state = State.CONNECTED;
+    }
+
+    /**
+     * @return whether shared memory connections can be used on this JVM
+     */
+    public static boolean isAvailable() {
+        return SharedMemoryFile.isAvailable();
+    }
+
+    @Override
+    public ChannelConfig config() {
+        return config;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return state != State.CLOSED;
+    }
+
+    @Override
+    public boolean isActive() {
+        return state == State.CONNECTED;
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    public SharedMemoryServerChannel parent() {
+        return (SharedMemoryServerChannel) super.parent();
+    }
+
+    @Override
+    protected AbstractUnsafe newUnsafe() {
+        return new SharedMemoryUnsafe();
+    }
+
+    @Override
+    protected boolean isCompatible(EventLoop loop) {
+        return loop instanceof SingleThreadEventLoop;
+    }
+
+    @Override
+    protected SocketAddress localAddress0() {
+        return localAddress;
+    }
+
+    @Override
+    protected SocketAddress remoteAddress0() {
+        return remoteAddress;
+    }
+
+    /**
+     * accepted connections start reading once registered, client ones once server accepts them
+     */
+    @Override
+    protected void doRegister() throws Exception {
+        if (state == State.CONNECTED && reader == null) {
+            startReader(0);
+        }
+    }
+
+    @Override
+    protected void doBind(SocketAddress localAddress) throws Exception {
+        throw new UnsupportedOperationException("shared memory connections are not bound");
+    }
+
+    @Override
+    protected void doDisconnect() throws Exception {
+        doClose();
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        final State previous = state;
+        state = State.CLOSED;
+        if (previous != State.CLOSED && file != null) {
+            file.close(client);
+            // reader thread holds a reference of its own, the file is unmapped once it is gone too
+            file.release();
+        }
+        if (connectPromise != null) {
+            connectPromise.tryFailure(new ClosedChannelException());
+            connectPromise = null;
+        }
+        final Thread thread = reader;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @Override
+    protected void doBeginRead() throws Exception {
+        // reader thread reads as soon as bytes are there
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) throws Exception {
+        if (msg instanceof ByteBuf) {
+            return msg;
+        }
+        throw new UnsupportedOperationException("unsupported message type: " + msg.getClass().getName());
+    }
+
+    /**
+     * copies as much as fits into the ring, the rest stays in the outbound buffer until the retry
+     */
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        for (;;) {
+            final ByteBuf buf = (ByteBuf) in.current();
+            if (buf == null) {
+                break;
+            }
+            final int readable = buf.readableBytes();
+            final int written = readable == 0 ? 0 : outbound.write(buf);
+            in.removeBytes(written);
+            if (written < readable) {
+                if (!writeRetryScheduled) {
+                    writeRetryScheduled = true;
+                    eventLoop().schedule(writeRetry, WRITE_RETRY_MICROS, TimeUnit.MICROSECONDS);
+                }
+                break;
+            }
+        }
+    }
+
+    private void startReader(long acceptDeadline) {
+        final Thread thread = new Thread(new Reader(acceptDeadline), "shm-reader-" + file.getFile().getName());
+        thread.setDaemon(true);
+        reader = thread;
+        file.retain();
+        thread.start();
+    }
+
+    /**
+     * event loop, server has accepted the connection
+     */
+    private void fulfilConnect() {
+        if (connectPromise == null) {
+            // closed meanwhile
+            return;
+        }
+        final ChannelPromise promise = connectPromise;
+        connectPromise = null;
+        state = State.CONNECTED;
+        if (promise.trySuccess()) {
+            pipeline().fireChannelActive();
+        } else {
+            close();
+        }
+    }
+
+    /**
+     * event loop, server has not accepted the connection in time
+     */
+    private void failConnect() {
+        if (connectPromise == null) {
+            return;
+        }
+        connectPromise.tryFailure(new ConnectTimeoutException("connection timed out: " + remoteAddress));
+        connectPromise = null;
+        close();
+    }
+
+    private class SharedMemoryUnsafe extends AbstractUnsafe {
+
+        @Override
+        public void connect(SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise) {
+            if (!promise.setUncancellable()) {
+                return;
+            }
+            if (!isOpen()) {
+                safeSetFailure(promise, new ClosedChannelException());
+                return;
+            }
+            if (state == State.CONNECTED) {
+                safeSetFailure(promise, new AlreadyConnectedException());
+                return;
+            }
+            if (connectPromise != null) {
+                safeSetFailure(promise, new ConnectionPendingException());
+                return;
+            }
+            if (!(remoteAddress instanceof SharedMemoryAddress)) {
+                safeSetFailure(promise, new UnsupportedAddressTypeException());
+                return;
+            }
+
+            final SharedMemoryAddress address = (SharedMemoryAddress) remoteAddress;
+            try {
+                file = SharedMemoryFile.create(address.getPath(), address.getRingCapacity());
+            } catch (IOException e) {
+                safeSetFailure(promise, annotateConnectException(e, remoteAddress));
+                closeIfClosed();
+                return;
+            }
+            SharedMemoryChannel.this.remoteAddress = address;
+            SharedMemoryChannel.this.localAddress = new SharedMemoryAddress(file.getFile(), file.getCapacity());
+            outbound = file.ring(true, true);
+            inbound = file.ring(false, false);
+            connectPromise = promise;
+            startReader(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getConnectTimeoutMillis()));
+        }
+
+        @Override
+        protected void flush0() {
+            super.flush0();
+        }
+    }
+
+    private class Reader implements Runnable {
+
+        private final long acceptDeadline;
+
+        Reader(long acceptDeadline) {
+            this.acceptDeadline = acceptDeadline;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (client && !awaitAccepted()) {
+                    return;
+                }
+                read();
+            } catch (RejectedExecutionException e) {
+                logger.debug("Event loop is shut down, stop reading. file: {}", file, e);
+            } finally {
+                file.release();
+            }
+        }
+
+        private boolean awaitAccepted() {
+            int idleCount = 0;
+            while (!file.isAccepted()) {
+                if (state == State.CLOSED) {
+                    return false;
+                }
+                if (System.nanoTime() - acceptDeadline > 0) {
+                    eventLoop().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            failConnect();
+                        }
+                    });
+                    return false;
+                }
+                idleCount = IdleStrategy.idle(idleCount);
+            }
+            eventLoop().execute(new Runnable() {
+                @Override
+                public void run() {
+                    fulfilConnect();
+                }
+            });
+            return true;
+        }
+
+        private void read() {
+            int idleCount = 0;
+            while (state != State.CLOSED) {
+                if (delivering) {
+                    idleCount = IdleStrategy.idle(idleCount);
+                    continue;
+                }
+                // checked before reading, so nothing written before the other side closed is missed
+                final boolean peerClosed = file.isClosed(!client);
+                final ByteBuf chunk = inbound.read(alloc(), MAX_READ);
+                if (chunk != null) {
+                    idleCount = 0;
+                    delivering = true;
+                    deliver(chunk);
+                } else if (peerClosed) {
+                    eventLoop().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            close();
+                        }
+                    });
+                    return;
+                } else {
+                    idleCount = IdleStrategy.idle(idleCount);
+                }
+            }
+        }
+
+        private void deliver(final ByteBuf chunk) {
+            try {
+                eventLoop().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            if (!isActive()) {
+                                chunk.release();
+                                return;
+                            }
+                            pipeline().fireChannelRead(chunk);
+                            pipeline().fireChannelReadComplete();
+                        } finally {
+                            delivering = false;
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                chunk.release();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.volyx.rpc.common.shm;
+
+import io.netty.util.internal.PlatformDependent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Memory-mapped file of one connection: a header followed by a ring per direction. <br/>
+ * <br/>
+ * Client creates the file under a temporary name and renames it once the header is written, so server never sees
+ * a half-initialized one. Server accepts it by switching its state, each side marks itself closed when its channel
+ * is closed and whichever side closes last deletes the file. <br/>
+ * Positions of the rings are read and written with volatile semantics, see {@link MemoryAccess}, each on a cache line of its own. <br/>
+ * Mapping is released explicitly once the channel and its reader thread are done with it, rather than whenever
+ * the buffer happens to be collected, so closed connections don't keep address space and file pages.
+ */
+class SharedMemoryFile {
+
+    static final String SUFFIX = ".ring";
+
+    private static final int MAGIC = 0x52504331;
+
+    /**
+     * data of the rings starts on a page boundary
+     */
+    private static final int HEADER = 4096;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int STATE_OFFSET = 8;
+    private static final int CLIENT_CLOSED_OFFSET = 12;
+    private static final int SERVER_CLOSED_OFFSET = 16;
+    private static final int TO_SERVER_TAIL_OFFSET = 128;
+    private static final int TO_SERVER_HEAD_OFFSET = 256;
+    private static final int TO_CLIENT_TAIL_OFFSET = 384;
+    private static final int TO_CLIENT_HEAD_OFFSET = 512;
+
+    private static final int CONNECTING = 1;
+    private static final int ACCEPTED = 2;
+
+    private final File file;
+    // kept referenced, the mapping lives as long as the buffer
+    private final MappedByteBuffer buffer;
+    private final long address;
+    private final int capacity;
+    // users of the mapping, it is unmapped when the last one releases it
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    private SharedMemoryFile(File file, MappedByteBuffer buffer, int capacity) {
+        this.file = file;
+        this.buffer = buffer;
+        this.address = PlatformDependent.directBufferAddress(buffer);
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return whether volatile access to mapped memory is possible on this JVM
+     */
+    static boolean isAvailable() {
+        return MemoryAccess.isAvailable();
+    }
+
+    /**
+     * client side, creates file of a new connection in the directory server is bound to
+     */
+    static SharedMemoryFile create(File directory, int capacity) throws IOException {
+        final File temp = File.createTempFile("connection-", ".tmp", directory);
+        final SharedMemoryFile shared;
+        try {
+            shared = new SharedMemoryFile(temp, map(temp, HEADER + 2L * capacity), capacity);
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        shared.putIntVolatile(MAGIC_OFFSET, MAGIC);
+        shared.putIntVolatile(CAPACITY_OFFSET, capacity);
+        shared.putIntVolatile(STATE_OFFSET, CONNECTING);
+
+        final File file = new File(directory, temp.getName().replace(".tmp", SUFFIX));
+        if (!temp.renameTo(file)) {
+            shared.release();
+            temp.delete();
+            throw new IOException("failed to rename " + temp + " to " + file);
+        }
+        return new SharedMemoryFile(file, shared.buffer, capacity);
+    }
+
+    /**
+     * server side, maps file a client has created
+     * @return null if it is not a connection file or it is too short
+     */
+    static SharedMemoryFile open(File file) throws IOException {
+        final long length = file.length();
+        if (length <= HEADER) {
+            return null;
+        }
+        final SharedMemoryFile shared = new SharedMemoryFile(file, map(file, length), (int) ((length - HEADER) / 2));
+        if (shared.getIntVolatile(MAGIC_OFFSET) != MAGIC || shared.getIntVolatile(CAPACITY_OFFSET) != shared.capacity) {
+            shared.release();
+            return null;
+        }
+        return shared;
+    }
+
+    private static MappedByteBuffer map(File file, long length) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(length);
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+        } finally {
+            // mapping outlives the channel
+            raf.close();
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * server side, switches a new connection to accepted
+     * @return false if it was already accepted or abandoned by client
+     */
+    boolean accept() {
+        return !isClosed(true) && MemoryAccess.compareAndSwapInt(address + STATE_OFFSET, CONNECTING, ACCEPTED);
+    }
+
+    boolean isAccepted() {
+        return getIntVolatile(STATE_OFFSET) == ACCEPTED;
+    }
+
+    /**
+     * marks the side closed, the file is deleted if the other side is closed already or server never accepted it <br/>
+     * volatile write followed by volatile read, so of two sides closing at once at least one sees the other closed
+     */
+    void close(boolean client) {
+        putIntVolatile(client ? CLIENT_CLOSED_OFFSET : SERVER_CLOSED_OFFSET, 1);
+        if (isClosed(!client) || client && !isAccepted()) {
+            file.delete();
+        }
+    }
+
+    boolean isClosed(boolean client) {
+        return getIntVolatile(client ? CLIENT_CLOSED_OFFSET : SERVER_CLOSED_OFFSET) != 0;
+    }
+
+    /**
+     * takes another reference to the mapping, e.g. for a thread polling the rings
+     */
+    void retain() {
+        references.incrementAndGet();
+    }
+
+    /**
+     * drops a reference, the last one unmaps the file, nothing may touch the memory or rings afterwards
+     */
+    void release() {
+        if (references.decrementAndGet() == 0) {
+            PlatformDependent.freeDirectBuffer(buffer);
+        }
+    }
+
+    /**
+     * @param client whether the ring is written by client
+     * @param producer whether the instance is used by the writing side
+     */
+    SpscRing ring(boolean client, boolean producer) {
+        final ByteBuffer data = buffer.duplicate();
+        final int start = HEADER + (client ? 0 : capacity);
+        data.limit(start + capacity).position(start);
+        return new SpscRing(this, data.slice(), client ? TO_SERVER_TAIL_OFFSET : TO_CLIENT_TAIL_OFFSET, client ? TO_SERVER_HEAD_OFFSET : TO_CLIENT_HEAD_OFFSET, producer);
+    }
+
+    long getLongVolatile(int offset) {
+        return MemoryAccess.getLongVolatile(address + offset);
+    }
+
+    /**
+     * store-store ordered write, bytes written before are visible to whoever reads the new value
+     */
+    void putOrderedLong(int offset, long value) {
+        MemoryAccess.putOrderedLong(address + offset, value);
+    }
+
+    private int getIntVolatile(int offset) {
+        return MemoryAccess.getIntVolatile(address + offset);
+    }
+
+    private void putIntVolatile(int offset, int value) {
+        MemoryAccess.putIntVolatile(address + offset, value);
+    }
+
+    @Override
+    public String toString() {
+        return file.getPath();
+    }
+}
@@ -0,0 +1,189 @@
+package com.volyx.rpc.common.shm;
+
+import com.volyx.rpc.api.SharedMemoryAddress;
+import io.netty.channel.AbstractServerChannel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.DefaultChannelConfig;
+import io.netty.channel.EventLoop;
+import io.netty.channel.SingleThreadEventLoop;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Accepts shared memory connections of clients on the same host, see {@link SharedMemoryAddress}. <br/>
+ * <br/>
+ * An acceptor thread polls the bound directory for connection files clients create and hands every
+ * accepted one to the pipeline as a new {@link SharedMemoryChannel}, registered with child event loops as usual.
+ */
+public class SharedMemoryServerChannel extends AbstractServerChannel {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedMemoryServerChannel.class);
+
+    /**
+     * period of looking for new connection files, connecting is not latency critical
+     */
+    static final long ACCEPT_INTERVAL_MILLIS = 5;
+
+    private static final FilenameFilter CONNECTION_FILES = new FilenameFilter() {
+        @Override
+        public boolean accept(File dir, String name) {
+            return name.endsWith(SharedMemoryFile.SUFFIX);
+        }
+    };
+
+    private final ChannelConfig config = new DefaultChannelConfig(this);
+    private volatile boolean open = true;
+    private volatile SharedMemoryAddress localAddress;
+    private volatile Thread acceptor;
+
+    @Override
+    public ChannelConfig config() {
+        return config;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isActive() {
+        return open && localAddress != null;
+    }
+
+    @Override
+    public SharedMemoryAddress localAddress() {
+        return (SharedMemoryAddress) super.localAddress();
+    }
+
+    @Override
+    protected boolean isCompatible(EventLoop loop) {
+        return loop instanceof SingleThreadEventLoop;
+    }
+
+    @Override
+    protected SocketAddress localAddress0() {
+        return localAddress;
+    }
+
+    /**
+     * creates the directory if needed, connection files left by a previous server are deleted, their clients are gone
+     */
+    @Override
+    protected void doBind(SocketAddress localAddress) throws Exception {
+        final SharedMemoryAddress address = (SharedMemoryAddress) localAddress;
+        final File directory = address.getPath();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("failed to create directory " + directory);
+        }
+        final File[] files = directory.listFiles(CONNECTION_FILES);
+        if (files != null) {
+            for (File stale : files) {
+                final SharedMemoryFile file = SharedMemoryFile.open(stale);
+                if (file == null) {
+                    continue;
+                }
+                if (file.isAccepted()) {
+                    stale.delete();
+                }
+                file.release();
+            }
+        }
+
+        this.localAddress = address;
+        final Thread thread = new Thread(new Acceptor(directory), "shm-acceptor-" + directory.getName());
+        thread.setDaemon(true);
+        acceptor = thread;
+        thread.start();
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        open = false;
+        final Thread thread = acceptor;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    @Override
+    protected void doBeginRead() throws Exception {
+        // acceptor thread accepts as soon as connection files are there
+    }
+
+    private class Acceptor implements Runnable {
+
+        private final File directory;
+        // files seen already, accepted or not, forgotten once deleted
+        private final Set<String> known = new HashSet<String>();
+
+        Acceptor(File directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public void run() {
+            while (open) {
+                final File[] files = directory.listFiles(CONNECTION_FILES);
+                if (files != null) {
+                    final Set<String> present = new HashSet<String>();
+                    for (File file : files) {
+                        present.add(file.getName());
+                        if (known.add(file.getName())) {
+                            accept(file);
+                        }
+                    }
+                    known.retainAll(present);
+                }
+                try {
+                    Thread.sleep(ACCEPT_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    // closed
+                }
+            }
+        }
+
+        private void accept(File connectionFile) {
+            final SharedMemoryFile file;
+            try {
+                file = SharedMemoryFile.open(connectionFile);
+            } catch (IOException e) {
+                logger.warn("Fail to accept a shared memory connection. file: {}", connectionFile, e);
+                return;
+            }
+            if (file == null) {
+                return;
+            }
+            if (!file.accept()) {
+                file.release();
+                return;
+            }
+            final SharedMemoryChannel child = new SharedMemoryChannel(SharedMemoryServerChannel.this, file);
+            try {
+                eventLoop().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!isOpen()) {
+                            child.unsafe().closeForcibly();
+                            return;
+                        }
+                        pipeline().fireChannelRead(child);
+                        pipeline().fireChannelReadComplete();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                logger.debug("Event loop is shut down, connection is not accepted. file: {}", connectionFile, e);
+                // not registered yet, so it is closed right here, which unmaps the file
+                child.unsafe().closeForcibly();
+            }
+        }
+    }
+}
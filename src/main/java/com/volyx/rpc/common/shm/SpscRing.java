@@ -0,0 +1,93 @@
+package com.volyx.rpc.common.shm;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Byte stream from one side of a connection to the other over a ring in shared memory, one writer and one reader. <br/>
+ * <br/>
+ * Positions only grow, the writer publishes its tail after copying bytes in and the reader publishes its head
+ * after copying them out, so neither ever waits for the other. Like a socket it carries bytes rather than messages,
+ * frames are cut by the same framing as over tcp. Each side keeps its own instance, the writer caches reader's position
+ * and re-reads it only when the cached one says there is no room.
+ */
+class SpscRing {
+
+    private final SharedMemoryFile file;
+    private final ByteBuffer data;
+    private final int capacity;
+    private final int mask;
+    private final int tailOffset;
+    private final int headOffset;
+
+    // position of this side, other side's position as last seen
+    private long position;
+    private long otherPosition;
+
+    SpscRing(SharedMemoryFile file, ByteBuffer data, int tailOffset, int headOffset, boolean producer) {
+        this.file = file;
+        this.data = data;
+        this.capacity = data.capacity();
+        this.mask = capacity - 1;
+        this.tailOffset = tailOffset;
+        this.headOffset = headOffset;
+        this.position = file.getLongVolatile(producer ? tailOffset : headOffset);
+        this.otherPosition = file.getLongVolatile(producer ? headOffset : tailOffset);
+    }
+
+    /**
+     * writer side, copies as many readable bytes as there is room for, reader index of the buffer is not moved
+     * @return number of bytes written, zero if the ring is full
+     */
+    int write(ByteBuf src) {
+        final int length = src.readableBytes();
+        if (capacity - (position - otherPosition) < length) {
+            otherPosition = file.getLongVolatile(headOffset);
+        }
+        final int written = (int) Math.min(length, capacity - (position - otherPosition));
+        if (written == 0) {
+            return 0;
+        }
+
+        final int offset = (int) position & mask;
+        final int first = Math.min(written, capacity - offset);
+        src.getBytes(src.readerIndex(), region(offset, first));
+        if (written > first) {
+            src.getBytes(src.readerIndex() + first, region(0, written - first));
+        }
+        position += written;
+        file.putOrderedLong(tailOffset, position);
+        return written;
+    }
+
+    /**
+     * reader side, copies out whatever is written, up to the limit
+     * @return buffer of the channel's allocator, null if nothing is written
+     */
+    ByteBuf read(ByteBufAllocator alloc, int maxBytes) {
+        otherPosition = file.getLongVolatile(tailOffset);
+        final int readable = (int) Math.min(otherPosition - position, maxBytes);
+        if (readable == 0) {
+            return null;
+        }
+
+        final ByteBuf dst = alloc.buffer(readable);
+        final int offset = (int) position & mask;
+        final int first = Math.min(readable, capacity - offset);
+        dst.writeBytes(region(offset, first));
+        if (readable > first) {
+            dst.writeBytes(region(0, readable - first));
+        }
+        position += readable;
+        file.putOrderedLong(headOffset, position);
+        return dst;
+    }
+
+    private ByteBuffer region(int offset, int length) {
+        final ByteBuffer region = data.duplicate();
+        region.limit(offset + length).position(offset);
+        return region;
+    }
+}
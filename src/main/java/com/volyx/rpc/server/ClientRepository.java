@@ -11,23 +11,26 @@ import org.slf4j.LoggerFactory;
 
 import static java.util.Collections.unmodifiableCollection;
 
+/**
+ * Clients are keyed by the long text of their id, so ids decoded from the wire match the ones of live channels
+ */
 class ClientRepository {
 
     private static Logger logger = LoggerFactory.getLogger(ClientRepository.class);
-    private final Map<ChannelId, NettyRemote> clients = new ConcurrentHashMap<>();
+    private final Map<String, NettyRemote> clients = new ConcurrentHashMap<>();
 
     public void addClient(NettyRemote remote) {
         logger.info("Add new client " + remote.getId());
-        clients.put(remote.getId(), remote);
+        clients.put(remote.getId().asLongText(), remote);
     }
 
     public void removeClient(ChannelId id) {
         logger.info("Remove client " + id);
-        clients.remove(id);
+        clients.remove(id.asLongText());
     }
 
     public NettyRemote getClient(ChannelId clientId) {
-        return clients.get(clientId);
+        return clients.get(clientId.asLongText());
     }
 
     public Collection<NettyRemote> getClients() {
@@ -0,0 +1,50 @@
+package com.volyx.rpc.server;
+
+import com.volyx.rpc.api.InvocationExecutor;
+import com.volyx.rpc.api.Remote;
+
+/**
+ * Runs invocations on the event loop which read them.
+ */
+public final class InlineInvocationExecutor implements InvocationExecutor {
+
+    public static final InlineInvocationExecutor INSTANCE = new InlineInvocationExecutor();
+
+    private InlineInvocationExecutor() {
+    }
+
+    @Override
+    public void execute(Remote remote, Runnable invocation) {
+        invocation.run();
+    }
+
+    @Override
+    public void release(Remote remote) {
+        // nothing is kept per client
+    }
+
+    @Override
+    public boolean isInline() {
+        return true;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return 0;
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return 0;
+    }
+
+    @Override
+    public void shutdown() {
+        // nothing to release
+    }
+
+    @Override
+    public String toString() {
+        return "InlineInvocationExecutor";
+    }
+}
@@ -1,25 +1,30 @@
 package com.volyx.rpc.server;
 
 import com.volyx.rpc.api.ClientListener;
+import com.volyx.rpc.common.Backpressure;
+import com.volyx.rpc.common.DispatchTable;
 import com.volyx.rpc.common.NettyRemote;
+import com.volyx.rpc.common.TransportConfig;
 import com.volyx.rpc.common.Util;
+import com.volyx.rpc.common.codec.CodecConfig;
 import com.volyx.rpc.common.message.*;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.serialization.ClassResolver;
 import io.netty.handler.codec.serialization.ObjectDecoder;
 import io.netty.handler.codec.serialization.ObjectEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.volyx.rpc.api.ExceptionListener;
+import com.volyx.rpc.api.InvocationExecutor;
 import com.volyx.rpc.api.Remote;
 import com.volyx.rpc.api.RpcServer;
+import com.volyx.rpc.api.Transport;
+import com.volyx.rpc.api.exception.ConfigurationException;
 import com.volyx.rpc.api.exception.TransportException;
 
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -36,47 +41,73 @@ public class NettyRpcServer implements RpcServer {
     private final Map<Class<?>, ServerProvider<?>> implementations;
     private final ExceptionListener[] exceptionListeners;
     private final ClientListener[] clientListeners;
-    private Channel acceptChannel;
+    private final InvocationExecutor invocationExecutor;
+    private final List<Channel> acceptChannels = new ArrayList<Channel>();
     private final EventLoopGroup bossGroup;
     private final EventLoopGroup workerGroup;
 
-    public NettyRpcServer(final InetSocketAddress bindAddress, final Map<Class<?>, ServerProvider<?>> implementations, final ExceptionListener[] exceptionListeners, final ClientListener[] clientListeners, final ClassResolver classResolver) {
+    /**
+     * @param bindAddresses addresses to accept connections on, tcp ones bind the port on all interfaces,
+     *                      unix domain socket ones bind the socket file, local ones accept clients of this JVM,
+     *                      shared memory ones poll the directory for connections of processes on this host
+     * @param acceptors number of sockets bound to every tcp port
+     * @param callTimeout milliseconds blocking calls to clients wait for the response
+     */
+    public NettyRpcServer(final List<SocketAddress> bindAddresses, final Map<Class<?>, ServerProvider<?>> implementations, final DispatchTable dispatchTable, final ExceptionListener[] exceptionListeners, final ClientListener[] clientListeners, final ClassResolver classResolver, final CodecConfig codecConfig, final TransportConfig transportConfig, final int acceptors, final int backlog, final InvocationExecutor invocationExecutor, final Backpressure backpressure, final long callTimeout) {
         this.exceptionListeners = exceptionListeners;
         this.clientListeners = clientListeners;
         this.implementations = implementations;
         this.classResolver = classResolver;
-        bossGroup = new NioEventLoopGroup();
-        workerGroup = new NioEventLoopGroup();
+        this.invocationExecutor = invocationExecutor;
+        if (acceptors > 1 && transportConfig.getTransport() != Transport.EPOLL) {
+            throw new ConfigurationException("several acceptors require SO_REUSEPORT, which is supported by " + Transport.EPOLL + " transport only");
+        }
+        for (SocketAddress bindAddress : bindAddresses) {
+            // fails before any event loop is started if the address is not supported by the transport
+            transportConfig.getServerChannelClass(bindAddress);
+        }
+        // every accepting channel is registered with its own event loop
+        bossGroup = transportConfig.newEventLoopGroup(acceptors * bindAddresses.size());
+        workerGroup = transportConfig.newEventLoopGroup(0);
         try {
             ServerBootstrap bootstrap = new ServerBootstrap();
 
 
             bootstrap.group(bossGroup, workerGroup);
 
-            bootstrap.channel(NioServerSocketChannel.class)
-                    .localAddress(bindAddress.getPort())
-                    .childHandler(new RpcServerInitializer(clients, implementations, exceptionListeners, clientListeners, classResolver))
-                    .option(ChannelOption.SO_BACKLOG, 128)
-                    .childOption(ChannelOption.SO_KEEPALIVE, true);
+            backpressure.configure(bootstrap);
+            bootstrap.childHandler(new RpcServerInitializer(clients, implementations, dispatchTable, exceptionListeners, clientListeners, classResolver, codecConfig, transportConfig, invocationExecutor, backpressure, callTimeout));
+
+            // tcp, domain socket, in-JVM and shared memory connections share handlers and clients, only accepting channels differ
+            for (SocketAddress bindAddress : bindAddresses) {
+                final ServerBootstrap listener = bootstrap.clone();
+                transportConfig.configure(listener, bindAddress);
+                final boolean tcp = TransportConfig.isTcp(bindAddress);
+                listener.localAddress(tcp ? new InetSocketAddress(((InetSocketAddress) bindAddress).getPort()) : bindAddress);
+                if (TransportConfig.isSocket(bindAddress)) {
+                    listener.option(ChannelOption.SO_BACKLOG, backlog);
+                }
 
-            ChannelFuture future = bootstrap.bind().awaitUninterruptibly();
+                // with SO_REUSEPORT kernel spreads incoming connections across the bound sockets
+                for (int i = 0; i < (tcp ? acceptors : 1); i++) {
+                    ChannelFuture future = listener.bind().awaitUninterruptibly();
 
-            if (future.isDone()) {
-                if (future.isSuccess()) {
-                    acceptChannel = future.channel();
+                    if (future.isDone()) {
+                        if (future.isSuccess()) {
+                            acceptChannels.add(future.channel());
 
-                    StringBuilder channelInfo = new StringBuilder(50);
-                    int i = 0;
-                    channelInfo.append(String.format("ServerChannel-%02d", i + 1));
-                    channelInfo.append('/');
-                    channelInfo.append("0:0:0:0").append(':');
-                    channelInfo.append(bindAddress.getPort());
+                            StringBuilder channelInfo = new StringBuilder(50);
+                            channelInfo.append(String.format("ServerChannel-%02d", acceptChannels.size()));
+                            channelInfo.append('/');
+                            channelInfo.append(future.channel().localAddress());
 
-                    log.info("Finish to start up a Netty Server. channel info: {}", channelInfo);
+                            log.info("Finish to start up a Netty Server. channel info: {}, transport: {}", channelInfo, transportConfig.getTransport());
 
-                } else {
-                    Throwable cause = future.cause();
-                    log.error("Fail to bind server on port. local port: {}", bindAddress.getPort(), cause);
+                        } else {
+                            Throwable cause = future.cause();
+                            log.error("Fail to bind server on address. local address: {}", bindAddress, cause);
+                        }
+                    }
                 }
             }
 
@@ -96,8 +127,10 @@ public class NettyRpcServer implements RpcServer {
     public void shutdown() {
         try {
 
-            // close main channel
-            acceptChannel.close().await();
+            // close accepting channels
+            for (Channel acceptChannel : acceptChannels) {
+                acceptChannel.close().await();
+            }
 
             // send close message to all clients
             List<ChannelFuture> futures = new LinkedList<ChannelFuture>();
@@ -114,6 +147,7 @@ public class NettyRpcServer implements RpcServer {
 
             workerGroup.shutdownGracefully();
             bossGroup.shutdownGracefully();
+            invocationExecutor.shutdown();
 
 
         } catch (InterruptedException e) {
@@ -126,6 +160,11 @@ public class NettyRpcServer implements RpcServer {
         return clients.getClient(clientId);
     }
 
+    @Override
+    public InvocationExecutor getInvocationExecutor() {
+        return invocationExecutor;
+    }
+
     @Override
     public Collection<Remote> getClients() {
         return unmodifiableCollection((Collection<? extends Remote>) clients.getClients());
@@ -0,0 +1,152 @@
+package com.volyx.rpc.server;
+
+import com.volyx.rpc.api.InvocationExecutor;
+import com.volyx.rpc.api.Remote;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs invocations of one client strictly one after another in arrival order,
+ * invocations of different clients run in parallel on a shared pool. <br/>
+ * <br/>
+ * Every client gets a serial queue which is drained by at most one pool thread at a time,
+ * so implementations created per client never see concurrent calls and need no locking.
+ */
+public class OrderedInvocationExecutor implements InvocationExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderedInvocationExecutor.class);
+
+    /**
+     * invocations run by one drain before the queue yields its thread to other clients
+     */
+    private static final int DRAIN_BATCH = 64;
+
+    private final ExecutorService executorService;
+    private final int queueLimit;
+    private final ConcurrentMap<Remote, SerialQueue> queues = new ConcurrentHashMap<>();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * @param executorService pool draining the queues, it holds at most one task per client
+     * @param queueLimit number of invocations a single client may have waiting
+     */
+    public OrderedInvocationExecutor(ExecutorService executorService, int queueLimit) {
+        this.executorService = executorService;
+        this.queueLimit = queueLimit;
+    }
+
+    @Override
+    public void execute(Remote remote, Runnable invocation) {
+        if (remote == null) {
+            rejectedCount.incrementAndGet();
+            throw new RejectedExecutionException("client has not completed handshake");
+        }
+        SerialQueue queue = queues.get(remote);
+        if (queue == null) {
+            final SerialQueue created = new SerialQueue();
+            queue = queues.putIfAbsent(remote, created);
+            if (queue == null) {
+                queue = created;
+            }
+        }
+        queue.add(invocation);
+    }
+
+    @Override
+    public void release(Remote remote) {
+        // invocations already queued still run, the queue just isn't reachable anymore
+        queues.remove(remote);
+    }
+
+    @Override
+    public boolean isInline() {
+        return false;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    @Override
+    public void shutdown() {
+        executorService.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return "OrderedInvocationExecutor{" + executorService + ", queueLimit=" + queueLimit + "}";
+    }
+
+    private final class SerialQueue implements Runnable {
+
+        private final Queue<Runnable> invocations = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        void add(Runnable invocation) {
+            if (size.incrementAndGet() > queueLimit) {
+                size.decrementAndGet();
+                rejectedCount.incrementAndGet();
+                throw new RejectedExecutionException("client has " + queueLimit + " invocations queued already");
+            }
+            invocations.offer(invocation);
+            queueDepth.incrementAndGet();
+
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executorService.execute(this);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                    if (invocations.remove(invocation)) {
+                        size.decrementAndGet();
+                        queueDepth.decrementAndGet();
+                        rejectedCount.incrementAndGet();
+                        throw e;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            Runnable invocation;
+            for (int i = 0; i < DRAIN_BATCH && (invocation = invocations.poll()) != null; i++) {
+                size.decrementAndGet();
+                queueDepth.decrementAndGet();
+                try {
+                    invocation.run();
+                } catch (Throwable e) {
+                    logger.error("invocation threw exception", e);
+                }
+            }
+            scheduled.set(false);
+
+            // an invocation may have been added after the last poll but before the flag was cleared
+            if (!invocations.isEmpty() && scheduled.compareAndSet(false, true)) {
+                try {
+                    executorService.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // pool is shutting down, queued invocations are not dropped silently
+                    run();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.volyx.rpc.server;
+
+import com.volyx.rpc.api.InvocationExecutor;
+import com.volyx.rpc.api.Remote;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs invocations on an executor service, counting the ones waiting for a thread.
+ */
+public class PooledInvocationExecutor implements InvocationExecutor {
+
+    private final ExecutorService executorService;
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public PooledInvocationExecutor(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    /**
+     * @param rejectionPolicy installed on the pool, rejections are counted before it is applied
+     */
+    public PooledInvocationExecutor(ThreadPoolExecutor pool, final RejectedExecutionHandler rejectionPolicy) {
+        this(pool);
+        pool.setRejectedExecutionHandler(new RejectedExecutionHandler() {
+            @Override
+            public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+                rejectedCount.incrementAndGet();
+                if (runnable instanceof QueuedInvocation) {
+                    ((QueuedInvocation) runnable).dequeue();
+                }
+                rejectionPolicy.rejectedExecution(runnable, executor);
+            }
+        });
+    }
+
+    @Override
+    public void execute(Remote remote, Runnable invocation) {
+        final QueuedInvocation queued = new QueuedInvocation(invocation);
+        queueDepth.incrementAndGet();
+        try {
+            executorService.execute(queued);
+        } catch (RejectedExecutionException e) {
+            if (queued.dequeue()) {
+                // thread pools count rejections in their handler, where the invocation is dequeued already
+                rejectedCount.incrementAndGet();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * leaves the queue exactly once, whether it runs or is rejected
+     */
+    private final class QueuedInvocation implements Runnable {
+
+        private final Runnable invocation;
+        // not private, field updater is created by the outer class
+        volatile int dequeued;
+
+        private QueuedInvocation(Runnable invocation) {
+            this.invocation = invocation;
+        }
+
+        private boolean dequeue() {
+            if (DEQUEUED.compareAndSet(this, 0, 1)) {
+                queueDepth.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void run() {
+            dequeue();
+            invocation.run();
+        }
+    }
+
+    private static final AtomicIntegerFieldUpdater<QueuedInvocation> DEQUEUED = AtomicIntegerFieldUpdater.newUpdater(QueuedInvocation.class, "dequeued");
+
+    @Override
+    public void release(Remote remote) {
+        // nothing is kept per client
+    }
+
+    @Override
+    public boolean isInline() {
+        return false;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    @Override
+    public void shutdown() {
+        executorService.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return "PooledInvocationExecutor{" + executorService + "}";
+    }
+}
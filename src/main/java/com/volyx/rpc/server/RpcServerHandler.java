@@ -1,11 +1,25 @@
 package com.volyx.rpc.server;
 
 import com.volyx.rpc.api.ClientListener;
+import com.volyx.rpc.api.Compression;
 import com.volyx.rpc.api.ExceptionListener;
+import com.volyx.rpc.api.InvocationExecutor;
 import com.volyx.rpc.api.Remote;
 import com.volyx.rpc.api.exception.TransportException;
+import com.volyx.rpc.common.Backpressure;
+import com.volyx.rpc.common.BatchRequest;
+import com.volyx.rpc.common.BatchResponse;
+import com.volyx.rpc.common.Command;
+import com.volyx.rpc.common.DispatchTable;
+import com.volyx.rpc.common.MethodTable;
 import com.volyx.rpc.common.NettyRemote;
+import com.volyx.rpc.common.Request;
+import com.volyx.rpc.common.Response;
+import com.volyx.rpc.common.Result;
+import com.volyx.rpc.common.TransportConfig;
 import com.volyx.rpc.common.Util;
+import com.volyx.rpc.common.codec.CodecConfig;
+import com.volyx.rpc.common.codec.CompressionCodec;
 import com.volyx.rpc.common.message.*;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
@@ -15,11 +29,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
 
 public class RpcServerHandler extends SimpleChannelInboundHandler implements RpcMessage.Visitor {
 
@@ -33,13 +53,30 @@ public class RpcServerHandler extends SimpleChannelInboundHandler implements Rpc
     private final ExceptionListener[] exceptionListeners;
     private final ClientListener[] clientListeners;
     private final ClassResolver classResolver;
+    private final CodecConfig codecConfig;
+    private final DispatchTable dispatchTable;
+    private final InvocationExecutor invocationExecutor;
+    private final Backpressure backpressure;
+    private final long callTimeout;
 
-    public RpcServerHandler(ClientRepository clients, Map<Class<?>, ServerProvider<?>> implementations, ExceptionListener[] exceptionListeners, ClientListener[] clientListeners, @Nonnull ClassResolver classResolver) {
+    /**
+     * @param codecConfig wire settings, compression is chosen from the algorithms it accepts
+     * @param dispatchTable invokes methods of registered interfaces, its method table is sent to client during handshake
+     * @param invocationExecutor runs invocations of implementations
+     * @param backpressure what calls to the client do when the channel is not writable
+     * @param callTimeout milliseconds blocking calls to the client wait for the response
+     */
+    public RpcServerHandler(ClientRepository clients, Map<Class<?>, ServerProvider<?>> implementations, ExceptionListener[] exceptionListeners, ClientListener[] clientListeners, @Nonnull ClassResolver classResolver, @Nonnull CodecConfig codecConfig, @Nonnull DispatchTable dispatchTable, @Nonnull InvocationExecutor invocationExecutor, @Nonnull Backpressure backpressure, long callTimeout) {
         this.clients = clients;
         this.implementations = implementations;
         this.exceptionListeners = exceptionListeners;
         this.clientListeners = clientListeners;
         this.classResolver = classResolver;
+        this.codecConfig = codecConfig;
+        this.dispatchTable = dispatchTable;
+        this.invocationExecutor = invocationExecutor;
+        this.backpressure = backpressure;
+        this.callTimeout = callTimeout;
     }
 
     @Override
@@ -56,11 +93,22 @@ public class RpcServerHandler extends SimpleChannelInboundHandler implements Rpc
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
         super.channelInactive(ctx);
-//            fireClientDisconnect(remote);
-//            clients.removeClient(remote.getId());
+        if (remote != null) {
+            clients.removeClient(remote.getId());
+            invocationExecutor.release(remote);
+            fireClientDisconnect(remote);
+        }
     }
 
 
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (remote != null) {
+            remote.writabilityChanged();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
     @Override
     public void acceptExceptionNotify(ExceptionNotify msg) {
         fireException(remote, msg.exc);
@@ -69,9 +117,18 @@ public class RpcServerHandler extends SimpleChannelInboundHandler implements Rpc
     @Override
     public void acceptHandshakeFromClient(HandshakeFromClient msg) {
         try {
-            remote = new NettyRemote(channel, new HashSet<Class<?>>(Util.unfoldStringToClasses(classResolver, msg.classNames)));
-            channel.writeAndFlush(new HandshakeFromServer(remote.getId(), Util.foldClassesToStrings(new ArrayList<Class<?>>(implementations.keySet()))));
+            final HashSet<Class<?>> classes = new HashSet<Class<?>>(Util.unfoldStringToClasses(classResolver, msg.classNames));
+            remote = new NettyRemote(channel, classes, MethodTable.fromSignatures(msg.methodSignatures, classes), backpressure);
+            remote.setCallTimeout(callTimeout);
+            // registered before answering, so the client can be looked up as soon as its handshake completes
             clients.addClient(remote);
+            // in-JVM connections carry objects, there are no bytes to compress
+            final Compression compression = TransportConfig.isInJvm(channel) ? null : codecConfig.negotiate(msg.compressions);
+            channel.writeAndFlush(new HandshakeFromServer(remote.getId(), Util.foldClassesToStrings(new ArrayList<Class<?>>(implementations.keySet())), dispatchTable.getMethods().getSignatures(), compression == null ? "" : compression.name()));
+            // handshake is already encoded, everything after it is compressed both ways
+            if (compression != null) {
+                CompressionCodec.install(channel.pipeline(), compression, codecConfig);
+            }
             fireClientConnect(remote);
         } catch (ClassNotFoundException e) {
             logger.error("interfaces registered on client side are not in the classpath", e);
@@ -85,11 +142,27 @@ public class RpcServerHandler extends SimpleChannelInboundHandler implements Rpc
     }
 
     @Override
-    public void acceptInvocationRequest(InvocationRequest msg) {
+    public void acceptInvocationRequest(final InvocationRequest msg) {
+        try {
+            invocationExecutor.execute(remote, new Runnable() {
+                @Override
+                public void run() {
+                    invoke(msg);
+                }
+            });
+        } catch (RejectedExecutionException exc) {
+            logger.warn("invocation is rejected, {} invocations are queued", invocationExecutor.getQueueDepth());
+            channel.writeAndFlush(new ExceptionNotify(exc));
+        }
+    }
+
+    private void invoke(InvocationRequest msg) {
         try {
-            Class<?> clazz = classResolver.resolve(msg.className);
-            Object impl = getImplementation(clazz);
-            Util.invokeMethod(msg, impl, classResolver);
+            Object impl = getImplementation(dispatchTable.getInterface(msg.methodId));
+            dispatchTable.invoke(msg.methodId, impl, msg.args);
+        } catch (InvocationTargetException exc) {
+            logger.error("implementation threw exception", exc.getCause());
+            channel.writeAndFlush(new ExceptionNotify(toException(exc.getCause())));
         } catch (Exception exc) {
             logger.error("caught exception while trying to invoke implementation", exc);
             channel.writeAndFlush(new ExceptionNotify(exc));
@@ -101,11 +174,152 @@ public class RpcServerHandler extends SimpleChannelInboundHandler implements Rpc
         // ignore
     }
 
+    private void acceptRequest(final Request request) {
+        try {
+            invocationExecutor.execute(remote, new Runnable() {
+                @Override
+                public void run() {
+                    invoke(request);
+                }
+            });
+        } catch (RejectedExecutionException exc) {
+            logger.warn("request {} is rejected, {} invocations are queued", request.getId(), invocationExecutor.getQueueDepth());
+            writeResponse(exceptionResponse(request.getId(), exc));
+        }
+    }
+
+    private void invoke(Request request) {
+        final long id = request.getId();
+        try {
+            Object value = invoke(request.getCommand());
+
+            if (value instanceof CompletableFuture) {
+                ((CompletableFuture<?>) value).whenComplete(new BiConsumer<Object, Throwable>() {
+                    @Override
+                    public void accept(Object futureValue, Throwable exc) {
+                        channel.writeAndFlush(exc == null ? valueResponse(id, futureValue) : exceptionResponse(id, unwrap(exc)));
+                    }
+                });
+            } else {
+                writeResponse(valueResponse(id, value));
+            }
+        } catch (InvocationTargetException exc) {
+            writeResponse(exceptionResponse(id, exc.getCause()));
+        } catch (Exception exc) {
+            logger.error("caught exception while trying to invoke implementation", exc);
+            writeResponse(exceptionResponse(id, exc));
+        }
+    }
+
+    private Object invoke(Command command) throws InvocationTargetException {
+        Object impl = getImplementation(dispatchTable.getInterface(command.getMethodId()));
+        return dispatchTable.invoke(command.getMethodId(), impl, command.findParameters());
+    }
+
+    private void acceptBatchRequest(final BatchRequest request) {
+        try {
+            invocationExecutor.execute(remote, new Runnable() {
+                @Override
+                public void run() {
+                    invoke(request);
+                }
+            });
+        } catch (RejectedExecutionException exc) {
+            logger.warn("batch request {} is rejected, {} invocations are queued", request.getId(), invocationExecutor.getQueueDepth());
+            writeResponse(exceptionResponse(request.getId(), exc));
+        }
+    }
+
+    /**
+     * executes commands of the batch one after another, a failed command does not stop the following ones, <br/>
+     * combined response is sent once results of all the commands, asynchronous ones included, are known
+     */
+    private void invoke(BatchRequest request) {
+        final Command[] commands = request.getCommands();
+        final Result[] results = new Result[commands.length];
+        final List<CompletableFuture<?>> pending = new ArrayList<>();
+        for (int i = 0; i < commands.length; i++) {
+            try {
+                final Object value = invoke(commands[i]);
+                if (value instanceof CompletableFuture) {
+                    final int index = i;
+                    pending.add(((CompletableFuture<?>) value).whenComplete(new BiConsumer<Object, Throwable>() {
+                        @Override
+                        public void accept(Object futureValue, Throwable exc) {
+                            results[index] = exc == null ? valueResult(futureValue) : exceptionResult(unwrap(exc));
+                        }
+                    }));
+                } else {
+                    results[i] = valueResult(value);
+                }
+            } catch (InvocationTargetException exc) {
+                results[i] = exceptionResult(exc.getCause());
+            } catch (Exception exc) {
+                logger.error("caught exception while trying to invoke implementation", exc);
+                results[i] = exceptionResult(exc);
+            }
+        }
+
+        final BatchResponse response = new BatchResponse(request.getId(), results);
+        if (pending.isEmpty()) {
+            writeResponse(response);
+            return;
+        }
+        // results are set by the futures allOf waits for, so they are visible once it completes
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[pending.size()])).whenComplete(new BiConsumer<Void, Throwable>() {
+            @Override
+            public void accept(Void ignored, Throwable exc) {
+                channel.writeAndFlush(response);
+            }
+        });
+    }
+
+    /**
+     * responses of inline invocations are flushed once all the requests read so far are processed, <br/>
+     * others are handed over to the channel's event loop and flushed right away
+     */
+    private void writeResponse(Response response) {
+        if (invocationExecutor.isInline()) {
+            channel.write(response);
+        } else {
+            channel.writeAndFlush(response);
+        }
+    }
+
+    private static Exception toException(Throwable exc) {
+        return exc instanceof Exception ? (Exception) exc : new RuntimeException(exc);
+    }
+
+    private static Throwable unwrap(Throwable exc) {
+        return exc instanceof CompletionException && exc.getCause() != null ? exc.getCause() : exc;
+    }
+
+    private static Result valueResult(Object value) {
+        return value == null ? Result.VOID_RETURN : new Result(value, value.getClass(), false);
+    }
+
+    private static Result exceptionResult(Throwable exc) {
+        return new Result(exc, exc.getClass(), true);
+    }
+
+    private static Response valueResponse(long id, Object value) {
+        final Result result = valueResult(value);
+        return new Response(id, result, result.getReturnClass().getName());
+    }
+
+    private static Response exceptionResponse(long id, Throwable exc) {
+        return new Response(id, exceptionResult(exc), exc.getClass().getName());
+    }
+
     private Object getImplementation(Class<?> clazz) {
         Object impl = cache.get(clazz);
         if (impl == null) {
-            impl = createImplementation(clazz);
-            cache.put(clazz, impl);
+            // invocations may run on several threads, only one created implementation is kept
+            final Object created = createImplementation(clazz);
+            impl = cache.putIfAbsent(clazz, created);
+            if (impl == null) {
+                impl = created;
+            }
         }
         return impl;
     }
@@ -121,6 +335,15 @@ public class RpcServerHandler extends SimpleChannelInboundHandler implements Rpc
 
     @Override
     public void channelRead0(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof BatchRequest) {
+            acceptBatchRequest((BatchRequest) msg);
+            return;
+        }
+        if (msg instanceof Request) {
+            acceptRequest((Request) msg);
+            return;
+        }
+
         RpcMessage message = (RpcMessage) msg;
         logger.debug("server got message {} from {}", message.toString(), ctx.channel().toString());
         message.visit(this);
@@ -2,57 +2,78 @@ package com.volyx.rpc.server;
 
 import com.volyx.rpc.api.ClientListener;
 import com.volyx.rpc.api.ExceptionListener;
+import com.volyx.rpc.api.InvocationExecutor;
+import com.volyx.rpc.common.Backpressure;
+import com.volyx.rpc.common.DispatchTable;
+import com.volyx.rpc.common.TransportConfig;
+import com.volyx.rpc.common.codec.CodecConfig;
+import com.volyx.rpc.common.codec.FrameCodecs;
+import com.volyx.rpc.common.codec.LocalMessageCodec;
+import com.volyx.rpc.common.codec.MessageCodec;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.handler.codec.DelimiterBasedFrameDecoder;
-import io.netty.handler.codec.Delimiters;
+import io.netty.channel.Channel;
 import io.netty.handler.codec.serialization.ClassResolver;
-import io.netty.handler.codec.serialization.ObjectDecoder;
-import io.netty.handler.codec.serialization.ObjectEncoder;
-import io.netty.handler.codec.string.StringDecoder;
-import io.netty.handler.codec.string.StringEncoder;
-import io.netty.util.CharsetUtil;
 
 import javax.annotation.Nonnull;
 import java.util.Map;
 
-public class RpcServerInitializer extends ChannelInitializer<SocketChannel> {
+public class RpcServerInitializer extends ChannelInitializer<Channel> {
 
     private ClientRepository clients;
     private final Map<Class<?>, ServerProvider<?>> implementations;
     private final ExceptionListener[] exceptionListeners;
     private final ClientListener[] clientListeners;
     private final ClassResolver classResolver;
+    private final CodecConfig codecConfig;
+    private final TransportConfig transportConfig;
+    private final MessageCodec messageCodec;
+    private final LocalMessageCodec localCodec;
+    private final DispatchTable dispatchTable;
+    private final InvocationExecutor invocationExecutor;
+    private final Backpressure backpressure;
+    private final long callTimeout;
 
-    private static final StringDecoder utf8Decoder = new StringDecoder(CharsetUtil.UTF_8);
-    private static final StringEncoder utf8Encoder = new StringEncoder(CharsetUtil.UTF_8);
     private static final ChannelHandlerAdapter serverHandler = new ChannelHandlerAdapter();
 
-    public RpcServerInitializer(ClientRepository clients, @Nonnull Map<Class<?>, ServerProvider<?>> implementations, @Nonnull ExceptionListener[] exceptionListeners, @Nonnull ClientListener[] clientListeners, @Nonnull ClassResolver classResolver) {
+    public RpcServerInitializer(ClientRepository clients, @Nonnull Map<Class<?>, ServerProvider<?>> implementations, @Nonnull DispatchTable dispatchTable, @Nonnull ExceptionListener[] exceptionListeners, @Nonnull ClientListener[] clientListeners, @Nonnull ClassResolver classResolver, @Nonnull CodecConfig codecConfig, @Nonnull TransportConfig transportConfig, @Nonnull InvocationExecutor invocationExecutor, @Nonnull Backpressure backpressure, long callTimeout) {
         this.clients = clients;
         this.implementations = implementations;
         this.exceptionListeners = exceptionListeners;
         this.clientListeners = clientListeners;
         this.classResolver = classResolver;
+        this.codecConfig = codecConfig;
+        this.transportConfig = transportConfig;
+        this.messageCodec = new MessageCodec(codecConfig.getSerializer(), classResolver);
+        this.localCodec = new LocalMessageCodec(codecConfig.getSerializer(), classResolver);
+        this.dispatchTable = dispatchTable;
+        this.invocationExecutor = invocationExecutor;
+        this.backpressure = backpressure;
+        this.callTimeout = callTimeout;
     }
 
     @Override
-    protected void initChannel(SocketChannel ch) throws Exception {
-
-//        ch.pipeline().addLast(new ObjectEncoder());
-//        ch.pipeline().addLast(new ObjectDecoder(classResolver));
-//        ch.pipeline().addLast(new RpcServerHandler(clients, implementations, exceptionListeners, clientListeners, classResolver));
+    protected void initChannel(Channel ch) throws Exception {
         ChannelPipeline pipeline = ch.pipeline();
-        // NUL (0x00) is a message delimiter
-        pipeline.addLast("framer", new DelimiterBasedFrameDecoder(8192, Delimiters.nulDelimiter()));
+        if (TransportConfig.isInJvm(ch)) {
+            // in-JVM connection carries messages as objects, the codec serializes only those which have to be copied
+            pipeline.addLast("codec", localCodec.forConnection(codecConfig.getMaxFrameLength()));
+        } else {
+            // frame decoder / encoder are responsible for cutting the stream into messages, see Framing
+            FrameCodecs.addFraming(pipeline, codecConfig);
+
+            // message codec is responsible for converting payloads to messages and back, see Serializer
+            pipeline.addLast("codec", messageCodec.forConnection(codecConfig.getMaxFrameLength()));
+        }
 
-        // string encoder / decoder are responsible for encoding / decoding an UTF-8 string
-        pipeline.addLast("encoder", utf8Encoder);
-        pipeline.addLast("decoder", utf8Decoder);
+        // flush consolidator is responsible for sending bursts of messages with few syscalls, see FlushMode
+        transportConfig.addFlushing(pipeline);
 
-        // server hander is responsible for as a remoting call skeleton
+        // server hander is responsible for dropping heartbeats and flushing responses
         pipeline.addLast("serverHandler", serverHandler);
+
+        // rpc handler is responsible for as a remoting call skeleton, it keeps per-client state so it is not shared
+        pipeline.addLast("rpcHandler", new RpcServerHandler(clients, implementations, exceptionListeners, clientListeners, classResolver, codecConfig, dispatchTable, invocationExecutor, backpressure, callTimeout));
     }
 
 }
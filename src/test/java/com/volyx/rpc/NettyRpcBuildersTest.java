@@ -3,12 +3,18 @@ package com.volyx.rpc;
 import com.volyx.rpc.api.NettyRpcClientBuilder;
 import com.volyx.rpc.api.NettyRpcServerBuilder;
 import com.volyx.rpc.api.RpcClient;
+import com.volyx.rpc.api.RpcClientFactory;
+import com.volyx.rpc.api.Transport;
+import io.netty.buffer.PooledByteBufAllocator;
 import org.jmock.Expectations;
 import org.jmock.Mockery;
 import org.jmock.integration.junit4.JUnit4Mockery;
 import org.junit.Test;
 import com.volyx.rpc.api.RpcServer;
 
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
 public class NettyRpcBuildersTest {
 
     @Test
@@ -43,6 +49,29 @@ public class NettyRpcBuildersTest {
         }
     }
 
+    @Test
+    public void clientsOfFactoryShareResources() throws Exception {
+        final RpcServer server = new NettyRpcServerBuilder(Config.BIND_ADDRESS)
+                .addObject(ServerRemote.class, new ServerRemoteImpl())
+                .build();
+        final RpcClientFactory factory = new RpcClientFactory(Transport.AUTO, 1, PooledByteBufAllocator.DEFAULT);
+
+        final RpcClient client1 = factory.newClientBuilder(Config.BIND_ADDRESS).build();
+        final RpcClient client2 = factory.newClientBuilder(Config.BIND_ADDRESS).build();
+
+        try {
+            client1.shutdown();
+            // connection of the other client is served by the same event loop, which must still run
+            client2.getRemote().getProxy(ServerRemote.class).call();
+            Config.giveTimeForMessagesToBeProcessed();
+            assertThat(server.getClients().size(), equalTo(1));
+        } finally {
+            client2.shutdown();
+            factory.shutdown();
+            server.shutdown();
+        }
+    }
+
     public interface ServerRemote {
         void call();
     }
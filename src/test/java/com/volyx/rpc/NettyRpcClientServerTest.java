@@ -1,31 +1,65 @@
 package com.volyx.rpc;
 
+import java.io.File;
 import java.io.Serializable;
-
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.apache.commons.lang3.StringUtils;
 import org.jmock.Expectations;
 import org.jmock.Mockery;
 import org.jmock.integration.junit4.JMock;
 import org.jmock.integration.junit4.JUnit4Mockery;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.unix.DomainSocketAddress;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import com.volyx.rpc.api.BackpressurePolicy;
 import com.volyx.rpc.api.ClientListener;
+import com.volyx.rpc.api.Compression;
+import com.volyx.rpc.api.ConnectionSelection;
 import com.volyx.rpc.api.ExceptionListener;
+import com.volyx.rpc.api.FlushMode;
 import com.volyx.rpc.api.Inject;
+import com.volyx.rpc.api.InvocationExecutors;
+import com.volyx.rpc.api.MicroBatch;
 import com.volyx.rpc.api.NettyRpcClientBuilder;
 import com.volyx.rpc.api.NettyRpcServerBuilder;
 import com.volyx.rpc.api.Remote;
 import com.volyx.rpc.api.RpcClient;
 import com.volyx.rpc.api.RpcServer;
+import com.volyx.rpc.api.SharedMemoryAddress;
+import com.volyx.rpc.api.Transport;
+import com.volyx.rpc.api.WritabilityListener;
+import com.volyx.rpc.api.exception.BackpressureException;
 import com.volyx.rpc.api.exception.ConfigurationException;
 import com.volyx.rpc.api.exception.RemoteException;
 import com.volyx.rpc.api.exception.TransportException;
+import com.volyx.rpc.common.NettyRemote;
+import com.volyx.rpc.common.binary.BinarySerializer;
+import com.volyx.rpc.common.codec.CompressionStats;
+import com.volyx.rpc.common.json.JsonMessageSerializer;
 
 import static java.lang.Thread.sleep;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 
 @RunWith(JMock.class)
 public class NettyRpcClientServerTest {
@@ -67,9 +101,56 @@ public class NettyRpcClientServerTest {
     }
 
     @Test(timeout = Config.TIMEOUT, expected = ConfigurationException.class)
-    public void doNotAllowMethodsWithNonVoidReturnTypeToBeProxied() throws Exception {
+    public void doNotAllowMethodsWithNonSerializableReturnTypeToBeProxied() throws Exception {
+        final NoParamsObjectReturn impl = mockery.mock(NoParamsObjectReturn.class);
+
+        new NettyRpcServerBuilder(Config.BIND_ADDRESS)
+                .addObject(NoParamsObjectReturn.class, impl);
+    }
+
+    @Test(timeout = Config.TIMEOUT, expected = ConfigurationException.class)
+    public void doNotAllowMethodsWithNonVoidReturnTypeToBeProxiedFromServerToClient() throws Exception {
         final NoParamsIntegerReturn impl = mockery.mock(NoParamsIntegerReturn.class);
 
+        new NettyRpcClientBuilder(Config.BIND_ADDRESS)
+                .addObject(NoParamsIntegerReturn.class, impl);
+    }
+
+    @Test(timeout = Config.TIMEOUT, expected = ConfigurationException.class)
+    public void doNotAllowMicroBatchWithoutMatchingBulkMethod() throws Exception {
+        new NettyRpcServerBuilder(Config.BIND_ADDRESS)
+                .addClass(BrokenEventSink.class, ServerEventSink.class);
+    }
+
+    @Test(timeout = Config.TIMEOUT)
+    public void microBatchedCallsAreSentAsBulkCalls() throws Exception {
+        final RpcServer server = new NettyRpcServerBuilder(Config.BIND_ADDRESS)
+                .addClass(EventSink.class, ServerEventSink.class)
+                .build();
+        final RpcClient client = new NettyRpcClientBuilder(Config.BIND_ADDRESS).build();
+        final EventSink proxy = client.getRemote().getProxy(EventSink.class);
+
+        try {
+            for (int i = 0; i < 25; i++) {
+                proxy.record(i);
+            }
+            // two full windows are sent at once, the rest once its delay is over
+            Config.giveTimeForMessagesToBeProcessed();
+            assertThat(proxy.stats(), equalTo("3 calls, 25 items"));
+        } finally {
+            client.shutdown();
+            server.shutdown();
+        }
+    }
+
+    @Test(timeout = Config.TIMEOUT)
+    public void blockingMethodsReturnValueFromRemoteSide() throws Exception {
+        final NoParamsIntegerReturn impl = mockery.mock(NoParamsIntegerReturn.class);
+
+        mockery.checking(new Expectations() {{
+            one(impl).go(); will(returnValue(42));
+        }});
+
         final RpcServer server = new NettyRpcServerBuilder(Config.BIND_ADDRESS)
                 .addObject(NoParamsIntegerReturn.class, impl)
                 .build();
@@ -78,7 +159,567 @@ public class NettyRpcClientServerTest {
         final NoParamsIntegerReturn proxy = client.getRemote().getProxy(NoParamsIntegerReturn.class);
 
         try {
-            proxy.go();
+            assertThat(proxy.go(), equalTo(42));
+        } finally {
+            client.shutdown();
+            server.shutdown();
+        }
+    }
+
+    @Test(timeout = Config.TIMEOUT)
+    public void invocationsRunOnConfiguredExecutor() throws Exception {
+        final RpcServer server = new NettyRpcServerBuilder(Config.BIND_ADDRESS)
+                .addObject(Echo.class, new Echo() {
+                    @Override
+                    public CompletableFuture<String> echo(String s) {
+                        return CompletableFuture.completedFuture(s + Thread.currentThread().getName().startsWith("rpc-invocation-"));
+                    }
+                })
+                .setInvocationExecutor(InvocationExecutors.boundedPool(2, 16))
+                .build();
+
+        final RpcClient client = new NettyRpcClientBuilder(Config.BIND_ADDRESS).build();
+        final Echo proxy = client.getRemote().getProxy(Echo.class);
+
+        try {
+            assertThat(proxy.echo("pooled ").get(), equalTo("pooled true"));
+            assertThat(proxy.echo("pooled ").get(), equalTo("pooled true"));
+            assertThat(server.getInvocationExecutor().getQueueDepth(), equalTo(0));
+            assertThat(server.getInvocationExecutor().getRejectedCount(), equalTo(0L));
+        } finally {
+            client.shutdown();
+            server.shutdown();
+        }
+    }
+
+    @Test(timeout = Config.TIMEOUT)
+    public void orderedExecutorKeepsOrderOfEveryClient() throws Exception {
+        final RpcServer server = new NettyRpcServerBuilder(Config.BIND_ADDRESS)
+                .addClass(Sequence.class, ServerSequence.class)
+                .setInvocationExecutor(InvocationExecutors.ordered(4, 1000))
+                .build();
+
+        final RpcClient client1 = new NettyRpcClientBuilder(Config.BIND_ADDRESS).build();
+        final RpcClient client2 = new NettyRpcClientBuilder(Config.BIND_ADDRESS).build();
+        final Sequence proxy1 = client1.getRemote().getProxy(Sequence.class);
+        final Sequence proxy2 = client2.getRemote().getProxy(Sequence.class);
+
+        try {
+            for (int i = 0; i < 500; i++) {
+                proxy1.next(i);
+                proxy2.next(i);
+            }
+            assertThat(proxy1.count(), equalTo(500));
+            assertThat(proxy2.count(), equalTo(500));
+        } finally {
+            client1.shutdown();
+            client2.shutdown();
+            server.shutdown();
+        }
+    }
+
+    @Test(timeout = Config.TIMEOUT)
+    public void batchedCallsRunInOrderAndGetTheirResults() throws Exception {
+        final RpcServer server = new NettyRpcServerBuilder(Config.BIND_ADDRESS)
+                .addClass(BatchedSequence.class, ServerBatchedSequence.class)
+                .build();
+        final RpcClient client = new NettyRpcClientBuilder(Config.BIND_ADDRESS).build();
+
+        final AtomicReference<CompletableFuture<Integer>> count = new AtomicReference<>();
+        try {
+            final CompletableFuture<Void> batch = client.getRemote().batch(BatchedSequence.class, new Consumer<BatchedSequence>() {
+                @Override
+                public void accept(BatchedSequence proxy) {
+                    for (int i = 0; i < 100; i++) {
+                        proxy.next(i);
+                        if (i == 50) {
+                            proxy.fail("failed in the middle");
+                        }
+                    }
+                    count.set(proxy.count());
+                }
+            });
+
+            try {
+                batch.get();
+                fail("batch with a failed call should fail");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause(), instanceOf(RemoteException.class));
+            }
+            // calls after the failed one are executed anyway
+            assertThat(count.get().get(), equalTo(100));
+        } finally {
+            client.shutdown();
+            server.shutdown();
+        }
+    }
+
+    @Test(timeout = Config.TIMEOUT)
+    public void callsOverUnwritableConnectionFailAndListenersAreNotified() throws Exception {
+        final RpcServer server = new NettyRpcServerBuilder(Config.BIND_ADDRESS)
+                .addClass(Sequence.class, ServerSequence.class)
+                .build();
+
+        final List<Boolean> changes = new CopyOnWriteArrayList<>();
+        // unflushed calls stay in the outbound buffer, so a single one exceeds the water mark, keep-alives would flush it
+        final RpcClient client = new NettyRpcClientBuilder(Config.BIND_ADDRESS)
+                .setFlushMode(FlushMode.EXPLICIT)
+                .setWriteBufferWaterMark(1, 2)
+                .setKeepAlive(0)
+                .setBackpressure(BackpressurePolicy.FAIL, 0)
+                .addWritabilityListener(new WritabilityListener() {
+                    @Override
+                    public void onWritabilityChanged(Remote remote, boolean writable) {
+                        changes.add(writable);
+                    }
+                })
+                .build();
+        final Sequence proxy = client.getRemote().getProxy(Sequence.class);
+
+        try {
+            proxy.next(0);
+            Config.giveTimeForMessagesToBeProcessed();
+            assertThat(client.getRemote().isWritable(), equalTo(false));
+            try {
+                proxy.next(1);
+                fail("call over unwritable connection should fail");
+            } catch (BackpressureException expected) {
+            }
+
+            client.getRemote().flush();
+            Config.giveTimeForMessagesToBeProcessed();
+            assertThat(changes, equalTo(Arrays.asList(false, true)));
+        } finally {
+            client.shutdown();
+            server.shutdown();
+        }
+    }
+
+    @Test(timeout = Config.TIMEOUT)
+    public void blockingCallsDoNotWaitForExplicitFlush() throws Exception {
+        final RpcServer server = new NettyRpcServerBuilder(Config.BIND_ADDRESS)
+                .addClass(Sequence.class, ServerSequence.class)
+                .build();
+
+        final RpcClient client = new NettyRpcClientBuilder(Config.BIND_ADDRESS)
+                .setFlushMode(FlushMode.EXPLICIT)
+                .build();
+        final Sequence proxy = client.getRemote().getProxy(Sequence.class);
+
+        try {
+            proxy.next(0);
+            proxy.next(1);
+            // calls written before are flushed along with the blocking one
+            assertThat(proxy.count(), equalTo(2));
+        } finally {
+            client.shutdown();
+            server.shutdown();
+        }
+    }
+
+    @Test(timeout = Config.TIMEOUT)
+    public void blockingCallsFailIfResponseDoesNotComeInTime() throws Exception {
+        final RpcServer server = new NettyRpcServerBuilder(Config.BIND_ADDRESS)
+                .addObject(NoParamsIntegerReturn.class, new NoParamsIntegerReturn() {
+                    @Override
+                    public Integer go() {
+                        try {
+                            sleep(1000L);
+                        } catch (InterruptedException ignored) {}
+                        return 1;
+                    }
+                })
+                .build();
+
+        final RpcClient client = new NettyRpcClientBuilder(Config.BIND_ADDRESS)
+                .setCallTimeout(100)
+                .build();
+
+        try {
+            client.getRemote().getProxy(NoParamsIntegerReturn.class).go();
+            fail("call should time out");
+        } catch (TransportException expected) {
+        } finally {
+            client.shutdown();
+            server.shutdown();
+        }
+    }
+
+    @Test(timeout = Config.TIMEOUT)
+    public void largePayloadsAreCompressedWithNegotiatedAlgorithm() throws Exception {
+        final Echo impl = new Echo() {
+            @Override
+            public CompletableFuture<String> echo(String msg) {
+                return CompletableFuture.completedFuture(msg);
+            }
+        };
+
+        final RpcServer server = new NettyRpcServerBuilder(Config.BIND_ADDRESS)
+                .addObject(Echo.class, impl)
+                .setSerializer(new JsonMessageSerializer())
+                .setCompression(Compression.DEFLATE)
+                .build();
+
+        // lz4 is preferred but the server does not accept it
+        final RpcClient client = new NettyRpcClientBuilder(Config.BIND_ADDRESS)
+                .setSerializer(new JsonMessageSerializer())
+                .setCompression(Compression.LZ4, Compression.DEFLATE)
+                .setCompressionThreshold(256)
+                .build();
+        final Echo proxy = client.getRemote().getProxy(Echo.class);
+
+        try {
+            final String large = StringUtils.repeat("compressible ", 1000);
+            assertThat(proxy.echo(large).get(), equalTo(large));
+            assertThat(proxy.echo("small").get(), equalTo("small"));
+
+            final CompressionStats stats = ((NettyRemote) client.getRemote()).getCompressionStats();
+            assertThat(stats.getCompression(), equalTo(Compression.DEFLATE));
+            assertThat(stats.getCompressedMessagesWritten(), equalTo(1L));
+            assertThat(stats.getWireBytesWritten(), lessThan(stats.getRawBytesWritten() / 5));
+            assertThat(stats.getWireBytesRead(), lessThan(stats.getRawBytesRead() / 5));
+        } finally {
+            client.shutdown();
+            server.shutdown();
+        }
+    }
+
+    @Test(timeout = Config.TIMEOUT)
+    public void repeatedStringsSurviveDictionariesOfEveryConnection() throws Exception {
+        final Echo impl = new Echo() {
+            @Override
+            public CompletableFuture<String> echo(String msg) {
+                return CompletableFuture.completedFuture(msg);
+            }
+        };
+
+        final RpcServer server = new NettyRpcServerBuilder(Config.BIND_ADDRESS)
+                .addObject(Echo.class, impl)
+                .setSerializer(new BinarySerializer(2))
+                .build();
+
+        final RpcClient client = new NettyRpcClientBuilder(Config.BIND_ADDRESS)
+                .setSerializer(new BinarySerializer(2))
+                .setConnections(2)
+                .build();
+        final Echo proxy = client.getRemote().getProxy(Echo.class);
+
+        try {
+            for (String msg : Arrays.asList("PLACED", "PLACED", "FILLED", "PLACED", "CANCELLED", "FILLED")) {
+                assertThat(proxy.echo(msg).get(), equalTo(msg));
+            }
+        } finally {
+            client.shutdown();
+            server.shutdown();
+        }
+    }
+
+    @Test(timeout = Config.TIMEOUT)
+    public void nioTransportCanBeChosenExplicitly() throws Exception {
+        final NoParamsIntegerReturn impl = mockery.mock(NoParamsIntegerReturn.class);
+
+        mockery.checking(new Expectations() {{
+            one(impl).go(); will(returnValue(42));
+        }});
+
+        final RpcServer server = new NettyRpcServerBuilder(Config.BIND_ADDRESS)
+                .addObject(NoParamsIntegerReturn.class, impl)
+                .setTransport(Transport.NIO)
+                .build();
+
+        final RpcClient client = new NettyRpcClientBuilder(Config.BIND_ADDRESS)
+                .setTransport(Transport.NIO)
+                .build();
+
+        try {
+            assertThat(client.getRemote().getProxy(NoParamsIntegerReturn.class).go(), equalTo(42));
+        } finally {
+            client.shutdown();
+            server.shutdown();
+        }
+    }
+
+    @Test(timeout = Config.TIMEOUT)
+    public void severalAcceptorsShareOneClientRepository() throws Exception {
+        assumeTrue(Epoll.isAvailable());
+
+        final RpcServer server = new NettyRpcServerBuilder(Config.BIND_ADDRESS)
+                .addClass(Sequence.class, ServerSequence.class)
+                .setAcceptors(2)
+                .setBacklog(1024)
+                .build();
+
+        final RpcClient client1 = new NettyRpcClientBuilder(Config.BIND_ADDRESS).build();
+        final RpcClient client2 = new NettyRpcClientBuilder(Config.BIND_ADDRESS).build();
+
+        try {
+            client1.getRemote().getProxy(Sequence.class).next(0);
+            assertThat(client1.getRemote().getProxy(Sequence.class).count(), equalTo(1));
+            assertThat(client2.getRemote().getProxy(Sequence.class).count(), equalTo(0));
+            assertThat(server.getClients().size(), equalTo(2));
+        } finally {
+            client1.shutdown();
+            client2.shutdown();
+            server.shutdown();
+        }
+    }
+
+    @Test(timeout = Config.TIMEOUT)
+    public void domainSocketClientsAreServedAlongsideTcpOnes() throws Exception {
+        assumeTrue(Epoll.isAvailable());
+
+        final File socketFile = File.createTempFile("rpc", ".sock");
+        socketFile.delete();
+        final DomainSocketAddress domainAddress = new DomainSocketAddress(socketFile);
+
+        final RpcServer server = new NettyRpcServerBuilder(Config.BIND_ADDRESS)
+                .addBindAddress(domainAddress)
+                .addClass(Sequence.class, ServerSequence.class)
+                .build();
+
+        final RpcClient tcpClient = new NettyRpcClientBuilder(Config.BIND_ADDRESS).build();
+        final RpcClient domainClient = new NettyRpcClientBuilder(domainAddress).build();
+
+        try {
+            domainClient.getRemote().getProxy(Sequence.class).next(0);
+            domainClient.getRemote().getProxy(Sequence.class).next(1);
+            assertThat(domainClient.getRemote().getProxy(Sequence.class).count(), equalTo(2));
+            assertThat(tcpClient.getRemote().getProxy(Sequence.class).count(), equalTo(0));
+            assertThat(server.getClients().size(), equalTo(2));
+        } finally {
+            domainClient.shutdown();
+            tcpClient.shutdown();
+            server.shutdown();
+        }
+        assertThat(socketFile.exists(), equalTo(false));
+    }
+
+    @Test(timeout = Config.TIMEOUT, expected = ConfigurationException.class)
+    public void domainSocketsRequireEpoll() throws Exception {
+        new NettyRpcServerBuilder(new DomainSocketAddress("/tmp/rpc-nio.sock"))
+                .setTransport(Transport.NIO)
+                .build();
+    }
+
+    @Test(timeout = Config.TIMEOUT)
+    public void inJvmClientsGetImmutableArgumentsByReferenceAndOthersCopied() throws Exception {
+        final AtomicReference<String> echoed = new AtomicReference<String>();
+        final AtomicReference<List<Integer>> recorded = new AtomicReference<List<Integer>>();
+        final LocalAddress localAddress = new LocalAddress("rpc-test");
+
+        final RpcServer server = new NettyRpcServerBuilder(Config.BIND_ADDRESS)
+                .addBindAddress(localAddress)
+                .addObject(Echo.class, new Echo() {
+                    @Override
+                    public CompletableFuture<String> echo(String msg) {
+                        echoed.set(msg);
+                        return CompletableFuture.completedFuture(msg);
+                    }
+                })
+                .addObject(EventSink.class, new EventSink() {
+                    @Override
+                    public void record(Integer event) {
+                    }
+
+                    @Override
+                    public void recordAll(List<Integer> events) {
+                        recorded.set(events);
+                    }
+
+                    @Override
+                    public String stats() {
+                        return String.valueOf(recorded.get());
+                    }
+                })
+                .build();
+
+        final RpcClient client = new NettyRpcClientBuilder(localAddress).build();
+
+        try {
+            final String msg = new String("by reference");
+            assertThat(client.getRemote().getProxy(Echo.class).echo(msg).get(), sameInstance(msg));
+            assertThat(echoed.get(), sameInstance(msg));
+
+            final List<Integer> events = new ArrayList<Integer>(Arrays.asList(1, 2, 3));
+            final EventSink sink = client.getRemote().getProxy(EventSink.class);
+            sink.recordAll(events);
+            assertThat(sink.stats(), equalTo("[1, 2, 3]"));
+            assertThat(recorded.get(), equalTo(events));
+            assertThat(recorded.get(), not(sameInstance(events)));
+            assertThat(server.getClients().size(), equalTo(1));
+        } finally {
+            client.shutdown();
+            server.shutdown();
+        }
+    }
+
+    @Test(timeout = Config.TIMEOUT)
+    public void sharedMemoryClientsAreServedAlongsideTcpOnes() throws Exception {
+        final File directory = File.createTempFile("rpc", ".shm");
+        directory.delete();
+        // rings shorter than the payload, it goes through in parts
+        final SharedMemoryAddress shmAddress = new SharedMemoryAddress(directory, 4096);
+
+        final RpcServer server = new NettyRpcServerBuilder(Config.BIND_ADDRESS)
+                .addBindAddress(shmAddress)
+                .addObject(Echo.class, new Echo() {
+                    @Override
+                    public CompletableFuture<String> echo(String msg) {
+                        return CompletableFuture.completedFuture(msg);
+                    }
+                })
+                .build();
+
+        final RpcClient tcpClient = new NettyRpcClientBuilder(Config.BIND_ADDRESS).build();
+        final RpcClient shmClient = new NettyRpcClientBuilder(shmAddress).build();
+
+        try {
+            final Echo proxy = shmClient.getRemote().getProxy(Echo.class);
+            final String large = StringUtils.repeat("shared memory ", 1000);
+            assertThat(proxy.echo(large).get(), equalTo(large));
+            for (int i = 0; i < 100; i++) {
+                assertThat(proxy.echo("call " + i).get(), equalTo("call " + i));
+            }
+            assertThat(tcpClient.getRemote().getProxy(Echo.class).echo("tcp").get(), equalTo("tcp"));
+            assertThat(server.getClients().size(), equalTo(2));
+        } finally {
+            shmClient.shutdown();
+            tcpClient.shutdown();
+            server.shutdown();
+        }
+        Config.giveTimeForMessagesToBeProcessed();
+        assertThat(directory.list().length, equalTo(0));
+        directory.delete();
+    }
+
+    @Test(timeout = Config.TIMEOUT)
+    public void pooledClientSpreadsConnectionsAndKeepsOrderOfOrderedProxies() throws Exception {
+        final RpcServer server = new NettyRpcServerBuilder(Config.BIND_ADDRESS)
+                .addClass(Sequence.class, ServerSequence.class)
+                .build();
+
+        final RpcClient client = new NettyRpcClientBuilder(Config.BIND_ADDRESS)
+                .setConnections(3)
+                .setConnectionSelection(ConnectionSelection.LEAST_OUTSTANDING_BYTES)
+                .setOrderedProxies(true)
+                .build();
+        final Sequence proxy = client.getRemote().getProxy(Sequence.class);
+
+        try {
+            for (int i = 0; i < 300; i++) {
+                proxy.next(i);
+            }
+            assertThat(proxy.count(), equalTo(300));
+            assertThat(server.getClients().size(), equalTo(3));
+        } finally {
+            client.shutdown();
+            server.shutdown();
+        }
+    }
+
+    @Test(timeout = Config.TIMEOUT)
+    public void multiEndpointClientSkipsReplicaWhichIsDownAndProbesItBackIn() throws Exception {
+        final RpcServer server = new NettyRpcServerBuilder(Config.BIND_ADDRESS)
+                .addClass(Sequence.class, ServerSequence.class)
+                .build();
+        RpcServer replica = new NettyRpcServerBuilder(Config.REPLICA_ADDRESS)
+                .addClass(Sequence.class, ServerSequence.class)
+                .build();
+
+        final RpcClient client = new NettyRpcClientBuilder(Arrays.asList(Config.BIND_ADDRESS, Config.REPLICA_ADDRESS))
+                .setConnectionSelection(ConnectionSelection.POWER_OF_TWO_CHOICES)
+                .setProbeInterval(50)
+                .build();
+        final Sequence proxy = client.getRemote().getProxy(Sequence.class);
+
+        try {
+            replica.shutdown();
+            Config.giveTimeForMessagesToBeProcessed();
+            for (int i = 0; i < 10; i++) {
+                proxy.count();
+            }
+            assertThat(server.getClients().size(), equalTo(1));
+
+            replica = new NettyRpcServerBuilder(Config.REPLICA_ADDRESS)
+                    .addClass(Sequence.class, ServerSequence.class)
+                    .build();
+            Config.giveTimeForMessagesToBeProcessed();
+            Config.giveTimeForMessagesToBeProcessed();
+            assertThat(replica.getClients().size(), equalTo(1));
+        } finally {
+            client.shutdown();
+            replica.shutdown();
+            server.shutdown();
+        }
+    }
+
+    @Test(timeout = Config.TIMEOUT)
+    public void proxiesAreCachedPerInterface() throws Exception {
+        final RpcServer server = new NettyRpcServerBuilder(Config.BIND_ADDRESS)
+                .addObject(NoParamsIntegerReturn.class, mockery.mock(NoParamsIntegerReturn.class))
+                .build();
+
+        final RpcClient client = new NettyRpcClientBuilder(Config.BIND_ADDRESS).build();
+
+        try {
+            final NoParamsIntegerReturn proxy = client.getRemote().getProxy(NoParamsIntegerReturn.class);
+            assertThat(client.getRemote().getProxy(NoParamsIntegerReturn.class), sameInstance(proxy));
+            assertThat(proxy.equals(proxy), equalTo(true));
+            assertThat(proxy.hashCode(), equalTo(System.identityHashCode(proxy)));
+        } finally {
+            client.shutdown();
+            server.shutdown();
+        }
+    }
+
+    @Test(timeout = Config.TIMEOUT)
+    public void futuresAreCompletedWithValueFromRemoteSide() throws Exception {
+        final Echo impl = new Echo() {
+            @Override
+            public CompletableFuture<String> echo(String msg) {
+                return CompletableFuture.completedFuture(msg);
+            }
+        };
+
+        final RpcServer server = new NettyRpcServerBuilder(Config.BIND_ADDRESS)
+                .addObject(Echo.class, impl)
+                .build();
+
+        final RpcClient client = new NettyRpcClientBuilder(Config.BIND_ADDRESS).build();
+        final Echo proxy = client.getRemote().getProxy(Echo.class);
+
+        try {
+            final CompletableFuture<String> first = proxy.echo("first");
+            final CompletableFuture<String> second = proxy.echo("second");
+            assertThat(second.get(), equalTo("second"));
+            assertThat(first.get(), equalTo("first"));
+        } finally {
+            client.shutdown();
+            server.shutdown();
+        }
+    }
+
+    @Test(timeout = Config.TIMEOUT)
+    public void futuresAreCompletedExceptionallyIfRemoteSideThrows() throws Exception {
+        final Echo impl = new Echo() {
+            @Override
+            public CompletableFuture<String> echo(String msg) {
+                throw new IllegalStateException(msg);
+            }
+        };
+
+        final RpcServer server = new NettyRpcServerBuilder(Config.BIND_ADDRESS)
+                .addObject(Echo.class, impl)
+                .build();
+
+        final RpcClient client = new NettyRpcClientBuilder(Config.BIND_ADDRESS).build();
+        final Echo proxy = client.getRemote().getProxy(Echo.class);
+
+        try {
+            proxy.echo("boom").get();
+            fail("future should have been completed exceptionally");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause().getClass(), equalTo((Class) RemoteException.class));
         } finally {
             client.shutdown();
             server.shutdown();
@@ -206,6 +847,47 @@ public class NettyRpcClientServerTest {
         }
     }
 
+    @Test(timeout = Config.TIMEOUT)
+    public void blockingCallFromEventLoopIsRejectedBeforeItIsSent() throws Exception {
+        final AtomicInteger serverCalls = new AtomicInteger();
+        final RpcServer server = new NettyRpcServerBuilder(Config.BIND_ADDRESS)
+                .addObject(NoParamsIntegerReturn.class, new NoParamsIntegerReturn() {
+                    @Override
+                    public Integer go() {
+                        return serverCalls.incrementAndGet();
+                    }
+                })
+                .build();
+
+        // client implementations run on the event loop, the callback calls server back from there
+        final AtomicReference<RpcClient> clientRef = new AtomicReference<RpcClient>();
+        final CompletableFuture<Throwable> rejection = new CompletableFuture<Throwable>();
+        final RpcClient client = new NettyRpcClientBuilder(Config.BIND_ADDRESS)
+                .addObject(NoParamsVoidReturn.class, new NoParamsVoidReturn() {
+                    @Override
+                    public void go() {
+                        try {
+                            clientRef.get().getRemote().getProxy(NoParamsIntegerReturn.class).go();
+                            rejection.complete(null);
+                        } catch (Throwable e) {
+                            rejection.complete(e);
+                        }
+                    }
+                })
+                .build();
+        clientRef.set(client);
+
+        try {
+            server.getClient(client.getRemote().getId()).getProxy(NoParamsVoidReturn.class).go();
+            assertThat(rejection.get(), instanceOf(ConfigurationException.class));
+            Config.giveTimeForMessagesToBeProcessed();
+            assertThat(serverCalls.get(), equalTo(0));
+        } finally {
+            client.shutdown();
+            server.shutdown();
+        }
+    }
+
     @Test(timeout = Config.TIMEOUT)
     public void throwsTransportExceptionIfConnectionIsAbruptlyTerminated() throws Throwable {
         final InfinteWaiter impl = new InfinteWaiter() {
@@ -475,6 +1157,12 @@ public class NettyRpcClientServerTest {
     public interface NoParamsIntegerReturn {
         Integer go();
     }
+    public interface NoParamsObjectReturn {
+        Object go();
+    }
+    public interface Echo {
+        CompletableFuture<String> echo(String msg);
+    }
 
     public interface IntegerParam {
         void go(Integer i);
@@ -576,6 +1264,100 @@ public class NettyRpcClientServerTest {
         public void get() { }
     }
 
+    public interface Sequence {
+        void next(int i);
+        Integer count();
+    }
+
+    public static class ServerSequence implements Sequence {
+
+        // not synchronized, invocations of one client must not overlap
+        private int expected;
+        private boolean broken;
+
+        @Override
+        public void next(int i) {
+            broken |= i != expected;
+            expected++;
+        }
+
+        @Override
+        public Integer count() {
+            return broken ? -1 : expected;
+        }
+    }
+
+    public interface BatchedSequence {
+        void next(int i);
+        void fail(String msg);
+        CompletableFuture<Integer> count();
+    }
+
+    public static class ServerBatchedSequence implements BatchedSequence {
+
+        private int expected;
+        private boolean broken;
+
+        @Override
+        public void next(int i) {
+            broken |= i != expected;
+            expected++;
+        }
+
+        @Override
+        public void fail(String msg) {
+            throw new IllegalStateException(msg);
+        }
+
+        @Override
+        public CompletableFuture<Integer> count() {
+            return CompletableFuture.completedFuture(broken ? -1 : expected);
+        }
+    }
+
+    public interface EventSink {
+        @MicroBatch(value = "recordAll", maxItems = 10, maxDelayMicros = 20000)
+        void record(Integer event);
+        void recordAll(List<Integer> events);
+        String stats();
+    }
+
+    public interface BrokenEventSink extends EventSink {
+        @MicroBatch("stats")
+        void recordOther(Integer event);
+    }
+
+    public static class ServerEventSink implements BrokenEventSink {
+
+        private int calls;
+        private final List<Integer> events = new ArrayList<>();
+
+        @Override
+        public void record(Integer event) {
+            recordAll(Collections.singletonList(event));
+        }
+
+        @Override
+        public void recordAll(List<Integer> events) {
+            calls++;
+            this.events.addAll(events);
+        }
+
+        @Override
+        public void recordOther(Integer event) {
+        }
+
+        @Override
+        public String stats() {
+            for (int i = 0; i < events.size(); i++) {
+                if (events.get(i) != i) {
+                    return "out of order";
+                }
+            }
+            return calls + " calls, " + events.size() + " items";
+        }
+    }
+
     public static class ExceptionSavingListener implements ExceptionListener {
         private volatile Exception lastException;
 
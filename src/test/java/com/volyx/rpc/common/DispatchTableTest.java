@@ -0,0 +1,118 @@
+package com.volyx.rpc.common;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class DispatchTableTest {
+
+    private final DispatchTable table = new DispatchTable(MethodTable.of(Collections.<Class<?>>singletonList(Counter.class)));
+    private final Counter counter = new Counter() {
+        private int value;
+
+        @Override
+        public int add(int delta) {
+            return value += delta;
+        }
+
+        @Override
+        public void reset() {
+            value = 0;
+        }
+
+        @Override
+        public void fail() {
+            throw new IllegalStateException("boom");
+        }
+    };
+
+    @Test
+    public void primitiveArgumentsAndResultsAreBoxed() throws Exception {
+        final int add = id("add", int.class);
+
+        assertThat(table.invoke(add, counter, new Object[]{2}), equalTo((Object) 2));
+        assertThat(table.invoke(add, counter, new Object[]{3}), equalTo((Object) 5));
+    }
+
+    @Test
+    public void voidMethodsReturnNull() throws Exception {
+        assertThat(table.invoke(id("reset"), counter, null), nullValue());
+        assertThat(table.invoke(id("add", int.class), counter, new Object[]{1}), equalTo((Object) 1));
+    }
+
+    @Test
+    public void exceptionsThrownByImplementationAreWrapped() throws Exception {
+        try {
+            table.invoke(id("fail"), counter, null);
+            fail();
+        } catch (InvocationTargetException e) {
+            assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+        }
+    }
+
+    @Test
+    public void argumentsNotMatchingArityAreRejected() throws Exception {
+        try {
+            table.invoke(id("add", int.class), counter, new Object[]{1, 2});
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            table.invoke(id("add", int.class), counter, null);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void argumentsOfWrongTypeAreRejectedBeforeInvoking() throws Exception {
+        final int add = id("add", int.class);
+        try {
+            table.invoke(add, counter, new Object[]{"2"});
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            table.invoke(add, counter, new Object[]{null});
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertThat(table.invoke(add, counter, new Object[]{(short) 2}), equalTo((Object) 2));
+    }
+
+    @Test(expected = StackOverflowError.class)
+    public void virtualMachineErrorsAreNotWrapped() throws Exception {
+        table.invoke(id("fail"), new Counter() {
+            @Override
+            public int add(int delta) {
+                return delta;
+            }
+
+            @Override
+            public void reset() {
+            }
+
+            @Override
+            public void fail() {
+                throw new StackOverflowError();
+            }
+        }, null);
+    }
+
+    private int id(String name, Class<?>... paramClasses) throws NoSuchMethodException {
+        return table.getMethods().getId(Counter.class, Counter.class.getMethod(name, paramClasses));
+    }
+
+    interface Counter {
+        int add(int delta);
+        void reset();
+        void fail();
+    }
+}
@@ -0,0 +1,50 @@
+package com.volyx.rpc.common;
+
+import com.volyx.rpc.api.FlushMode;
+import com.volyx.rpc.common.message.InvocationRequest;
+import com.volyx.rpc.common.message.KeepAlive;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class FlushConsolidatorTest {
+
+    @Test
+    public void consolidatedFlushesAreDoneOncePerEventLoopTick() throws Exception {
+        final EmbeddedChannel channel = new EmbeddedChannel(new FlushConsolidator(FlushMode.CONSOLIDATED, 100, 1024 * 1024));
+
+        channel.writeAndFlush(new KeepAlive());
+        channel.writeAndFlush(new KeepAlive());
+        channel.writeAndFlush(new KeepAlive());
+        assertThat(channel.outboundMessages().size(), equalTo(0));
+
+        channel.runPendingTasks();
+        assertThat(channel.outboundMessages().size(), equalTo(3));
+    }
+
+    @Test
+    public void flushIsDoneRightAwayOnceMessageThresholdIsReached() throws Exception {
+        final EmbeddedChannel channel = new EmbeddedChannel(new FlushConsolidator(FlushMode.CONSOLIDATED, 2, 1024 * 1024));
+
+        channel.writeAndFlush(new KeepAlive());
+        assertThat(channel.outboundMessages().size(), equalTo(0));
+
+        channel.writeAndFlush(new KeepAlive());
+        assertThat(channel.outboundMessages().size(), equalTo(2));
+    }
+
+    @Test
+    public void callsWaitForExplicitFlush() throws Exception {
+        final FlushConsolidator consolidator = new FlushConsolidator(FlushMode.EXPLICIT, 100, 1024 * 1024);
+        final EmbeddedChannel channel = new EmbeddedChannel(consolidator);
+
+        channel.writeAndFlush(new InvocationRequest(0, new Object[0]));
+        channel.runPendingTasks();
+        assertThat(channel.outboundMessages().size(), equalTo(0));
+
+        consolidator.forceFlush();
+        assertThat(channel.outboundMessages().size(), equalTo(1));
+    }
+}
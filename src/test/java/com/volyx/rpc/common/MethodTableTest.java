@@ -0,0 +1,74 @@
+package com.volyx.rpc.common;
+
+import com.volyx.rpc.api.exception.ConfigurationException;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class MethodTableTest {
+
+    @Test
+    public void remoteTableResolvesSameIdsAsImplementingSide() throws Exception {
+        final List<Class<?>> interfaces = Arrays.<Class<?>>asList(Calculator.class, Greeter.class);
+        final MethodTable local = MethodTable.of(interfaces);
+        final MethodTable remote = MethodTable.fromSignatures(local.getSignatures(), interfaces);
+
+        for (Class<?> clazz : interfaces) {
+            for (Method method : clazz.getMethods()) {
+                final int id = remote.getId(clazz, method);
+                assertThat(local.getMethod(id), equalTo(method));
+                assertThat(local.getInterface(id), equalTo((Object) clazz));
+            }
+        }
+    }
+
+    @Test
+    public void overloadsGetDistinctIds() throws Exception {
+        final MethodTable table = MethodTable.of(Collections.<Class<?>>singletonList(Calculator.class));
+
+        final int intId = table.getId(Calculator.class, Calculator.class.getMethod("add", int.class, int.class));
+        final int longId = table.getId(Calculator.class, Calculator.class.getMethod("add", long.class, long.class));
+
+        assertThat(intId == longId, equalTo(false));
+    }
+
+    @Test
+    public void inheritedMethodsAreKeyedByRegisteredInterface() throws Exception {
+        final MethodTable table = MethodTable.of(Arrays.<Class<?>>asList(Calculator.class, Greeter.class));
+        final Method name = Named.class.getMethod("name");
+
+        assertThat(table.getInterface(table.getId(Calculator.class, name)), equalTo((Object) Calculator.class));
+        assertThat(table.getInterface(table.getId(Greeter.class, name)), equalTo((Object) Greeter.class));
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void methodsUnknownToRemoteSideFailOnCall() throws Exception {
+        final MethodTable remote = MethodTable.fromSignatures(new String[]{"com.example.Missing#go()"}, Collections.<Class<?>>singletonList(Greeter.class));
+
+        remote.getId(Greeter.class, Greeter.class.getMethod("greet", String.class));
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void malformedSignaturesAreRejected() throws Exception {
+        MethodTable.fromSignatures(new String[]{"go()"}, Collections.<Class<?>>singletonList(Greeter.class));
+    }
+
+    public interface Named {
+        String name();
+    }
+
+    public interface Calculator extends Named {
+        int add(int a, int b);
+        long add(long a, long b);
+    }
+
+    public interface Greeter extends Named {
+        void greet(String who);
+    }
+}
@@ -0,0 +1,98 @@
+package com.volyx.rpc.common;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class PendingCallsTest {
+
+    @Test
+    public void responsesCompleteCallsWithTheSameIdInAnyOrder() throws Exception {
+        final PendingCalls calls = new PendingCalls();
+        final List<CompletableFuture<Response>> futures = new ArrayList<>();
+        final List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            final CompletableFuture<Response> future = new CompletableFuture<>();
+            futures.add(future);
+            ids.add(calls.register(future));
+        }
+        assertThat(calls.size(), equalTo(1000));
+
+        final List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            order.add(i);
+        }
+        Collections.shuffle(order);
+
+        for (int i : order) {
+            final Response response = new Response(ids.get(i), null, null);
+            assertThat(calls.complete(response), equalTo(true));
+            assertThat(futures.get(i).getNow(null), sameInstance(response));
+        }
+        assertThat(calls.size(), equalTo(0));
+    }
+
+    @Test
+    public void unknownIdIsNotCompleted() throws Exception {
+        final PendingCalls calls = new PendingCalls();
+        final long id = calls.register(new CompletableFuture<Response>());
+
+        assertThat(calls.complete(new Response(id + 1, null, null)), equalTo(false));
+        assertThat(calls.remove(id), not(nullValue()));
+        assertThat(calls.remove(id), nullValue());
+    }
+
+    @Test
+    public void failAllCompletesEveryPendingCallExceptionally() throws Exception {
+        final PendingCalls calls = new PendingCalls();
+        final CompletableFuture<Response> first = new CompletableFuture<>();
+        final CompletableFuture<Response> second = new CompletableFuture<>();
+        calls.register(first);
+        calls.register(second);
+
+        calls.failAll(new IllegalStateException("closed"));
+
+        assertThat(first.isCompletedExceptionally(), equalTo(true));
+        assertThat(second.isCompletedExceptionally(), equalTo(true));
+        assertThat(calls.size(), equalTo(0));
+    }
+
+    @Test
+    public void concurrentRegistrationsAndCompletionsDoNotLoseCalls() throws Exception {
+        final PendingCalls calls = new PendingCalls();
+        final int threads = 8;
+        final int callsPerThread = 10000;
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    final long[] ids = new long[callsPerThread];
+                    for (int i = 0; i < callsPerThread; i++) {
+                        ids[i] = calls.register(new CompletableFuture<Response>());
+                    }
+                    for (long id : ids) {
+                        if (!calls.complete(new Response(id, null, null))) {
+                            throw new AssertionError("lost call " + id);
+                        }
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        done.await();
+        assertThat(calls.size(), equalTo(0));
+    }
+}
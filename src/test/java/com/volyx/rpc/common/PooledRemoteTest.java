@@ -0,0 +1,58 @@
+package com.volyx.rpc.common;
+
+import com.volyx.rpc.api.ConnectionSelection;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class PooledRemoteTest {
+
+    @Test
+    public void reconnectedConnectionDoesNotWinUntilItIsMeasured() throws Exception {
+        final PooledRemote pool = new PooledRemote(2, ConnectionSelection.POWER_OF_TWO_CHOICES, false);
+        final PendingCalls measuredCalls = new PendingCalls();
+        final NettyRemote measured = connection(measuredCalls);
+        pool.setConnection(0, measured);
+        pool.setConnection(1, connection(new PendingCalls()));
+
+        measured.send(new Command(1));
+        Thread.sleep(5);
+        final Request answered = (Request) ((EmbeddedChannel) measured.getChannel()).readOutbound();
+        measuredCalls.complete(new Response(answered.getId(), null, null));
+        measured.send(new Command(1));
+
+        // slot 1 reconnects, nothing has answered the new connection yet while it already has more calls queued
+        final NettyRemote reconnected = connection(new PendingCalls());
+        pool.setConnection(1, reconnected);
+        for (int i = 0; i < 3; i++) {
+            reconnected.send(new Command(1));
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(pool.select(), sameInstance(measured));
+        }
+    }
+
+    @Test
+    public void queuedCallsDecideWhileNothingIsMeasured() throws Exception {
+        final PooledRemote pool = new PooledRemote(2, ConnectionSelection.POWER_OF_TWO_CHOICES, false);
+        final NettyRemote busy = connection(new PendingCalls());
+        final NettyRemote idle = connection(new PendingCalls());
+        pool.setConnection(0, busy);
+        pool.setConnection(1, idle);
+        busy.send(new Command(1));
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(pool.select(), sameInstance(idle));
+        }
+    }
+
+    private static NettyRemote connection(PendingCalls pendingCalls) {
+        final EmbeddedChannel channel = new EmbeddedChannel();
+        return new NettyRemote(channel, channel.id(), Collections.<Class<?>>emptySet(), MethodTable.of(Collections.<Class<?>>emptySet()), pendingCalls);
+    }
+}
@@ -0,0 +1,248 @@
+package com.volyx.rpc.common.binary;
+
+import com.volyx.rpc.api.Serializer;
+import com.volyx.rpc.common.BatchRequest;
+import com.volyx.rpc.common.BatchResponse;
+import com.volyx.rpc.common.Command;
+import com.volyx.rpc.common.PrimitiveTypesClassResolver;
+import com.volyx.rpc.common.Request;
+import com.volyx.rpc.common.Response;
+import com.volyx.rpc.common.Result;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.serialization.ClassResolver;
+import io.netty.handler.codec.serialization.ClassResolvers;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class BinarySerializerTest {
+
+    private final BinarySerializer serializer = new BinarySerializer();
+
+    @Test
+    public void requestsSurviveRoundTrip() throws Exception {
+        final Command command = new Command(3);
+        command.addParameter("hello", String.class);
+        command.addParameter(42, int.class);
+        command.addParameter(Long.MIN_VALUE, long.class);
+        command.addParameter(null, Integer.class);
+
+        final Request request = (Request) roundTrip(new Request(Long.MAX_VALUE, command));
+
+        assertThat(request.getId(), equalTo(Long.MAX_VALUE));
+        assertThat(request.getCommand().getMethodId(), equalTo(3));
+        assertThat(Arrays.asList(request.getCommand().findParameters()), equalTo(Arrays.<Object>asList("hello", 42, Long.MIN_VALUE, null)));
+    }
+
+    @Test
+    public void responsesSurviveRoundTrip() throws Exception {
+        final Response response = (Response) roundTrip(new Response(7, new Result("\u043f\u0440\u0438\u0432\u0435\u0442", String.class), String.class.getName()));
+
+        assertThat(response.getId(), equalTo(7L));
+        assertThat(response.getResult().getReturn(), equalTo((Object) "\u043f\u0440\u0438\u0432\u0435\u0442"));
+        assertThat(response.getResult().isExceptional(), equalTo(false));
+    }
+
+    @Test
+    public void exceptionalResponsesKeepExceptionClass() throws Exception {
+        final IllegalStateException exc = new IllegalStateException("boom");
+        final Response response = (Response) roundTrip(new Response(8, new Result(exc, exc.getClass()), exc.getClass().getName()));
+
+        assertThat(response.getResult().isExceptional(), equalTo(true));
+        assertThat(response.getResult().getReturnClass(), equalTo((Object) IllegalStateException.class));
+    }
+
+    @Test
+    public void returnedExceptionsAreValues() throws Exception {
+        final IllegalStateException value = new IllegalStateException("returned, not thrown");
+        final Response response = (Response) roundTrip(new Response(8, new Result(value, value.getClass(), false), value.getClass().getName()));
+
+        assertThat(response.getResult().isExceptional(), equalTo(false));
+        assertThat(((Exception) response.getResult().getReturn()).getMessage(), equalTo("returned, not thrown"));
+    }
+
+    @Test
+    public void batchesSurviveRoundTrip() throws Exception {
+        final Command first = new Command(1);
+        first.addParameter("a", String.class);
+        final Command second = new Command(2);
+
+        final BatchRequest request = (BatchRequest) roundTrip(new BatchRequest(9, new Command[]{first, second}));
+        assertThat(request.getId(), equalTo(9L));
+        assertThat(request.getCommands().length, equalTo(2));
+        assertThat(Arrays.asList(request.getCommands()[0].findParameters()), equalTo(Arrays.<Object>asList("a")));
+        assertThat(request.getCommands()[1].getMethodId(), equalTo(2));
+
+        final IllegalStateException exc = new IllegalStateException("boom");
+        final BatchResponse response = (BatchResponse) roundTrip(new BatchResponse(9, new Result[]{Result.VOID_RETURN, new Result(exc, exc.getClass())}));
+        assertThat(response.getId(), equalTo(9L));
+        assertThat(response.getResults()[0].isExceptional(), equalTo(false));
+        assertThat(response.getResults()[1].isExceptional(), equalTo(true));
+    }
+
+    @Test
+    public void heartbeatSurvivesRoundTrip() throws Exception {
+        assertThat(((Request) roundTrip(Request.HEARTBEAT)).isHeartbeat(), equalTo(true));
+        assertThat(roundTrip(Request.HEARTBEAT), instanceOf(Request.class));
+    }
+
+    @Test
+    public void repeatedStringsAreSentAsDictionaryIds() throws Exception {
+        final Serializer sender = new BinarySerializer(2).forConnection(1024);
+        final Serializer receiver = new BinarySerializer(2).forConnection(1024);
+
+        final ByteBuf first = Unpooled.buffer();
+        final ByteBuf second = Unpooled.buffer();
+        try {
+            sender.write(new Response(1, new Result("ORDER_PLACED", String.class), String.class.getName()), first);
+            sender.write(new Response(2, new Result("ORDER_PLACED", String.class), String.class.getName()), second);
+            assertThat(second.readableBytes(), lessThan(first.readableBytes() / 4));
+
+            receiver.read(first, resolver());
+            assertThat(((Response) receiver.read(second, resolver())).getResult().getReturn(), equalTo((Object) "ORDER_PLACED"));
+        } finally {
+            first.release();
+            second.release();
+        }
+
+        // class name and "ORDER_PLACED" fill the dictionary, "ORDER_PLACED" is evicted as least recently used
+        assertThat(roundTrip(sender, receiver, "ORDER_FILLED"), equalTo((Object) "ORDER_FILLED"));
+        assertThat(roundTrip(sender, receiver, "ORDER_PLACED"), equalTo((Object) "ORDER_PLACED"));
+        assertThat(roundTrip(sender, receiver, "ORDER_FILLED"), equalTo((Object) "ORDER_FILLED"));
+    }
+
+    @Test
+    public void dictionariesStartOverIfMessageIsNotSent() throws Exception {
+        final Serializer sender = new BinarySerializer(16).forConnection(64);
+        final Serializer receiver = new BinarySerializer(16).forConnection(64);
+        assertThat(roundTrip(sender, receiver, "ORDER_PLACED"), equalTo((Object) "ORDER_PLACED"));
+
+        final Command command = new Command(1);
+        command.addParameter("ORDER_FILLED", String.class);
+        command.addParameter(StringUtils.repeat('x', 100), String.class);
+        final ByteBuf buf = Unpooled.buffer();
+        try {
+            sender.write(new Request(1, command), buf);
+            fail("message longer than the frame should not be written");
+        } catch (TooLongFrameException expected) {
+        } finally {
+            buf.release();
+        }
+
+        assertThat(roundTrip(sender, receiver, "ORDER_FILLED"), equalTo((Object) "ORDER_FILLED"));
+        assertThat(roundTrip(sender, receiver, "ORDER_PLACED"), equalTo((Object) "ORDER_PLACED"));
+    }
+
+    @Test
+    public void truncatedFramesAreRejectedBeforeAllocating() throws Exception {
+        final ByteBuf buf = Unpooled.buffer();
+        try {
+            serializer.write(new Response(9, new Result(new byte[1000], byte[].class), byte[].class.getName()), buf);
+            serializer.read(buf.slice(0, buf.readableBytes() / 2), resolver());
+            fail("count of bytes missing from the frame should be rejected");
+        } catch (CorruptedFrameException expected) {
+        } finally {
+            buf.release();
+        }
+
+        // count of a billion strings followed by a single one
+        final ByteBuf forged = Unpooled.buffer();
+        try {
+            BinaryFormat.writeVarInt(forged, 1000000000);
+            BinaryFormat.writeString(forged, "a");
+            BinaryFormat.readStrings(forged);
+            fail("count of elements missing from the frame should be rejected");
+        } catch (CorruptedFrameException expected) {
+        } finally {
+            forged.release();
+        }
+    }
+
+    @Test
+    public void serializedValuesOfUndeclaredClassesAreRejected() throws Exception {
+        final Response response = new Response(3, new Result(new Payload(), Payload.class), Payload.class.getName());
+        final ByteBuf buf = Unpooled.buffer();
+        try {
+            serializer.write(response, buf);
+            serializer.read(buf, resolver());
+            fail("class nobody has declared should not be deserialized");
+        } catch (CorruptedFrameException expected) {
+        } finally {
+            buf.release();
+        }
+
+        assertThat(roundTrip(serializer.allowSerialized(Payload.class), response), instanceOf(Response.class));
+        assertThat(roundTrip(serializer.forInterfaces(Arrays.<Class<?>>asList(PayloadSource.class)), response), instanceOf(Response.class));
+    }
+
+    @Test
+    public void batchesOfMoreElementsThanTheFrameHoldsAreRejected() throws Exception {
+        assertBatchCountRejected(new BatchRequest(1, new Command[0]));
+        assertBatchCountRejected(new BatchResponse(2, new Result[0]));
+    }
+
+    private void assertBatchCountRejected(Object emptyBatch) throws Exception {
+        final ByteBuf buf = Unpooled.buffer();
+        try {
+            serializer.write(emptyBatch, buf);
+            // count of zero elements is the last byte, it is replaced by a billion
+            buf.writerIndex(buf.writerIndex() - 1);
+            BinaryFormat.writeVarInt(buf, 1000000000);
+            serializer.read(buf, resolver());
+            fail("batch count exceeding the frame should be rejected");
+        } catch (CorruptedFrameException expected) {
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static Object roundTrip(Serializer sender, Serializer receiver, String value) throws Exception {
+        final ByteBuf buf = Unpooled.buffer();
+        try {
+            sender.write(new Response(1, new Result(value, String.class), String.class.getName()), buf);
+            return ((Response) receiver.read(buf, resolver())).getResult().getReturn();
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static ClassResolver resolver() {
+        return new PrimitiveTypesClassResolver(ClassResolvers.cacheDisabled(null));
+    }
+
+    private Object roundTrip(Object message) throws Exception {
+        return roundTrip(serializer, message);
+    }
+
+    private static Object roundTrip(Serializer serializer, Object message) throws Exception {
+        final ByteBuf buf = Unpooled.buffer();
+        try {
+            serializer.write(message, buf);
+            final Object result = serializer.read(buf, resolver());
+            assertThat(buf.readableBytes(), equalTo(0));
+            return result;
+        } finally {
+            buf.release();
+        }
+    }
+
+    public static class Payload implements Serializable {
+        public int value = 1;
+    }
+
+    public interface PayloadSource {
+        List<Payload> payloads();
+    }
+}
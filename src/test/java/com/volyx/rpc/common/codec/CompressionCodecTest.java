@@ -0,0 +1,66 @@
+package com.volyx.rpc.common.codec;
+
+import com.volyx.rpc.api.Compression;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class CompressionCodecTest {
+
+    @Test
+    public void compressesPayloadsAboveThresholdOnly() throws Exception {
+        final CompressionCodec codec = new CompressionCodec(Compression.DEFLATE, 64, 1024 * 1024);
+        final EmbeddedChannel channel = new EmbeddedChannel(codec);
+        final byte[] large = new byte[64 * 1024];
+        Arrays.fill(large, (byte) 'a');
+
+        assertThat(roundTrip(channel, large), equalTo(large));
+        assertThat(roundTrip(channel, new byte[]{1, 2, 3}), equalTo(new byte[]{1, 2, 3}));
+
+        final CompressionStats stats = codec.getStats();
+        assertThat(stats.getCompressedMessagesWritten(), equalTo(1L));
+        assertThat(stats.getRawBytesWritten(), equalTo((long) large.length + 3));
+        assertThat(stats.getWireBytesWritten(), lessThan(1024L));
+        assertThat(stats.getRawBytesRead(), equalTo(stats.getRawBytesWritten()));
+        assertThat(stats.getWireBytesRead(), equalTo(stats.getWireBytesWritten()));
+    }
+
+    @Test
+    public void backsOffAfterPoorlyCompressiblePayloads() throws Exception {
+        final CompressionCodec codec = new CompressionCodec(Compression.DEFLATE, 64, 1024 * 1024);
+        final EmbeddedChannel channel = new EmbeddedChannel(codec);
+        final byte[] random = new byte[1024];
+        new Random(42).nextBytes(random);
+        final byte[] compressible = new byte[1024];
+
+        assertThat(roundTrip(channel, random), equalTo(random));
+        // compression is not even tried while backing off
+        for (int i = 0; i < CompressionCodec.MIN_BACKOFF; i++) {
+            assertThat(roundTrip(channel, compressible), equalTo(compressible));
+        }
+        assertThat(codec.getStats().getCompressedMessagesWritten(), equalTo(0L));
+
+        assertThat(roundTrip(channel, compressible), equalTo(compressible));
+        assertThat(codec.getStats().getCompressedMessagesWritten(), equalTo(1L));
+    }
+
+    private static byte[] roundTrip(EmbeddedChannel channel, byte[] payload) {
+        channel.writeOutbound(Unpooled.wrappedBuffer(payload));
+        channel.writeInbound((Object) channel.readOutbound());
+        final ByteBuf decoded = channel.readInbound();
+        try {
+            return ByteBufUtil.getBytes(decoded);
+        } finally {
+            decoded.release();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.volyx.rpc.common.codec;
+
+import com.volyx.rpc.api.Framing;
+import com.volyx.rpc.common.json.JsonMessageSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.TooLongFrameException;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class FrameCodecsTest {
+
+    @Test
+    public void lengthFieldFramingPassesPayloadsWithNulAndLargerThanEightKilobytes() throws Exception {
+        final byte[] payload = new byte[1024 * 1024];
+        Arrays.fill(payload, (byte) 0);
+        payload[payload.length - 1] = 42;
+
+        final ByteBuf decoded = roundTrip(Framing.LENGTH_FIELD, payload, 2 * 1024 * 1024);
+
+        try {
+            assertThat(decoded.readableBytes(), equalTo(payload.length));
+            assertThat(decoded.getByte(payload.length - 1), equalTo((byte) 42));
+        } finally {
+            decoded.release();
+        }
+    }
+
+    @Test
+    public void delimitedFramingStillWorksForPlainPayloads() throws Exception {
+        final byte[] payload = "{\"id\":1}".getBytes("UTF-8");
+
+        final ByteBuf decoded = roundTrip(Framing.DELIMITED, payload, 8192);
+
+        try {
+            assertThat(decoded.readableBytes(), equalTo(payload.length));
+        } finally {
+            decoded.release();
+        }
+    }
+
+    @Test(expected = CorruptedFrameException.class)
+    public void lengthFieldFramingRejectsForeignMagic() throws Exception {
+        final EmbeddedChannel channel = newChannel(Framing.LENGTH_FIELD, 8192);
+        channel.writeInbound(Unpooled.wrappedBuffer(new byte[]{'G', 'E', 'T', ' ', '/', ' ', 'H'}));
+    }
+
+    @Test(expected = EncoderException.class)
+    public void lengthFieldFramingRejectsTooLongFrames() throws Exception {
+        final EmbeddedChannel channel = newChannel(Framing.LENGTH_FIELD, 16);
+        channel.writeOutbound(Unpooled.wrappedBuffer(new byte[17]));
+        channel.checkException();
+    }
+
+    @Test(expected = TooLongFrameException.class)
+    public void delimitedFramingKeepsEightKilobyteLimitByDefault() throws Exception {
+        final EmbeddedChannel channel = newChannel(Framing.DELIMITED, CodecConfig.defaultMaxFrameLength(Framing.DELIMITED));
+        final byte[] frame = new byte[8194];
+        Arrays.fill(frame, (byte) 'a');
+        frame[frame.length - 1] = 0;
+        channel.writeInbound(Unpooled.wrappedBuffer(frame));
+    }
+
+    private static ByteBuf roundTrip(Framing framing, byte[] payload, int maxFrameLength) {
+        final EmbeddedChannel sender = newChannel(framing, maxFrameLength);
+        final EmbeddedChannel receiver = newChannel(framing, maxFrameLength);
+
+        sender.writeOutbound(Unpooled.wrappedBuffer(payload));
+        ByteBuf chunk;
+        while ((chunk = sender.readOutbound()) != null) {
+            receiver.writeInbound(chunk);
+        }
+        return receiver.readInbound();
+    }
+
+    private static EmbeddedChannel newChannel(Framing framing, int maxFrameLength) {
+        final EmbeddedChannel channel = new EmbeddedChannel();
+        FrameCodecs.addFraming(channel.pipeline(), new CodecConfig(framing, maxFrameLength, new JsonMessageSerializer()));
+        return channel;
+    }
+}
@@ -0,0 +1,112 @@
+package com.volyx.rpc.common.json;
+
+import com.volyx.rpc.common.BatchRequest;
+import com.volyx.rpc.common.BatchResponse;
+import com.volyx.rpc.common.Command;
+import com.volyx.rpc.common.PrimitiveTypesClassResolver;
+import com.volyx.rpc.common.Request;
+import com.volyx.rpc.common.Response;
+import com.volyx.rpc.common.Result;
+import com.volyx.rpc.common.message.InvocationRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.serialization.ClassResolvers;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+public class JsonMessageSerializerTest {
+
+    private final JsonMessageSerializer serializer = new JsonMessageSerializer();
+
+    @Test
+    public void requestsAreStreamedAsJson() throws Exception {
+        final Command command = new Command(3);
+        command.addParameter("\u043f\u0440\u0438\u0432\u0435\u0442 \"quoted\"", String.class);
+        command.addParameter(42, int.class);
+        command.addParameter(null, Integer.class);
+
+        final ByteBuf buf = Unpooled.buffer();
+        try {
+            serializer.write(new Request(7, command), buf);
+            assertThat(buf.toString(CharsetUtil.UTF_8), startsWith("{\"type\":\"Request\",\"body\":{\"id\":7,"));
+
+            final Request request = (Request) serializer.read(buf, resolver());
+            assertThat(buf.readableBytes(), equalTo(0));
+            assertThat(request.getId(), equalTo(7L));
+            assertThat(request.getCommand().getMethodId(), equalTo(3));
+            assertThat(request.getCommand().getParameters(), equalTo(Arrays.<Object>asList("\u043f\u0440\u0438\u0432\u0435\u0442 \"quoted\"", 42, null)));
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    public void responsesSurviveRoundTrip() throws Exception {
+        final Response response = (Response) roundTrip(new Response(8, new Result(42L, Long.class), Long.class.getName()));
+
+        assertThat(response.getId(), equalTo(8L));
+        assertThat(response.getResult().getReturn(), equalTo((Object) 42L));
+    }
+
+    @Test
+    public void batchesSurviveRoundTrip() throws Exception {
+        final Command command = new Command(4);
+        command.addParameter("x", String.class);
+
+        final BatchRequest request = (BatchRequest) roundTrip(new BatchRequest(9, new Command[]{command, new Command(5)}));
+        assertThat(request.getId(), equalTo(9L));
+        assertThat(request.getCommands()[0].getParameters(), equalTo(Arrays.<Object>asList("x")));
+        assertThat(request.getCommands()[1].getMethodId(), equalTo(5));
+
+        final BatchResponse response = (BatchResponse) roundTrip(new BatchResponse(9, new Result[]{new Result(42L, Long.class), Result.VOID_RETURN}));
+        assertThat(response.getResults()[0].getReturn(), equalTo((Object) 42L));
+        assertThat(response.getResults()[1].getReturn(), equalTo(null));
+    }
+
+    @Test
+    public void invocationArgumentsKeepRuntimeClass() throws Exception {
+        final InvocationRequest msg = (InvocationRequest) roundTrip(new InvocationRequest(5, new Object[]{1.5f, 'x', null}));
+
+        assertThat(msg.methodId, equalTo(5));
+        assertThat(Arrays.asList(msg.args), equalTo(Arrays.<Object>asList(1.5f, 'x', null)));
+    }
+
+    @Test
+    public void exceptionalFlagIsKeptAsSent() throws Exception {
+        final IllegalStateException value = new IllegalStateException("returned, not thrown");
+        final Response returned = (Response) roundTrip(new Response(10, new Result(value, Exception.class, false), Exception.class.getName()));
+        assertThat(returned.getResult().isExceptional(), equalTo(false));
+        assertThat(((Exception) returned.getResult().getReturn()).getMessage(), equalTo("returned, not thrown"));
+
+        final ByteBuf buf = Unpooled.copiedBuffer("{\"type\":\"Response\",\"body\":{\"id\":11,\"result\":{\"returnClass\":\"com.example.Missing\","
+                + "\"exceptional\":true,\"return\":\"com.example.Missing: boom\"}}}", CharsetUtil.UTF_8);
+        try {
+            final Result thrown = ((Response) serializer.read(buf, resolver())).getResult();
+            assertThat(thrown.isExceptional(), equalTo(true));
+            assertThat(thrown.getReturnClass(), equalTo((Object) Exception.class));
+            assertThat(thrown.getReturn(), equalTo((Object) "com.example.Missing: boom"));
+        } finally {
+            buf.release();
+        }
+    }
+
+    private Object roundTrip(Object message) throws Exception {
+        final ByteBuf buf = Unpooled.buffer();
+        try {
+            serializer.write(message, buf);
+            return serializer.read(buf, resolver());
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static PrimitiveTypesClassResolver resolver() {
+        return new PrimitiveTypesClassResolver(ClassResolvers.cacheDisabled(null));
+    }
+}
@@ -0,0 +1,62 @@
+package com.volyx.rpc.common.shm;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class SpscRingTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void bytesWrapAroundTheEndOfRingAndWritesStopWhenItIsFull() throws Exception {
+        final SharedMemoryFile client = SharedMemoryFile.create(folder.getRoot(), 16);
+        final SharedMemoryFile server = SharedMemoryFile.open(client.getFile());
+        assertThat(server.accept(), equalTo(true));
+        final SpscRing producer = client.ring(true, true);
+        final SpscRing consumer = server.ring(true, false);
+
+        final ByteBuf src = Unpooled.wrappedBuffer("0123456789abcdefghij".getBytes("US-ASCII"));
+        assertThat(producer.write(src.slice(0, 10)), equalTo(10));
+        assertThat(read(consumer, 6), equalTo("012345"));
+        // 10 bytes fit, the last 4 of them go to the start of the ring
+        assertThat(producer.write(src.slice(10, 10)), equalTo(10));
+        assertThat(producer.write(src.slice(0, 10)), equalTo(2));
+        assertThat(read(consumer, 100), equalTo("6789abcdefghij01"));
+        assertThat(consumer.read(UnpooledByteBufAllocator.DEFAULT, 100), nullValue());
+    }
+
+    @Test
+    public void fileIsDeletedByTheSideClosingLast() throws Exception {
+        final SharedMemoryFile client = SharedMemoryFile.create(folder.getRoot(), 16);
+        final File file = client.getFile();
+        final SharedMemoryFile server = SharedMemoryFile.open(file);
+        assertThat(server.accept(), equalTo(true));
+
+        server.close(false);
+        assertThat(file.exists(), equalTo(true));
+        assertThat(client.isClosed(false), equalTo(true));
+        client.close(true);
+        assertThat(file.exists(), equalTo(false));
+    }
+
+    private static String read(SpscRing ring, int maxBytes) {
+        final ByteBuf buf = ring.read(UnpooledByteBufAllocator.DEFAULT, maxBytes);
+        try {
+            return new String(ByteBufUtil.getBytes(buf));
+        } finally {
+            buf.release();
+        }
+    }
+}